@@ -0,0 +1,218 @@
+package ru.iris.commons.health;
+
+import lombok.Getter;
+import ru.iris.models.protocol.enums.SourceProtocol;
+
+/**
+ * Incrementally updated health state of single device. Voltage trend is a linear regression over reported
+ * voltages with exponential forgetting, so old samples fade out and nothing is read from history.
+ * <p>
+ * Not thread-safe, callers synchronize on instance.
+ */
+class DeviceHealth {
+
+    private static final double DAY_MS = 86_400_000D;
+    // weight of the last interval in report cadence
+    private static final double CADENCE_ALPHA = 0.2;
+    // longest gap between reports slowly shrinks, if device becomes more chatty
+    private static final double GAP_DECAY = 0.95;
+    // voltage raise, which means battery was replaced
+    private static final double REPLACED_DELTA = 0.1;
+    private static final int MIN_REPORTS = 3;
+
+    @Getter
+    private final SourceProtocol protocol;
+    @Getter
+    private final String channel;
+
+    @Getter
+    private long lastSeen;
+    private long lastReport;
+    @Getter
+    private long reports;
+    private double cadenceMs = Double.NaN;
+    private double gapMs;
+    @Getter
+    private boolean offline;
+    @Getter
+    private boolean batteryLow;
+
+    // regression sums, time is in days since origin
+    private long origin;
+    private double s0;
+    private double st;
+    private double sv;
+    private double stt;
+    private double stv;
+    private double firstT;
+    private double lastT;
+    private double voltage = Double.NaN;
+
+    DeviceHealth(SourceProtocol protocol, String channel) {
+        this.protocol = protocol;
+        this.channel = channel;
+    }
+
+    /**
+     * Registers any message of device. Messages within burst interval after report (e.g. temperature,
+     * humidity and voltage of the same packet) count as one report.
+     *
+     * @return true if device was offline and is back
+     */
+    boolean seen(long now, long burstMs) {
+        boolean back = offline;
+        offline = false;
+        lastSeen = now;
+
+        if (reports == 0) {
+            reports = 1;
+            lastReport = now;
+            return back;
+        }
+
+        long gap = now - lastReport;
+
+        if (gap < burstMs) {
+            return back;
+        }
+
+        // silence while offline says nothing about normal cadence
+        if (!back) {
+            cadenceMs = Double.isNaN(cadenceMs) ? gap : cadenceMs + CADENCE_ALPHA * (gap - cadenceMs);
+            gapMs = Math.max(gap, gapMs * GAP_DECAY);
+        }
+
+        reports++;
+        lastReport = now;
+        return back;
+    }
+
+    /**
+     * Marks device offline, if it's silent for much longer than its usual longest gap between reports.
+     *
+     * @return true if device became offline
+     */
+    boolean checkOffline(long now, long minSilenceMs, double factor) {
+        if (offline || reports < MIN_REPORTS) {
+            return false;
+        }
+
+        if (now - lastSeen > Math.max(minSilenceMs, factor * gapMs)) {
+            offline = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Devices report voltage only when it changes, so while device is alive, its last voltage holds.
+     * Adds the last voltage as a sample, if there was no sample for holdMs, so trend isn't starved.
+     */
+    void holdVoltage(long now, long holdMs, double windowDays) {
+        if (Double.isNaN(voltage) || now - (origin + (long) (lastT * DAY_MS)) < holdMs) {
+            return;
+        }
+
+        voltage(now, voltage, windowDays);
+    }
+
+    /**
+     * Restores last seen time from history on startup. Cadence is unknown until device reports again.
+     */
+    void restore(long lastSeen) {
+        this.lastSeen = Math.max(this.lastSeen, lastSeen);
+    }
+
+    void voltage(long now, double value, double windowDays) {
+        if (s0 > 0 && value - estimate(lastT) > REPLACED_DELTA) {
+            s0 = st = sv = stt = stv = 0;
+            batteryLow = false;
+        }
+
+        if (s0 == 0) {
+            origin = now;
+        }
+
+        double t = (now - origin) / DAY_MS;
+        double decay = s0 > 0 ? Math.exp(-(t - lastT) / windowDays) : 0D;
+
+        s0 = s0 * decay + 1;
+        st = st * decay + t;
+        sv = sv * decay + value;
+        stt = stt * decay + t * t;
+        stv = stv * decay + t * value;
+
+        if (s0 == 1) {
+            firstT = t;
+        }
+
+        lastT = t;
+        voltage = value;
+    }
+
+    /**
+     * @return voltage change per day or null, if there is not enough samples yet
+     */
+    Double getTrend() {
+        if (s0 < MIN_REPORTS || lastT - firstT < 1) {
+            return null;
+        }
+
+        double denominator = s0 * stt - st * st;
+
+        if (denominator <= 1e-9) {
+            return null;
+        }
+
+        return (s0 * stv - st * sv) / denominator;
+    }
+
+    /**
+     * @return estimated days until voltage drops to empty level or null, if device isn't discharging
+     */
+    Double getDaysToEmpty(long now, double emptyVoltage) {
+        Double trend = getTrend();
+
+        if (trend == null || trend >= 0) {
+            return null;
+        }
+
+        double t = (now - origin) / DAY_MS;
+        return Math.max(0D, (estimate(t) - emptyVoltage) / -trend);
+    }
+
+    Integer getBatteryLevel(double emptyVoltage, double fullVoltage) {
+        if (Double.isNaN(voltage) || fullVoltage <= emptyVoltage) {
+            return null;
+        }
+
+        double level = (voltage - emptyVoltage) / (fullVoltage - emptyVoltage) * 100;
+        return (int) Math.max(0, Math.min(100, level));
+    }
+
+    void setBatteryLow(boolean batteryLow) {
+        this.batteryLow = batteryLow;
+    }
+
+    Double getCadenceSec() {
+        return Double.isNaN(cadenceMs) ? null : cadenceMs / 1000D;
+    }
+
+    Double getVoltage() {
+        return Double.isNaN(voltage) ? null : voltage;
+    }
+
+    /**
+     * Voltage at given time by regression line, or the last reported one while trend is unknown.
+     */
+    private double estimate(double t) {
+        Double trend = getTrend();
+
+        if (trend == null) {
+            return voltage;
+        }
+
+        return sv / s0 + trend * (t - st / s0);
+    }
+}
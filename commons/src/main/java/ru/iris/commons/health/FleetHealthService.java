@@ -0,0 +1,329 @@
+package ru.iris.commons.health;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.bus.Event;
+import reactor.fn.Consumer;
+import ru.iris.commons.config.ConfigLoader;
+import ru.iris.commons.registry.DeviceRegistry;
+import ru.iris.commons.service.AbstractService;
+import ru.iris.models.bus.Queue;
+import ru.iris.models.bus.devices.AbstractDeviceEvent;
+import ru.iris.models.bus.devices.DeviceProtocolEvent;
+import ru.iris.models.database.Device;
+import ru.iris.models.database.DeviceValueChange;
+import ru.iris.models.protocol.data.DataLevel;
+import ru.iris.models.protocol.enums.EventLabel;
+import ru.iris.models.protocol.enums.SourceProtocol;
+import ru.iris.models.protocol.enums.StandartDeviceValueLabel;
+import ru.iris.models.web.dto.DeviceHealthDTO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Health of device fleet: last seen time, report cadence, voltage trend and estimated days until battery is empty.
+ * State is updated incrementally from device events on the bus. Voltage history is read only once on startup,
+ * to rebuild voltage trends.
+ * <p>
+ * Emits event.device.battery when battery gets low and event.device.disconnected / event.device.connected
+ * when device goes silent for much longer than usual and comes back.
+ */
+@Component
+@Qualifier("health")
+@Slf4j
+public class FleetHealthService extends AbstractService {
+
+    private static final String OFFLINE = "DeviceOffline";
+    private static final String ONLINE = "DeviceOnline";
+    private static final double XIAOMI_EMPTY_VOLTAGE = 2.7D;
+    private static final double XIAOMI_FULL_VOLTAGE = 3.1D;
+    private static final double DAY_MS = 86_400_000D;
+
+    private final ConfigLoader config;
+    private final DeviceRegistry registry;
+    private final Map<String, DeviceHealth> devices = new ConcurrentHashMap<>();
+
+    private long burstMs = 2000L;
+    private long offlineMinMs = 900_000L;
+    private double offlineFactor = 3D;
+    private double trendWindowDays = 7D;
+    private int batteryLowLevel = 20;
+    private double batteryLowDays = 14D;
+    private long voltageHoldMs = 3_600_000L;
+
+    @Autowired
+    public FleetHealthService(ConfigLoader config, DeviceRegistry registry) {
+        this.config = config;
+        this.registry = registry;
+    }
+
+    @Override
+    public void onStartup() {
+        logger.info("FleetHealthService started");
+
+        if (!config.loadPropertiesFormCfgDirectory("health"))
+            logger.error("Cant load health-specific configs. Check health.properties if exists");
+
+        burstMs = getLong("health.burstMs", burstMs);
+        offlineMinMs = getLong("health.offlineMinSec", offlineMinMs / 1000L) * 1000L;
+        offlineFactor = getDouble("health.offlineFactor", offlineFactor);
+        trendWindowDays = getDouble("health.trendWindowDays", trendWindowDays);
+        batteryLowLevel = (int) getLong("health.batteryLowLevel", batteryLowLevel);
+        batteryLowDays = getDouble("health.batteryLowDays", batteryLowDays);
+        voltageHoldMs = getLong("health.voltageHoldMin", voltageHoldMs / 60_000L) * 60_000L;
+
+        restore();
+    }
+
+    @Override
+    public void onShutdown() {
+        logger.info("FleetHealthService stopping");
+    }
+
+    @Override
+    public void subscribe() throws Exception {
+        // all device events except own ones
+        addSubscription("event\\.device\\.(?!(battery|connected|disconnected)$).*");
+    }
+
+    @Override
+    public Consumer<Event<?>> handleMessage() {
+        return event -> {
+            if (!(event.getData() instanceof AbstractDeviceEvent)) {
+                return;
+            }
+
+            AbstractDeviceEvent data = (AbstractDeviceEvent) event.getData();
+            String key = event.getKey().toString();
+
+            if (data.getProtocol() == null || data.getChannel() == null) {
+                return;
+            }
+
+            DeviceHealth health = devices.computeIfAbsent(data.getProtocol() + "/" + data.getChannel(),
+                    k -> new DeviceHealth(data.getProtocol(), data.getChannel()));
+            long now = System.currentTimeMillis();
+            boolean back;
+            boolean batteryLow = false;
+
+            synchronized (health) {
+                back = health.seen(now, burstMs);
+
+                Double voltage = key.equals(Queue.EVENT_VOLTAGE.getString()) && data.getData() instanceof DataLevel
+                        ? parse(((DataLevel) data.getData()).getTo()) : null;
+
+                if (voltage != null) {
+                    health.voltage(now, voltage, trendWindowDays);
+                } else {
+                    health.holdVoltage(now, voltageHoldMs, trendWindowDays);
+                }
+
+                batteryLow = checkBattery(health, now);
+            }
+
+            if (back) {
+                logger.info("Device {}/{} is back online", data.getProtocol(), data.getChannel());
+                broadcast(Queue.EVENT_DEVICE_CONNECTED.getString(),
+                        new DeviceProtocolEvent(data.getChannel(), data.getProtocol(), ONLINE));
+            }
+
+            if (batteryLow) {
+                logger.info("Device {}/{} battery low", data.getProtocol(), data.getChannel());
+                broadcast(Queue.EVENT_BATTERY_STATUS.getString(),
+                        new DeviceProtocolEvent(data.getChannel(), data.getProtocol(), EventLabel.BATTERY_LOW.getName()));
+            }
+        };
+    }
+
+    @Override
+    public void run() {
+        // event driven
+    }
+
+    @Override
+    public String getServiceIdentifier() {
+        return "health";
+    }
+
+    @Scheduled(fixedDelay = 60000L, initialDelay = 60000L)
+    void checkOffline() {
+        long now = System.currentTimeMillis();
+
+        for (DeviceHealth health : devices.values()) {
+            boolean offline;
+
+            synchronized (health) {
+                offline = health.checkOffline(now, offlineMinMs, offlineFactor);
+            }
+
+            if (offline) {
+                logger.info("Device {}/{} is offline", health.getProtocol(), health.getChannel());
+                broadcast(Queue.EVENT_DEVICE_DISCONNECTED.getString(),
+                        new DeviceProtocolEvent(health.getChannel(), health.getProtocol(), OFFLINE));
+            }
+        }
+    }
+
+    /**
+     * @return health of all seen devices, devices with lowest battery and offline ones first
+     */
+    public List<DeviceHealthDTO> getFleetHealth() {
+        long now = System.currentTimeMillis();
+        List<DeviceHealthDTO> ret = new ArrayList<>();
+
+        for (DeviceHealth health : devices.values()) {
+            synchronized (health) {
+                ret.add(toDTO(health, now));
+            }
+        }
+
+        ret.sort(Comparator.comparing(DeviceHealthDTO::isOnline)
+                .thenComparing(DeviceHealthDTO::getDaysToEmpty, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(DeviceHealthDTO::getBatteryLevel, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        return ret;
+    }
+
+    /**
+     * Rebuilds voltage trends from history of voltage values, so battery state survives restart.
+     * Low battery is checked on the first message of device after startup, when rules are already loaded,
+     * without waiting for the next voltage change.
+     */
+    private void restore() {
+        long now = System.currentTimeMillis();
+        Date start = new Date(now - (long) (2 * trendWindowDays * DAY_MS));
+        String label = StandartDeviceValueLabel.VOLTAGE.getName();
+        int restored = 0;
+
+        for (Device device : registry.getDevices()) {
+            if (device.getSource() == null || device.getValues() == null || !device.getValues().containsKey(label)) {
+                continue;
+            }
+
+            DeviceHealth health = devices.computeIfAbsent(device.getSource() + "/" + device.getChannel(),
+                    k -> new DeviceHealth(device.getSource(), device.getChannel()));
+
+            try {
+                List<?> history = registry.getHistory(device.getSource(), device.getChannel(), label, start, new Date(), false);
+
+                synchronized (health) {
+                    for (Object item : history) {
+                        DeviceValueChange change = (DeviceValueChange) item;
+                        Double voltage = parse(change.getValue());
+
+                        if (voltage != null && change.getDate() != null) {
+                            health.voltage(change.getDate().getTime(), voltage, trendWindowDays);
+                            health.restore(change.getDate().getTime());
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.error("Cant restore health of device {}/{}", device.getSource(), device.getChannel(), e);
+                continue;
+            }
+
+            restored++;
+        }
+
+        logger.info("Health of {} devices restored from voltage history", restored);
+    }
+
+    /**
+     * Battery is low, when its level or estimated days to empty fall below limits. Event is sent once,
+     * until battery is replaced.
+     *
+     * @return true if battery became low
+     */
+    private boolean checkBattery(DeviceHealth health, long now) {
+        if (health.isBatteryLow()) {
+            return false;
+        }
+
+        Double empty = getVoltageLimit(health.getProtocol(), "empty");
+        Double full = getVoltageLimit(health.getProtocol(), "full");
+
+        if (empty == null) {
+            return false;
+        }
+
+        Integer level = full != null ? health.getBatteryLevel(empty, full) : null;
+        Double days = health.getDaysToEmpty(now, empty);
+
+        if ((level != null && level <= batteryLowLevel) || (days != null && days <= batteryLowDays)) {
+            health.setBatteryLow(true);
+            return true;
+        }
+
+        return false;
+    }
+
+    private DeviceHealthDTO toDTO(DeviceHealth health, long now) {
+        DeviceHealthDTO dto = new DeviceHealthDTO();
+        Double empty = getVoltageLimit(health.getProtocol(), "empty");
+        Double full = getVoltageLimit(health.getProtocol(), "full");
+
+        dto.setProtocol(health.getProtocol());
+        dto.setChannel(health.getChannel());
+        dto.setLastSeen(new Date(health.getLastSeen()));
+        dto.setOnline(!health.isOffline());
+        dto.setReports(health.getReports());
+        dto.setCadenceSec(health.getCadenceSec());
+        dto.setVoltage(health.getVoltage());
+        dto.setVoltageTrend(health.getTrend());
+        dto.setBatteryLow(health.isBatteryLow());
+
+        if (empty != null) {
+            dto.setDaysToEmpty(health.getDaysToEmpty(now, empty));
+
+            if (full != null) {
+                dto.setBatteryLevel(health.getBatteryLevel(empty, full));
+            }
+        }
+
+        return dto;
+    }
+
+    /**
+     * Battery voltage range is configured per protocol, e.g. health.voltage.empty.xiaomi=2.7.
+     * Xiaomi sensors have known range of CR2032 / CR2450 cells.
+     */
+    private Double getVoltageLimit(SourceProtocol protocol, String limit) {
+        Double value = parse(config.get("health.voltage." + limit + "." + protocol.name().toLowerCase()));
+
+        if (value == null && protocol == SourceProtocol.XIAOMI) {
+            return limit.equals("empty") ? XIAOMI_EMPTY_VOLTAGE : XIAOMI_FULL_VOLTAGE;
+        }
+
+        return value;
+    }
+
+    private long getLong(String key, long defaultValue) {
+        String value = config.get(key);
+        return value != null ? Long.parseLong(value.trim()) : defaultValue;
+    }
+
+    private double getDouble(String key, double defaultValue) {
+        Double value = parse(config.get(key));
+        return value != null ? value : defaultValue;
+    }
+
+    private static Double parse(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package ru.iris.commons.registry;
 
 import ru.iris.models.database.Device;
 import ru.iris.models.database.DeviceValue;
+import ru.iris.models.database.DeviceValueChange;
 import ru.iris.models.protocol.enums.SourceProtocol;
 import ru.iris.models.protocol.enums.ValueType;
+import ru.iris.models.web.EventBatchItem;
 
 import java.util.Date;
 import java.util.List;
@@ -23,6 +25,16 @@ public interface DeviceRegistry {
 
     DeviceValue addChange(Device device, String key, String level, ValueType type);
 
+    /**
+     * Applies many value updates of one device at once. New device values are saved in one batch,
+     * changes are dated by item timestamps and applied in timestamp order. Every item goes to history,
+     * but item, older than previous batch item of the same value, doesn't replace current value.
+     * Item timestamps are device clock, so they are not compared with server time of single changes.
+     *
+     * @return transitions of current values in timestamp order
+     */
+    List<DeviceValueChange> addChanges(Device device, List<EventBatchItem> items);
+
     List<Device> getDevicesByProto(SourceProtocol proto);
 
     List<Device> getDevices();
@@ -16,6 +16,7 @@ import ru.iris.models.database.DeviceValue;
 import ru.iris.models.database.DeviceValueChange;
 import ru.iris.models.protocol.enums.SourceProtocol;
 import ru.iris.models.protocol.enums.ValueType;
+import ru.iris.models.web.EventBatchItem;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
@@ -92,16 +93,9 @@ public class DeviceRegistryImpl implements DeviceRegistry {
 
     @Override
     public DeviceValue addChange(DeviceValue value) {
-        DeviceValueChange add = new DeviceValueChange();
-        add.setDeviceValue(value);
-        add.setValue(value.getCurrentValue());
-        try {
-            add.setAdditionalData(objectMapper.writeValueAsString(value.getAdditionalData()));
-        } catch (JsonProcessingException ignored) {
-        }
-        add.setDate(new Date());
+        DeviceValueChange add = newChange(value, new Date());
 
-        value.setLastUpdated(new Date());
+        value.setLastUpdated(add.getDate());
         value.getChanges().add(add);
 
         changes.add(add);
@@ -109,6 +103,102 @@ public class DeviceRegistryImpl implements DeviceRegistry {
         return value;
     }
 
+    @Override
+    @Transactional
+    public List<DeviceValueChange> addChanges(Device device, List<EventBatchItem> items) {
+        if (device == null) {
+            logger.error("Device, passed into registry is null!");
+            return Collections.emptyList();
+        }
+
+        // values, which device doesn't have yet, are saved together
+        Map<String, DeviceValue> created = new LinkedHashMap<>();
+
+        for (EventBatchItem item : items) {
+            if (!device.getValues().containsKey(item.getLabel()) && !created.containsKey(item.getLabel())) {
+                DeviceValue value = new DeviceValue();
+                value.setDevice(device);
+                value.setName(item.getLabel());
+                value.setType(item.getType() != null ? item.getType() : ValueType.STRING);
+                value.setUnits("unknown");
+                value.setReadOnly(false);
+
+                created.put(item.getLabel(), value);
+            }
+        }
+
+        if (!created.isEmpty()) {
+            deviceValueDAO.saveAll(created.values()).forEach(value -> device.getValues().put(value.getName(), value));
+        }
+
+        // items without timestamp are received now, sort is stable for equal timestamps
+        long now = System.currentTimeMillis();
+        List<EventBatchItem> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingLong(item -> item.getTimestamp() != null ? item.getTimestamp() : now));
+
+        // changes of each value are added to it at once
+        Map<DeviceValue, List<DeviceValueChange>> added = new LinkedHashMap<>();
+        List<DeviceValueChange> transitions = new ArrayList<>();
+        int late = 0;
+
+        for (EventBatchItem item : sorted) {
+            DeviceValue value = device.getValues().get(item.getLabel());
+            ValueType type = item.getType() != null ? item.getType() : value.getType();
+            Date date = new Date(item.getTimestamp() != null ? item.getTimestamp() : now);
+
+            // late sample of already known period goes to history only. Device clock may differ from server one,
+            // so sample time is compared with previous samples of the device, not with lastUpdated
+            if (item.getTimestamp() != null) {
+                if (value.getLastSampled() != null && date.before(value.getLastSampled())) {
+                    added.computeIfAbsent(value, k -> new ArrayList<>()).add(newChange(value, item.getValue(), date));
+                    late++;
+                    continue;
+                }
+
+                value.setLastSampled(date);
+            }
+
+            if (value.getCurrentValue() != null && value.getCurrentValue().equals(item.getValue()) && !ValueType.TRIGGER.equals(type)) {
+                continue;
+            }
+
+            value.setCurrentValue(item.getValue());
+            DeviceValueChange change = newChange(value, item.getValue(), date);
+
+            value.setLastUpdated(change.getDate());
+            added.computeIfAbsent(value, k -> new ArrayList<>()).add(change);
+            transitions.add(change);
+        }
+
+        added.forEach((value, list) -> {
+            value.getChanges().addAll(list);
+            changes.addAll(list);
+        });
+
+        if (late > 0) {
+            logger.info("Device {} on channel {}: {} late batch samples are saved to history only",
+                    device.getSource(), device.getChannel(), late);
+        }
+
+        return transitions;
+    }
+
+    private DeviceValueChange newChange(DeviceValue value, Date date) {
+        return newChange(value, value.getCurrentValue(), date);
+    }
+
+    private DeviceValueChange newChange(DeviceValue value, String level, Date date) {
+        DeviceValueChange add = new DeviceValueChange();
+        add.setDeviceValue(value);
+        add.setValue(level);
+        try {
+            add.setAdditionalData(objectMapper.writeValueAsString(value.getAdditionalData()));
+        } catch (JsonProcessingException ignored) {
+        }
+        add.setDate(date);
+        return add;
+    }
+
     @Override
     @Transactional
     public DeviceValue addChange(Device device, String key, String level, ValueType type) {
@@ -179,10 +269,17 @@ public class DeviceRegistryImpl implements DeviceRegistry {
     @Scheduled(initialDelay = 60_000L, fixedDelay = 60_000L)
     void saveChangesJob() {
         synchronized (changes) {
-            if(changes.size() > 0) {
-                logger.debug("Saving {} changes to database", changes.size());
-                changes.forEach(change -> deviceValueHistoryDAO.save(change));
-                changes.clear();
+            // changes, added while saving, stay for the next run
+            List<DeviceValueChange> batch = new ArrayList<>(changes.size());
+
+            for (Iterator<DeviceValueChange> it = changes.iterator(); it.hasNext(); ) {
+                batch.add(it.next());
+                it.remove();
+            }
+
+            if (batch.size() > 0) {
+                logger.debug("Saving {} changes to database", batch.size());
+                deviceValueHistoryDAO.saveAll(batch);
             }
         }
     }
@@ -0,0 +1,17 @@
+package ru.iris.commons.service;
+
+import ru.iris.models.web.dto.RuleStatsDTO;
+
+import java.util.List;
+
+/**
+ * Execution statistics of script rules
+ */
+public interface RuleStatistics {
+    /**
+     * @return statistics of all rules, most expensive (by total time) first
+     */
+    List<RuleStatsDTO> getRuleStatistics();
+
+    void reset();
+}
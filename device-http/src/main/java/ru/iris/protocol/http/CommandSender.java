@@ -0,0 +1,103 @@
+package ru.iris.protocol.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.util.EntityUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends device commands through shared async HTTP client without blocking caller.
+ * Commands of one device are sent one after another, so they can't overtake each other. If several commands
+ * wait for the previous one, only the last is sent, as each command sets absolute state.
+ */
+@Slf4j
+class CommandSender {
+
+    private final CloseableHttpAsyncClient client;
+    // device id -> pending command URL, key is present while command of device is in flight
+    private final Map<String, String> pending = new HashMap<>();
+
+    CommandSender(CloseableHttpAsyncClient client) {
+        this.client = client;
+    }
+
+    void send(String deviceId, String url) {
+        synchronized (pending) {
+            if (pending.containsKey(deviceId)) {
+                String replaced = pending.put(deviceId, url);
+
+                if (replaced != null) {
+                    logger.debug("Command {} of device {} is replaced by {}", replaced, deviceId, url);
+                }
+
+                return;
+            }
+
+            pending.put(deviceId, null);
+        }
+
+        execute(deviceId, url);
+    }
+
+    private void execute(String deviceId, String url) {
+        try {
+            client.execute(new HttpGet(url), callback(deviceId, url));
+        } catch (RuntimeException e) {
+            // client is stopped
+            logger.error("Cant send command {} of device {}: {}", url, deviceId, e.toString());
+
+            synchronized (pending) {
+                pending.remove(deviceId);
+            }
+        }
+    }
+
+    private FutureCallback<HttpResponse> callback(String deviceId, String url) {
+        return new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                int code = response.getStatusLine().getStatusCode();
+                EntityUtils.consumeQuietly(response.getEntity());
+
+                if (code >= 300) {
+                    logger.error("Command {} of device {} failed: HTTP {}", url, deviceId, code);
+                }
+
+                next(deviceId);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                logger.error("Command {} of device {} failed: {}", url, deviceId, e.toString());
+                next(deviceId);
+            }
+
+            @Override
+            public void cancelled() {
+                next(deviceId);
+            }
+        };
+    }
+
+    private void next(String deviceId) {
+        String url;
+
+        synchronized (pending) {
+            url = pending.get(deviceId);
+
+            if (url == null) {
+                pending.remove(deviceId);
+                return;
+            }
+
+            pending.put(deviceId, null);
+        }
+
+        execute(deviceId, url);
+    }
+}
@@ -0,0 +1,221 @@
+package ru.iris.protocol.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AsyncCharConsumer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Subscribes to server-sent events of device endpoints (url + "/events"). Data of each event is a status
+ * in the same format as /status response. Lost stream is reopened with exponential backoff. Backoff is reset
+ * only when stream delivered an event or stayed open for a while, so endpoint, which accepts and closes stream
+ * at once, isn't reconnected in a tight loop.
+ * <p>
+ * Each stream holds one connection of the client pool while it's open.
+ */
+@Slf4j
+class EventStreamSubscriber {
+
+    private static final long MIN_RECONNECT_MS = 1000L;
+    // stream, open for this time, is considered healthy
+    private static final long STABLE_MS = 30_000L;
+
+    private final CloseableHttpAsyncClient client;
+    private final Executor executor;
+    private final RequestConfig requestConfig;
+    private final long maxBackoffMs;
+    private final BiConsumer<String, String> handler;
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reconnects = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "http-sse-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running = true;
+
+    /**
+     * @param executor      runs event handler, so registry and database work never blocks HTTP client I/O threads
+     * @param idleTimeoutMs stream without any data (including comments) for this time is reopened
+     * @param handler       receives base URL and event data, it's called from executor
+     */
+    EventStreamSubscriber(CloseableHttpAsyncClient client, Executor executor, RequestConfig defaults, long idleTimeoutMs,
+                          long maxBackoffMs, BiConsumer<String, String> handler) {
+        this.client = client;
+        this.executor = executor;
+        this.requestConfig = RequestConfig.copy(defaults).setSocketTimeout((int) idleTimeoutMs).build();
+        this.maxBackoffMs = maxBackoffMs;
+        this.handler = handler;
+    }
+
+    void subscribe(String url) {
+        if (!running) {
+            return;
+        }
+
+        HttpGet request = new HttpGet(url + "/events");
+        request.setConfig(requestConfig);
+        request.setHeader(HttpHeaders.ACCEPT, "text/event-stream");
+        request.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        StreamConsumer consumer = new StreamConsumer(url);
+
+        try {
+            client.execute(HttpAsyncMethods.create(request), consumer, new FutureCallback<Boolean>() {
+                @Override
+                public void completed(Boolean result) {
+                    reconnect(consumer, "stream closed");
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    reconnect(consumer, e.toString());
+                }
+
+                @Override
+                public void cancelled() {
+                    reconnect(consumer, "stream cancelled");
+                }
+            });
+        } catch (RuntimeException e) {
+            // client is stopped
+            logger.error("Cant subscribe to events of {}: {}", url, e.toString());
+        }
+    }
+
+    void close() {
+        running = false;
+        reconnects.shutdownNow();
+    }
+
+    private void reconnect(StreamConsumer consumer, String reason) {
+        if (!running) {
+            return;
+        }
+
+        String url = consumer.url;
+
+        if (consumer.isStable()) {
+            failures.remove(url);
+        }
+
+        int failed = failures.merge(url, 1, Integer::sum);
+        long delay = Math.min(maxBackoffMs, MIN_RECONNECT_MS << Math.min(failed - 1, 16));
+        logger.info("Events of {} are lost: {}, reconnecting in {}s", url, reason, delay / 1000);
+
+        reconnects.schedule(() -> subscribe(url), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Parses text/event-stream: data lines of event are joined, blank line ends event, other fields are ignored.
+     */
+    private class StreamConsumer extends AsyncCharConsumer<Boolean> {
+        private final String url;
+        private final StringBuilder line = new StringBuilder();
+        private final StringBuilder data = new StringBuilder();
+        private boolean lastCR;
+        private volatile long opened;
+        private volatile boolean delivered;
+
+        private StreamConsumer(String url) {
+            this.url = url;
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) throws IOException {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                throw new IOException("HTTP " + response.getStatusLine().getStatusCode());
+            }
+
+            opened = System.currentTimeMillis();
+            logger.info("Subscribed to events of {}", url);
+        }
+
+        private boolean isStable() {
+            return delivered || (opened > 0 && System.currentTimeMillis() - opened >= STABLE_MS);
+        }
+
+        @Override
+        protected void onCharReceived(CharBuffer buf, IOControl ioctrl) {
+            while (buf.hasRemaining()) {
+                char c = buf.get();
+
+                // lines end with CR, LF or CRLF
+                if (c == '\n' && lastCR) {
+                    lastCR = false;
+                    continue;
+                }
+
+                lastCR = c == '\r';
+
+                if (c == '\n' || c == '\r') {
+                    onLine();
+                } else {
+                    line.append(c);
+                }
+            }
+        }
+
+        private void onLine() {
+            if (line.length() == 0) {
+                if (data.length() > 0) {
+                    dispatch(data.toString());
+                    data.setLength(0);
+                }
+
+                return;
+            }
+
+            if (line.length() >= 5 && line.indexOf("data:") == 0) {
+                int start = line.length() > 5 && line.charAt(5) == ' ' ? 6 : 5;
+
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+
+                data.append(line, start, line.length());
+            }
+
+            line.setLength(0);
+        }
+
+        private void dispatch(String event) {
+            delivered = true;
+
+            try {
+                executor.execute(() -> {
+                    try {
+                        handler.accept(url, event);
+                    } catch (RuntimeException e) {
+                        logger.error("Cant handle event of {}", url, e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.debug("Event of {} is skipped, subscriber is stopped", url);
+            }
+        }
+
+        @Override
+        protected Boolean buildResult(HttpContext context) {
+            return Boolean.TRUE;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package ru.iris.protocol.http;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
@@ -14,6 +16,8 @@ import ru.iris.commons.registry.DeviceRegistry;
 import ru.iris.models.bus.Queue;
 import ru.iris.models.bus.devices.DeviceChangeEvent;
 import ru.iris.models.database.Device;
+import ru.iris.models.database.DeviceValue;
+import ru.iris.models.database.DeviceValueChange;
 import ru.iris.models.protocol.enums.DeviceType;
 import ru.iris.models.protocol.enums.SourceProtocol;
 import ru.iris.models.protocol.enums.State;
@@ -21,12 +25,22 @@ import ru.iris.models.protocol.enums.ValueType;
 import ru.iris.models.status.BackendAnswer;
 import ru.iris.models.status.ErrorStatus;
 import ru.iris.models.status.OkStatus;
+import ru.iris.models.web.EventBatchItem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 @Profile("httpapi")
 @RestController
 @Slf4j
 public class HttpApiController {
+    // items of batch are applied by chunks, so stream of any length doesn't stay in memory
+    private static final int CHUNK_SIZE = 1000;
 
     @Autowired
     private EventBus r;
@@ -34,6 +48,9 @@ public class HttpApiController {
     @Autowired
     private DeviceRegistry deviceRegistry;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @RequestMapping(value = "/api/event/device/{channel}/state/{state}", method = RequestMethod.GET)
     public BackendAnswer switchDeviceState(@PathVariable String channel, @PathVariable Boolean state) {
 
@@ -41,17 +58,7 @@ public class HttpApiController {
 
         if (device == null) {
             logger.info("Device channel {} on protocol HTTP not found! Creating", channel);
-
-            device = new Device();
-            device.setSource(SourceProtocol.HTTP);
-            device.setHumanReadable("http/channel/" + channel);
-            device.setProductName("");
-            device.setType(DeviceType.UNKNOWN);
-            device.setState(State.NOT_SUPPORTED);
-            device.setManufacturer("HTTP device point");
-            device.setChannel(channel);
-
-            device = deviceRegistry.addOrUpdateDevice(device);
+            device = deviceRegistry.addOrUpdateDevice(newDevice(channel));
         }
 
         if (state != null) {
@@ -72,17 +79,7 @@ public class HttpApiController {
 
         if (device == null) {
             logger.info("Device channel {} on protocol HTTP not found! Creating", channel);
-
-            device = new Device();
-            device.setSource(SourceProtocol.HTTP);
-            device.setProductName("");
-            device.setHumanReadable("http/channel/" + channel);
-            device.setType(DeviceType.UNKNOWN);
-            device.setState(State.NOT_SUPPORTED);
-            device.setManufacturer("HTTP device point");
-            device.setChannel(channel);
-
-            device = deviceRegistry.addOrUpdateDevice(device);
+            device = deviceRegistry.addOrUpdateDevice(newDevice(channel));
         }
 
         logger.info("HTTP channel {}: Triggered", channel);
@@ -92,6 +89,117 @@ public class HttpApiController {
         return new OkStatus("Received");
     }
 
+    /**
+     * Batch ingestion of value updates: JSON array or NDJSON stream of items
+     * {"channel": "...", "label": "...", "value": "...", "type": "DOUBLE", "timestamp": 1500000000000}.
+     * Items are applied by chunks: devices and values, which don't exist yet, are created together, registry
+     * is updated per device in timestamp order, and events are published after whole chunk is applied,
+     * one per transition of current value, so rules see every change. Items, older than already received
+     * batch items of the same value, are stored to history only and don't trigger rules.
+     *
+     * @param body request body
+     * @return count of received items or error status
+     */
+    @RequestMapping(value = "/api/event/batch", method = RequestMethod.POST)
+    public BackendAnswer batch(InputStream body) {
+        List<EventBatchItem> chunk = new ArrayList<>(CHUNK_SIZE);
+        int received = 0;
+        int skipped = 0;
+
+        try (MappingIterator<EventBatchItem> items = objectMapper.readerFor(EventBatchItem.class).readValues(body)) {
+            while (items.hasNextValue()) {
+                EventBatchItem item = items.nextValue();
+
+                if (item.getChannel() == null || item.getLabel() == null) {
+                    skipped++;
+                    continue;
+                }
+
+                chunk.add(item);
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    received += ingest(chunk);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // items before malformed one are applied
+            received += ingest(chunk);
+            logger.error("Malformed batch after {} items: {}", received + skipped, e.getMessage());
+            return new ErrorStatus("Malformed batch after " + (received + skipped) + " items");
+        }
+
+        received += ingest(chunk);
+
+        if (skipped > 0) {
+            logger.info("Batch: {} items without channel or label skipped", skipped);
+        }
+
+        return new OkStatus("Received " + received);
+    }
+
+    private int ingest(List<EventBatchItem> items) {
+        if (items.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<EventBatchItem>> byChannel = new LinkedHashMap<>();
+        items.forEach(item -> byChannel.computeIfAbsent(item.getChannel(), k -> new ArrayList<>()).add(item));
+
+        List<Device> missing = new ArrayList<>();
+
+        for (String channel : byChannel.keySet()) {
+            if (deviceRegistry.getDevice(SourceProtocol.HTTP, channel) == null) {
+                missing.add(newDevice(channel));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            logger.info("Creating {} HTTP devices from batch", missing.size());
+            deviceRegistry.addOrUpdateDevices(missing);
+        }
+
+        List<DeviceChangeEvent> events = new ArrayList<>();
+
+        byChannel.forEach((channel, updates) -> {
+            Device device = deviceRegistry.getDevice(SourceProtocol.HTTP, channel);
+
+            for (DeviceValueChange change : deviceRegistry.addChanges(device, updates)) {
+                DeviceValue value = change.getDeviceValue();
+                events.add(new DeviceChangeEvent(channel, SourceProtocol.HTTP, value.getName(), change.getValue(), value.getType()));
+            }
+        });
+
+        for (DeviceChangeEvent event : events) {
+            broadcast(Queue.EVENT_DEVICE.getString() + "." + toQueue(event.getEventLabel()), event);
+        }
+
+        return items.size();
+    }
+
+    private static String toQueue(String label) {
+        StringBuilder queue = new StringBuilder(label.length());
+
+        for (int i = 0; i < label.length(); i++) {
+            char c = Character.toLowerCase(label.charAt(i));
+            queue.append(Character.isLetterOrDigit(c) ? c : '_');
+        }
+
+        return queue.toString();
+    }
+
+    private static Device newDevice(String channel) {
+        Device device = new Device();
+        device.setSource(SourceProtocol.HTTP);
+        device.setHumanReadable("http/channel/" + channel);
+        device.setProductName("");
+        device.setType(DeviceType.UNKNOWN);
+        device.setState(State.NOT_SUPPORTED);
+        device.setManufacturer("HTTP device point");
+        device.setChannel(channel);
+        return device;
+    }
+
     private void broadcast(String queue, Object object) {
         r.notify(queue, Event.wrap(object));
     }
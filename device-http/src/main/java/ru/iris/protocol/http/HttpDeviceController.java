@@ -2,11 +2,12 @@ package ru.iris.protocol.http;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import jodd.http.HttpRequest;
-import jodd.http.HttpResponse;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.annotation.Scope;
@@ -32,11 +33,14 @@ import ru.iris.models.protocol.data.DataLevel;
 import ru.iris.models.protocol.enums.*;
 import ru.iris.models.service.ServiceState;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author nix, 19.06.18
@@ -48,6 +52,10 @@ import java.util.Optional;
 @Slf4j
 @Scope(proxyMode = ScopedProxyMode.TARGET_CLASS)
 public class HttpDeviceController extends AbstractProtocolService {
+    private static final long POLL_INTERVAL = 15_000L;
+    private static final String MODE_POLL = "poll";
+    private static final String MODE_PUSH = "push";
+    private static final String MODE_SSE = "sse";
     private final Type itemListType = new TypeToken<ArrayList<HTTPDevice>>() {
     }.getType();
     @Autowired
@@ -59,6 +67,18 @@ public class HttpDeviceController extends AbstractProtocolService {
     @Autowired
     private Gson gson;
     private List<HTTPDevice> httpDevices;
+    private final Map<String, HTTPDevice> devicesById = new HashMap<>();
+    private final Map<String, List<HTTPDevice>> devicesByUrl = new HashMap<>();
+    // base URLs by update mode
+    private final List<String> polledUrls = new ArrayList<>();
+    private final List<String> streamUrls = new ArrayList<>();
+    private CloseableHttpAsyncClient client;
+    private RequestConfig requestConfig;
+    private StatusPoller poller;
+    private CommandSender commands;
+    private EventStreamSubscriber subscriber;
+    // statuses are applied to registry here, not on HTTP client I/O threads
+    private ExecutorService statusExecutor;
 
     @Override
     public void onStartup() throws InterruptedException {
@@ -77,6 +97,49 @@ public class HttpDeviceController extends AbstractProtocolService {
 
             if (httpDevices != null && httpDevices.size() > 0) {
                 logger.info("Loaded {} http devices", httpDevices.size());
+
+                // devices, which share base URL, share its status
+                httpDevices.forEach(d -> {
+                    devicesById.put(d.getId(), d);
+                    devicesByUrl.computeIfAbsent(d.getUrl(), k -> new ArrayList<>()).add(d);
+                });
+
+                // mode of endpoint is taken from its first device
+                devicesByUrl.forEach((url, devices) -> {
+                    String mode = devices.get(0).getMode();
+
+                    if (mode == null || mode.equals(MODE_POLL)) {
+                        polledUrls.add(url);
+                    } else if (mode.equals(MODE_SSE)) {
+                        streamUrls.add(url);
+                    } else if (!mode.equals(MODE_PUSH)) {
+                        logger.error("Unknown mode \"{}\" of {}, polling it", mode, url);
+                        polledUrls.add(url);
+                    }
+                });
+
+                String backoff = config.get("maxBackoffSec");
+                String idle = config.get("sseIdleTimeoutSec");
+                long maxBackoff = (backoff != null ? Long.parseLong(backoff) : 300L) * 1000L;
+
+                client = createClient();
+                client.start();
+
+                statusExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "http-status");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+                commands = new CommandSender(client);
+                poller = new StatusPoller(client, statusExecutor, POLL_INTERVAL, maxBackoff);
+                subscriber = new EventStreamSubscriber(client, statusExecutor, requestConfig,
+                        (idle != null ? Long.parseLong(idle) : 90L) * 1000L, maxBackoff, this::updateStatus);
+                streamUrls.forEach(subscriber::subscribe);
+
+                logger.info("HTTP endpoints: {} polled, {} with event stream, {} pushing",
+                        polledUrls.size(), streamUrls.size(), devicesByUrl.size() - polledUrls.size() - streamUrls.size());
+
                 setServiceState(ServiceState.STARTED);
             } else {
                 logger.error("No http devices loaded from config file - stopping service!");
@@ -85,10 +148,50 @@ public class HttpDeviceController extends AbstractProtocolService {
         }
     }
 
+    /**
+     * Client is shared by status polling and commands. Connections are kept alive and reused,
+     * requests above per-host limit wait for free connection instead of opening new one.
+     */
+    private CloseableHttpAsyncClient createClient() {
+        String timeout = config.get("requestTimeoutMs");
+        String perHost = config.get("maxConnectionsPerHost");
+        int requestTimeout = timeout != null ? Integer.parseInt(timeout) : 5000;
+        int maxPerHost = perHost != null ? Integer.parseInt(perHost) : 2;
+
+        requestConfig = RequestConfig.custom()
+                .setConnectTimeout(requestTimeout)
+                .setConnectionRequestTimeout(requestTimeout)
+                .setSocketTimeout(requestTimeout)
+                .build();
+
+        return HttpAsyncClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnPerRoute(maxPerHost)
+                .setMaxConnTotal(Math.max(maxPerHost, maxPerHost * devicesByUrl.size()))
+                .build();
+    }
+
     @Override
     public void onShutdown() {
         setServiceState(ServiceState.STOPPING);
         logger.info("HttpDeviceController stopping");
+
+        if (subscriber != null) {
+            subscriber.close();
+        }
+
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                logger.error("Cant close HTTP client", e);
+            }
+        }
+
+        if (statusExecutor != null) {
+            statusExecutor.shutdownNow();
+        }
+
         setServiceState(ServiceState.STOPPED);
     }
 
@@ -110,17 +213,14 @@ public class HttpDeviceController extends AbstractProtocolService {
                     return;
                 }
 
-                Optional<HTTPDevice> deviceOptional = httpDevices.stream()
-                        .filter(d -> d.getId().equals(x.getChannel()))
-                        .findFirst();
+                HTTPDevice httpDevice = devicesById.get(x.getChannel());
 
                 switch (EventLabel.parse(x.getEventLabel())) {
                     case TURN_ON:
                         logger.info("Turn ON device on channel {}", x.getChannel());
 
-                        if (deviceOptional.isPresent()) {
-                            HTTPDevice httpDevice = deviceOptional.get();
-                            HttpRequest.get(httpDevice.getUrl() + "/" + httpDevice.getName().toLowerCase() + "/on").send();
+                        if (httpDevice != null) {
+                            sendCommand(httpDevice, "on");
                         } else {
                             logger.error("Device not found!");
                         }
@@ -128,9 +228,8 @@ public class HttpDeviceController extends AbstractProtocolService {
                     case TURN_OFF:
                         logger.info("Turn OFF device on channel {}", x.getChannel());
 
-                        if (deviceOptional.isPresent()) {
-                            HTTPDevice httpDevice = deviceOptional.get();
-                            HttpRequest.get(httpDevice.getUrl() + "/" + httpDevice.getName().toLowerCase() + "/off").send();
+                        if (httpDevice != null) {
+                            sendCommand(httpDevice, "off");
                         } else {
                             logger.error("Device not found!");
                         }
@@ -148,9 +247,8 @@ public class HttpDeviceController extends AbstractProtocolService {
                                 action = "off";
                             }
 
-                            if (deviceOptional.isPresent()) {
-                                HTTPDevice httpDevice = deviceOptional.get();
-                                HttpRequest.get(httpDevice.getUrl() + "/" + httpDevice.getName().toLowerCase() + "/" + action).send();
+                            if (httpDevice != null) {
+                                sendCommand(httpDevice, action);
                             } else {
                                 logger.error("Device not found!");
                             }
@@ -164,6 +262,10 @@ public class HttpDeviceController extends AbstractProtocolService {
         };
     }
 
+    private void sendCommand(HTTPDevice httpDevice, String action) {
+        commands.send(httpDevice.getId(), httpDevice.getUrl() + "/" + httpDevice.getName().toLowerCase() + "/" + action);
+    }
+
     @Override
     public void subscribe() throws Exception {
         addSubscription(Queue.COMMAND_DEVICE);
@@ -174,78 +276,126 @@ public class HttpDeviceController extends AbstractProtocolService {
         return "http device";
     }
 
-    @Scheduled(fixedDelay = 15_000, initialDelay = 10_000)
+    @Scheduled(fixedDelay = POLL_INTERVAL, initialDelay = 10_000)
     public void doWork() {
-        if (getServiceState().equals(ServiceState.STOPPED)) {
+        if (getServiceState().equals(ServiceState.STOPPED) || poller == null) {
             return;
         }
 
-        httpDevices.forEach(deviceFromCfg -> {
-            Device device = registry.getDevice(SourceProtocol.HTTP, deviceFromCfg.getId());
+        httpDevices.forEach(this::getOrCreateDevice);
+        poller.poll(polledUrls, this::updateStatus);
+    }
 
-            if (device == null) {
-                device = Device.builder()
-                        .source(SourceProtocol.HTTP)
-                        .channel(deviceFromCfg.getId())
-                        .manufacturer("Unknown")
-                        .productName("Unknown")
-                        .state(State.UNKNOWN)
-                        .humanReadable("http/channel/" + deviceFromCfg.getId())
-                        .type(DeviceType.MULTILEVEL_SWITCH)
-                        .values(new HashMap<>())
-                        .build();
+    /**
+     * Applies pushed states of many devices at once.
+     *
+     * @param body JSON array of items with id of configured device and any of level, min, max
+     * @return number of applied items
+     */
+    public int push(String body) {
+        List<HTTPDevice> items = gson.fromJson(body, itemListType);
+        int applied = 0;
+
+        if (items == null) {
+            return 0;
+        }
+
+        for (HTTPDevice item : items) {
+            HTTPDevice deviceFromCfg = item.getId() != null ? devicesById.get(item.getId()) : null;
 
-                device = registry.addOrUpdateDevice(device);
+            if (deviceFromCfg == null) {
+                logger.error("Pushed state of unknown device \"{}\"", item.getId());
+                continue;
+            }
 
-                registry.addChange(device, StandartDeviceValueLabel.LEVEL.getName(), "0", ValueType.DOUBLE);
-                registry.addChange(device, "min", String.valueOf(deviceFromCfg.getMin()), ValueType.DOUBLE);
-                registry.addChange(device, "max", String.valueOf(deviceFromCfg.getMax()), ValueType.DOUBLE);
+            apply(getOrCreateDevice(deviceFromCfg), deviceFromCfg, item);
+            applied++;
+        }
 
-                broadcast("event.device.added", new DeviceProtocolEvent(deviceFromCfg.getId(), SourceProtocol.HTTP, "DeviceAdded"));
+        return applied;
+    }
+
+    /**
+     * Fans status of endpoint out to all devices on it
+     */
+    private void updateStatus(String url, String body) {
+        List<HTTPDevice> itemsResponse = gson.fromJson(body, itemListType);
+        Map<String, HTTPDevice> items = new HashMap<>();
+
+        if (itemsResponse != null) {
+            itemsResponse.forEach(item -> items.put(item.getName(), item));
+        }
+
+        for (HTTPDevice deviceFromCfg : devicesByUrl.get(url)) {
+            Device device = getOrCreateDevice(deviceFromCfg);
+            HTTPDevice httpItem = items.get(deviceFromCfg.getName());
+
+            if (httpItem == null) {
+                logger.error("No item \"{}\" in response from {}", deviceFromCfg.getName(), url);
+                continue;
             }
 
-            DeviceValue level = device.getValues().get(StandartDeviceValueLabel.LEVEL.getName());
-            DeviceValue min = device.getValues().get("min");
-            DeviceValue max = device.getValues().get("max");
+            apply(device, deviceFromCfg, httpItem);
+        }
+    }
 
-            HttpResponse response = HttpRequest.get(deviceFromCfg.getUrl() + "/status").send();
-            List<HTTPDevice> itemsResponse = gson.fromJson(response.bodyText(), itemListType);
+    private void apply(Device device, HTTPDevice deviceFromCfg, HTTPDevice httpItem) {
+        DeviceValue level = device.getValues().get(StandartDeviceValueLabel.LEVEL.getName());
+        DeviceValue min = device.getValues().get("min");
+        DeviceValue max = device.getValues().get("max");
+
+        if (httpItem.getLevel() != null
+                && (level == null || level.getCurrentValue() == null || !level.getCurrentValue().equals(httpItem.getLevel().toString()))) {
+            logger.info("Channel: {}: Device \"{}\" level is \"{}\"", device.getHumanReadable(), deviceFromCfg.getName(), httpItem.getLevel());
+            registry.addChange(device, StandartDeviceValueLabel.LEVEL.getName(), httpItem.getLevel().toString(), ValueType.DOUBLE);
+
+            broadcast("event.device.level", new DeviceChangeEvent(
+                    device.getChannel(),
+                    SourceProtocol.HTTP,
+                    StandartDeviceValueLabel.LEVEL.getName(),
+                    httpItem.getLevel().toString(),
+                    ValueType.DOUBLE)
+            );
+        }
 
-            Optional<HTTPDevice> itemOptional = itemsResponse.stream()
-                    .filter(i -> i.getName().equals(deviceFromCfg.getName()))
-                    .findFirst();
+        if (httpItem.getMax() != null
+                && (max == null || max.getCurrentValue() == null || !max.getCurrentValue().equals(httpItem.getMax().toString()))) {
+            logger.info("Channel: {}: Device \"{}\" maximum level is \"{}\"", device.getHumanReadable(), deviceFromCfg.getName(), httpItem.getMax());
+            registry.addChange(device, "max", httpItem.getMax().toString(), ValueType.DOUBLE);
+        }
 
-            if (itemOptional.isPresent()) {
-                HTTPDevice httpItem = itemOptional.get();
+        if (httpItem.getMin() != null
+                && (min == null || min.getCurrentValue() == null || !min.getCurrentValue().equals(httpItem.getMin().toString()))) {
+            logger.info("Channel: {}: Device \"{}\" minimum level is \"{}\"", device.getHumanReadable(), deviceFromCfg.getName(), httpItem.getMin());
+            registry.addChange(device, "min", httpItem.getMin().toString(), ValueType.DOUBLE);
+        }
+    }
 
-                if (level == null || level.getCurrentValue() == null || !level.getCurrentValue().equals(httpItem.getLevel().toString())) {
-                    logger.info("Channel: {}: Device \"{}\" level is \"{}\"", device.getHumanReadable(), httpItem.getName(), httpItem.getLevel());
-                    registry.addChange(device, StandartDeviceValueLabel.LEVEL.getName(), httpItem.getLevel().toString(), ValueType.DOUBLE);
+    private Device getOrCreateDevice(HTTPDevice deviceFromCfg) {
+        Device device = registry.getDevice(SourceProtocol.HTTP, deviceFromCfg.getId());
 
-                    broadcast("event.device.level", new DeviceChangeEvent(
-                            device.getChannel(),
-                            SourceProtocol.HTTP,
-                            StandartDeviceValueLabel.LEVEL.getName(),
-                            httpItem.getLevel().toString(),
-                            ValueType.DOUBLE)
-                    );
-                }
+        if (device == null) {
+            device = Device.builder()
+                    .source(SourceProtocol.HTTP)
+                    .channel(deviceFromCfg.getId())
+                    .manufacturer("Unknown")
+                    .productName("Unknown")
+                    .state(State.UNKNOWN)
+                    .humanReadable("http/channel/" + deviceFromCfg.getId())
+                    .type(DeviceType.MULTILEVEL_SWITCH)
+                    .values(new HashMap<>())
+                    .build();
 
-                if (max == null || max.getCurrentValue() == null || !max.getCurrentValue().equals(httpItem.getMax().toString())) {
-                    logger.info("Channel: {}: Device \"{}\" maximum level is \"{}\"", device.getHumanReadable(), httpItem.getName(), httpItem.getMax());
-                    registry.addChange(device, "max", httpItem.getMax().toString(), ValueType.DOUBLE);
-                }
+            device = registry.addOrUpdateDevice(device);
 
-                if (min == null || min.getCurrentValue() == null || !min.getCurrentValue().equals(httpItem.getMin().toString())) {
-                    logger.info("Channel: {}: Device \"{}\" minimum level is \"{}\"", device.getHumanReadable(), httpItem.getName(), httpItem.getMin());
-                    registry.addChange(device, "min", httpItem.getMin().toString(), ValueType.DOUBLE);
-                }
+            registry.addChange(device, StandartDeviceValueLabel.LEVEL.getName(), "0", ValueType.DOUBLE);
+            registry.addChange(device, "min", String.valueOf(deviceFromCfg.getMin()), ValueType.DOUBLE);
+            registry.addChange(device, "max", String.valueOf(deviceFromCfg.getMax()), ValueType.DOUBLE);
 
-            } else {
-                logger.error("No item \"{}\" in response from {}", deviceFromCfg.getName(), deviceFromCfg.getUrl());
-            }
+            broadcast("event.device.added", new DeviceProtocolEvent(deviceFromCfg.getId(), SourceProtocol.HTTP, "DeviceAdded"));
+        }
 
-        });
+        return device;
     }
 
     @Override
@@ -262,6 +412,8 @@ public class HttpDeviceController extends AbstractProtocolService {
         private Integer min;
         private Integer max;
         private Integer level;
+        // how status is received: poll (default), push or sse
+        private String mode;
 
     }
 }
@@ -0,0 +1,42 @@
+package ru.iris.protocol.http;
+
+import com.google.gson.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import ru.iris.models.status.BackendAnswer;
+import ru.iris.models.status.ErrorStatus;
+import ru.iris.models.status.OkStatus;
+
+/**
+ * Push ingestion for HTTP devices, which report their state themselves instead of being polled
+ */
+@RestController
+@Profile("httpdevice")
+@Slf4j
+public class HttpPushController {
+
+    @Autowired
+    private HttpDeviceController controller;
+
+    /**
+     * Accepts states of many devices in one request, e.g. [{"id": "relay1", "level": 1}, {"id": "relay2", "level": 0}]
+     *
+     * @param body JSON array of items with id of configured device and any of level, min, max
+     * @return ok or error status
+     */
+    @RequestMapping(value = "/api/httpdevice/push", method = RequestMethod.POST)
+    public BackendAnswer push(@RequestBody String body) {
+        try {
+            int applied = controller.push(body);
+            return new OkStatus("Received " + applied);
+        } catch (JsonParseException e) {
+            logger.error("Cant parse pushed states: {}", e.getMessage());
+            return new ErrorStatus("JSON array of device states expected");
+        }
+    }
+}
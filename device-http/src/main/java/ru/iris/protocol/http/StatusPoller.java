@@ -0,0 +1,186 @@
+package ru.iris.protocol.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+/**
+ * Polls /status of device endpoints concurrently, one request per distinct base URL.
+ * Unchanged status is not transferred again, if endpoint supports ETag. Failing endpoint is polled
+ * with exponential backoff.
+ */
+@Slf4j
+class StatusPoller {
+
+    private final CloseableHttpAsyncClient client;
+    private final Executor executor;
+    private final long intervalMs;
+    private final long maxBackoffMs;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor     runs status handler, so registry and database work never blocks HTTP client I/O threads
+     * @param intervalMs   usual polling interval, backoff starts from it
+     * @param maxBackoffMs maximum delay between attempts to failing endpoint
+     */
+    StatusPoller(CloseableHttpAsyncClient client, Executor executor, long intervalMs, long maxBackoffMs) {
+        this.client = client;
+        this.executor = executor;
+        this.intervalMs = intervalMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Starts requests to endpoints and returns immediately.
+     *
+     * @param handler receives base URL and body of changed status, it's called from executor
+     */
+    void poll(Collection<String> urls, BiConsumer<String, String> handler) {
+        long now = System.currentTimeMillis();
+
+        for (String url : urls) {
+            Endpoint endpoint = endpoints.computeIfAbsent(url, Endpoint::new);
+            String etag;
+
+            synchronized (endpoint) {
+                // previous request is not finished yet or endpoint is in backoff
+                if (endpoint.inFlight || now < endpoint.nextAttempt) {
+                    continue;
+                }
+
+                endpoint.inFlight = true;
+                etag = endpoint.etag;
+            }
+
+            HttpGet request = new HttpGet(url + "/status");
+
+            if (etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+            }
+
+            client.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    handle(endpoint, response, handler);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    failure(endpoint, e.toString());
+                }
+
+                @Override
+                public void cancelled() {
+                    failure(endpoint, "request cancelled");
+                }
+            });
+        }
+    }
+
+    private void handle(Endpoint endpoint, HttpResponse response, BiConsumer<String, String> handler) {
+        int code = response.getStatusLine().getStatusCode();
+
+        if (code == HttpStatus.SC_NOT_MODIFIED) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            success(endpoint, response.getFirstHeader(HttpHeaders.ETAG), false);
+            return;
+        }
+
+        if (code != HttpStatus.SC_OK) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            failure(endpoint, "HTTP " + code);
+            return;
+        }
+
+        String body;
+
+        try {
+            body = response.getEntity() != null ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            failure(endpoint, e.toString());
+            return;
+        }
+
+        success(endpoint, response.getFirstHeader(HttpHeaders.ETAG), true);
+
+        if (body == null) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> apply(endpoint, body, handler));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Status of {} is skipped, poller is stopped", endpoint.url);
+        }
+    }
+
+    private void apply(Endpoint endpoint, String body, BiConsumer<String, String> handler) {
+        try {
+            handler.accept(endpoint.url, body);
+        } catch (RuntimeException e) {
+            logger.error("Cant handle status of {}", endpoint.url, e);
+
+            // status should be fetched again
+            synchronized (endpoint) {
+                endpoint.etag = null;
+            }
+        }
+    }
+
+    private void success(Endpoint endpoint, Header etag, boolean modified) {
+        synchronized (endpoint) {
+            if (endpoint.failures > 0) {
+                logger.info("Endpoint {} is available again", endpoint.url);
+            }
+
+            // 304 may omit ETag, then the known one stays valid
+            if (etag != null) {
+                endpoint.etag = etag.getValue();
+            } else if (modified) {
+                endpoint.etag = null;
+            }
+
+            endpoint.failures = 0;
+            endpoint.nextAttempt = 0;
+            endpoint.inFlight = false;
+        }
+    }
+
+    private void failure(Endpoint endpoint, String reason) {
+        synchronized (endpoint) {
+            endpoint.failures++;
+            long backoff = Math.min(maxBackoffMs, intervalMs << Math.min(endpoint.failures - 1, 16));
+            endpoint.nextAttempt = System.currentTimeMillis() + backoff;
+            endpoint.inFlight = false;
+
+            logger.error("Cant get status of {}: {}, next attempt in {}s", endpoint.url, reason, backoff / 1000);
+        }
+    }
+
+    private static class Endpoint {
+        private final String url;
+        private String etag;
+        private int failures;
+        private long nextAttempt;
+        private boolean inFlight;
+
+        private Endpoint(String url) {
+            this.url = url;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.iris.protocol.noolite;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filters frames received by RX2164 before they reach registry and bus:
+ * <ul>
+ * <li>the same (channel, command, payload) within window - remotes and PT111 / PT112 sensors send each frame
+ * several times;</li>
+ * <li>sensor values equal to the last known value of channel - sensors report periodically, even if nothing
+ * changed.</li>
+ * </ul>
+ */
+class NooliteFrameFilter {
+
+    private final long windowMs;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+
+    NooliteFrameFilter(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * @return true if frame is not a repeat of the previous one
+     */
+    boolean accept(String channel, String command, String payload) {
+        Channel state = channels.computeIfAbsent(channel, k -> new Channel());
+        long now = System.currentTimeMillis();
+
+        synchronized (state) {
+            if (now - state.time < windowMs && command.equals(state.command) && payload.equals(state.payload)) {
+                duplicates.increment();
+                return false;
+            }
+
+            state.time = now;
+            state.command = command;
+            state.payload = payload;
+        }
+
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * Remembers sensor value of channel.
+     *
+     * @return true if value differs from the last known one
+     */
+    boolean changed(String channel, String label, String value) {
+        Channel state = channels.computeIfAbsent(channel, k -> new Channel());
+
+        synchronized (state) {
+            String last = state.values.put(label, value);
+
+            if (value.equals(last)) {
+                unchanged.increment();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    long getAccepted() {
+        return accepted.sum();
+    }
+
+    long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    long getUnchanged() {
+        return unchanged.sum();
+    }
+
+    private static class Channel {
+        private long time;
+        private String command;
+        private String payload;
+        // label -> last value
+        private final Map<String, String> values = new HashMap<>();
+    }
+}
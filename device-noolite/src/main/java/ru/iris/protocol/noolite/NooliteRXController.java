@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import reactor.bus.Event;
 import reactor.bus.EventBus;
@@ -39,6 +40,7 @@ public class NooliteRXController extends AbstractProtocolService {
     private final ConfigLoader config;
     private final DeviceRegistry registry;
     private RX2164 rx;
+    private NooliteFrameFilter filter;
 
     @Autowired
     public NooliteRXController(EventBus r,
@@ -54,11 +56,35 @@ public class NooliteRXController extends AbstractProtocolService {
         logger.info("NooliteRXController started");
         if (!config.loadPropertiesFormCfgDirectory("noolite"))
             logger.error("Cant load noolite-specific configs. Check noolite.property if exists");
+
+        String window = config.get("nooliteRxDedupMs");
+        filter = new NooliteFrameFilter(window != null ? Long.parseLong(window.trim()) : 1500L);
     }
 
     @Override
     public void onShutdown() {
         logger.info("NooliteRXController stopping");
+        logger.info("Noolite RX: {} frames handled, {} duplicate frames and {} unchanged sensor values dropped",
+                filter.getAccepted(), filter.getDuplicates(), filter.getUnchanged());
+    }
+
+    /**
+     * Publishes numbers of dropped repeated frames and unchanged sensor values since start, so they can be seen
+     * by rules and in STOMP event stream while service runs.
+     */
+    @Scheduled(fixedDelay = 5 * 60 * 1000, initialDelay = 60_000) // 5 minutes
+    void publishStats() {
+        if (filter == null) {
+            return;
+        }
+
+        broadcast("event.device.noolite.rx.stats", new DeviceProtocolEvent(SourceProtocol.NOOLITE, "RxDuplicates",
+                String.valueOf(filter.getDuplicates()), ValueType.LONG));
+        broadcast("event.device.noolite.rx.stats", new DeviceProtocolEvent(SourceProtocol.NOOLITE, "RxUnchanged",
+                String.valueOf(filter.getUnchanged()), ValueType.LONG));
+
+        logger.debug("Noolite RX: {} frames handled, {} duplicate frames and {} unchanged sensor values dropped",
+                filter.getAccepted(), filter.getDuplicates(), filter.getUnchanged());
     }
 
     @Override
@@ -123,6 +149,12 @@ public class NooliteRXController extends AbstractProtocolService {
 
     private void doWork(Notification notification) {
         String channel = String.valueOf(notification.getChannel());
+
+        if (!filter.accept(channel, notification.getType().name(), payload(notification))) {
+            logger.debug("Channel {}: repeated {} frame dropped", channel, notification.getType());
+            return;
+        }
+
         SensorType sensor = (SensorType) notification.getValue("sensortype");
 
         logger.debug("Message to RX from channel " + channel);
@@ -318,51 +350,78 @@ public class NooliteRXController extends AbstractProtocolService {
                     logger.info("Channel {}: Humidity: {}%", channel, notification.getValue("humi"));
                 }
 
-                registry.addChange(
-                        device,
-                        StandartDeviceValueLabel.TEMPERATURE.getName(),
-                        notification.getValue("temp").toString(),
-                        ValueType.DOUBLE
-                );
+                String temperature = notification.getValue("temp").toString();
+                boolean changed = false;
 
-                registry.addChange(
-                        device,
-                        StandartDeviceValueLabel.BATTERY.getName(),
-                        batteryState.name(),
-                        ValueType.STRING
-                );
+                if (filter.changed(channel, StandartDeviceValueLabel.TEMPERATURE.getName(), temperature)) {
+                    registry.addChange(
+                            device,
+                            StandartDeviceValueLabel.TEMPERATURE.getName(),
+                            temperature,
+                            ValueType.DOUBLE
+                    );
 
-                broadcast(Queue.EVENT_TEMPERATURE, new DeviceChangeEvent(
-                        channel,
-                        SourceProtocol.NOOLITE,
-                        StandartDeviceValueLabel.TEMPERATURE.getName(),
-                        notification.getValue("temp").toString(),
-                        ValueType.DOUBLE)
-                );
+                    broadcast(Queue.EVENT_TEMPERATURE, new DeviceChangeEvent(
+                            channel,
+                            SourceProtocol.NOOLITE,
+                            StandartDeviceValueLabel.TEMPERATURE.getName(),
+                            temperature,
+                            ValueType.DOUBLE)
+                    );
 
-                broadcast(Queue.EVENT_BATTERY_STATUS, new DeviceChangeEvent(
-                        channel,
-                        SourceProtocol.NOOLITE,
-                        StandartDeviceValueLabel.BATTERY.getName(),
-                        batteryState.toString(),
-                        ValueType.STRING)
-                );
+                    changed = true;
+                }
 
-                if (device.getType().equals(TEMP_HUMI_SENSOR)) {
+                if (filter.changed(channel, StandartDeviceValueLabel.BATTERY.getName(), batteryState.name())) {
                     registry.addChange(
                             device,
-                            StandartDeviceValueLabel.HUMIDITY.getName(),
-                            notification.getValue("humi").toString(),
-                            ValueType.DOUBLE
+                            StandartDeviceValueLabel.BATTERY.getName(),
+                            batteryState.name(),
+                            ValueType.STRING
                     );
 
-                    broadcast(Queue.EVENT_HUMIDITY, new DeviceChangeEvent(
+                    broadcast(Queue.EVENT_BATTERY_STATUS, new DeviceChangeEvent(
                             channel,
                             SourceProtocol.NOOLITE,
-                            StandartDeviceValueLabel.HUMIDITY.getName(),
-                            notification.getValue("humi").toString(),
-                            ValueType.BYTE
-                    ));
+                            StandartDeviceValueLabel.BATTERY.getName(),
+                            batteryState.toString(),
+                            ValueType.STRING)
+                    );
+
+                    changed = true;
+                }
+
+                if (device.getType().equals(TEMP_HUMI_SENSOR)) {
+                    String humidity = notification.getValue("humi").toString();
+
+                    if (filter.changed(channel, StandartDeviceValueLabel.HUMIDITY.getName(), humidity)) {
+                        registry.addChange(
+                                device,
+                                StandartDeviceValueLabel.HUMIDITY.getName(),
+                                humidity,
+                                ValueType.DOUBLE
+                        );
+
+                        broadcast(Queue.EVENT_HUMIDITY, new DeviceChangeEvent(
+                                channel,
+                                SourceProtocol.NOOLITE,
+                                StandartDeviceValueLabel.HUMIDITY.getName(),
+                                humidity,
+                                ValueType.BYTE
+                        ));
+
+                        changed = true;
+                    }
+                }
+
+                // periodic report without changes still proves that sensor is alive
+                if (!changed) {
+                    broadcast(Queue.EVENT_DEVICE_PING, DeviceChangeEvent.builder()
+                            .channel(channel)
+                            .protocol(SourceProtocol.NOOLITE)
+                            .eventLabel("Ping")
+                            .build()
+                    );
                 }
 
                 break;
@@ -383,4 +442,19 @@ public class NooliteRXController extends AbstractProtocolService {
                 logger.info("Unknown command: {}", notification.getType().name());
         }
     }
+
+    /**
+     * Values carried by frame, frames of the same command and payload are repeats.
+     */
+    private static String payload(Notification notification) {
+        switch (notification.getType()) {
+            case SET_LEVEL:
+                return String.valueOf(notification.getValue(StandartDeviceValueLabel.LEVEL.getName()));
+            case TEMP_HUMI:
+                return notification.getValue("temp") + "/" + notification.getValue("humi") + "/"
+                        + notification.getValue(StandartDeviceValueLabel.BATTERY.getName());
+            default:
+                return "";
+        }
+    }
 }
@@ -18,7 +18,7 @@ import ru.iris.models.bus.devices.DeviceProtocolEvent;
 import ru.iris.models.database.Device;
 import ru.iris.models.protocol.data.DataLevel;
 import ru.iris.models.protocol.enums.*;
-import ru.iris.noolite4j.sender.PC1132;
+import ru.iris.protocol.noolite.NooliteTransmitQueue.Command;
 
 @Component
 @Profile("noolite")
@@ -28,7 +28,8 @@ import ru.iris.noolite4j.sender.PC1132;
 public class NooliteTXController extends AbstractProtocolService {
 
     private final ConfigLoader config;
-    private PC1132 pc;
+    private NooliteTransmitter pc;
+    private NooliteTransmitQueue tx;
 
     @Autowired
     private DeviceRegistry registry;
@@ -44,13 +45,25 @@ public class NooliteTXController extends AbstractProtocolService {
         if (!config.loadPropertiesFormCfgDirectory("noolite"))
             logger.error("Cant load noolite-specific configs. Check noolite.property if exists");
 
-        pc = new PC1132();
+        pc = new PC1132Transmitter();
         pc.open();
+
+        tx = new NooliteTransmitQueue(
+                pc,
+                getInt("nooliteTxQueueSize", 32),
+                getInt("nooliteTxFrameGapMs", 150),
+                getInt("nooliteTxRepeats", 2),
+                getInt("nooliteTxRepeatIntervalMs", 750)
+        );
+        tx.start();
     }
 
     @Override
     public void onShutdown() {
         logger.info("NooliteTXController stopping");
+        tx.close();
+        logger.info("Noolite TX: {} frames sent, {} commands superseded, {} dropped",
+                tx.getSent(), tx.getSuperseded(), tx.getRejected());
         logger.info("Closing Noolite PC device");
         pc.close();
         logger.info("Closed");
@@ -101,7 +114,9 @@ public class NooliteTXController extends AbstractProtocolService {
                 switch (EventLabel.parse(n.getEventLabel())) {
                     case TURN_ON:
                         logger.info("Turn ON device on channel {}", n.getChannel());
-                        pc.turnOn(Byte.valueOf(n.getChannel()));
+                        if (!send(Command.turnOn(Byte.valueOf(n.getChannel())))) {
+                            break;
+                        }
 
 		                    registry.addChange(
 				                    device,
@@ -120,7 +135,9 @@ public class NooliteTXController extends AbstractProtocolService {
                         break;
                     case TURN_OFF:
                         logger.info("Turn OFF device on channel {}", n.getChannel());
-                        pc.turnOff(Byte.valueOf(n.getChannel()));
+                        if (!send(Command.turnOff(Byte.valueOf(n.getChannel())))) {
+                            break;
+                        }
 
 		                    registry.addChange(
 				                    device,
@@ -141,7 +158,9 @@ public class NooliteTXController extends AbstractProtocolService {
                         if (n.getData() instanceof DataLevel) {
                             DataLevel data = (DataLevel) n.getData();
                             logger.info("Set level {} on channel {}", data.getTo(), n.getChannel());
-                            pc.setLevel(Byte.valueOf(n.getChannel()), (Short.valueOf(data.getTo())).byteValue());
+                            if (!send(Command.setLevel(Byte.valueOf(n.getChannel()), (Short.valueOf(data.getTo())).byteValue()))) {
+                                break;
+                            }
 
 		                        registry.addChange(
 				                        device,
@@ -161,11 +180,11 @@ public class NooliteTXController extends AbstractProtocolService {
                         break;
                     case BIND_TX:
                         logger.info("Incoming bind TX to channel {} request", n.getChannel());
-                        pc.bindChannel(Byte.valueOf(n.getChannel()));
+                        send(Command.bind(Byte.valueOf(n.getChannel())));
                         break;
                     case UNBIND_TX:
                         logger.info("Incoming unbind TX from channel {} request", n.getChannel());
-                        pc.unbindChannel(Byte.valueOf(n.getChannel()));
+                        send(Command.unbind(Byte.valueOf(n.getChannel())));
                         break;
                     default:
                         logger.info("Received unknown request for noolitetx service! Class: {}", event.getData().getClass());
@@ -174,4 +193,23 @@ public class NooliteTXController extends AbstractProtocolService {
             }
         };
     }
+
+    /**
+     * Command is sent by TX worker, bus thread doesn't wait for USB device.
+     *
+     * @return false if command is dropped
+     */
+    private boolean send(Command command) {
+        if (!tx.submit(command)) {
+            logger.error("Noolite TX queue is full, command {} is dropped", command);
+            return false;
+        }
+
+        return true;
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = config.get(key);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
 }
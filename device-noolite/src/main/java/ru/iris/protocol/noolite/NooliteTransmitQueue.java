@@ -0,0 +1,362 @@
+package ru.iris.protocol.noolite;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends Noolite commands from dedicated thread, so bus thread is never blocked by USB device.
+ * <p>
+ * Noolite is one-way RF: transmitter can't know if command is received, so each command is repeated
+ * several times. Frames are spaced at least by frame gap, new commands go before repeats. Command waiting
+ * in queue is replaced by newer command of the same channel, new command also cancels repeats of the old one.
+ * Queue holds one command per channel at most and is bounded.
+ */
+@Slf4j
+class NooliteTransmitQueue {
+
+    private final NooliteTransmitter transmitter;
+    private final int capacity;
+    private final long frameGapNanos;
+    private final int repeats;
+    private final long repeatIntervalNanos;
+
+    private final Object lock = new Object();
+    // channel key -> command, in order of arrival
+    private final LinkedHashMap<String, Command> pending = new LinkedHashMap<>();
+    private final Map<String, Repeat> scheduled = new HashMap<>();
+    private long lastFrame;
+    private boolean running;
+    private boolean transmitting;
+    private Thread worker;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param capacity         maximum number of channels with waiting commands
+     * @param frameGapMs       minimum time between end of one frame and start of the next one
+     * @param repeats          how many times command is repeated after first transmission
+     * @param repeatIntervalMs time between transmissions of the same command
+     */
+    NooliteTransmitQueue(NooliteTransmitter transmitter, int capacity, long frameGapMs, int repeats, long repeatIntervalMs) {
+        this.transmitter = transmitter;
+        this.capacity = capacity;
+        this.frameGapNanos = TimeUnit.MILLISECONDS.toNanos(frameGapMs);
+        this.repeats = repeats;
+        this.repeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(repeatIntervalMs);
+    }
+
+    void start() {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+
+            running = true;
+            lastFrame = System.nanoTime() - frameGapNanos;
+            worker = new Thread(this::work, "noolite-tx");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Stops worker, waiting commands and repeats are dropped. Frame being sent is finished.
+     */
+    void close() {
+        Thread thread;
+
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+
+            running = false;
+
+            if (!pending.isEmpty()) {
+                logger.info("Dropping {} waiting Noolite commands", pending.size());
+            }
+
+            pending.clear();
+            scheduled.clear();
+            thread = worker;
+            lock.notifyAll();
+        }
+
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues command, returns immediately.
+     *
+     * @return false if queue is full or stopped and command is dropped
+     */
+    boolean submit(Command command) {
+        String key = command.key();
+
+        synchronized (lock) {
+            if (!running) {
+                return false;
+            }
+
+            scheduled.remove(key);
+
+            if (pending.containsKey(key)) {
+                Command replaced = pending.put(key, command);
+                superseded.increment();
+                logger.debug("Noolite command {} is replaced by {}", replaced, command);
+            } else if (pending.size() >= capacity) {
+                rejected.increment();
+                return false;
+            } else {
+                pending.put(key, command);
+            }
+
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Waits until there is nothing to send: no waiting commands, no scheduled repeats and no frame in progress.
+     *
+     * @return false if queue didn't become idle within timeout
+     */
+    boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        synchronized (lock) {
+            while (transmitting || !pending.isEmpty() || !scheduled.isEmpty()) {
+                long wait = deadline - System.nanoTime();
+
+                if (wait <= 0) {
+                    return false;
+                }
+
+                lock.wait(wait / 1_000_000L, (int) (wait % 1_000_000L));
+            }
+
+            return true;
+        }
+    }
+
+    long getSent() {
+        return sent.sum();
+    }
+
+    long getSuperseded() {
+        return superseded.sum();
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    private void work() {
+        while (true) {
+            Command command;
+            int left;
+
+            synchronized (lock) {
+                Repeat next = take();
+
+                if (next == null) {
+                    return;
+                }
+
+                command = next.command;
+                left = next.left;
+                transmitting = true;
+            }
+
+            transmit(command);
+
+            synchronized (lock) {
+                lastFrame = System.nanoTime();
+                transmitting = false;
+
+                // newer command of the channel may arrive while this one was sent
+                if (running && left > 0 && !pending.containsKey(command.key())) {
+                    scheduled.put(command.key(), new Repeat(command, left - 1, lastFrame + repeatIntervalNanos));
+                }
+
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the next frame to send, must be called holding the lock.
+     *
+     * @return command with number of repeats left, or null if queue is stopped
+     */
+    private Repeat take() {
+        while (running) {
+            long now = System.nanoTime();
+            long ready = lastFrame + frameGapNanos;
+            long wait;
+
+            if (!pending.isEmpty()) {
+                wait = ready - now;
+
+                if (wait <= 0) {
+                    Iterator<Command> it = pending.values().iterator();
+                    Command command = it.next();
+                    it.remove();
+
+                    return new Repeat(command, command.isRepeatable() ? repeats : 0, now);
+                }
+            } else {
+                Repeat earliest = null;
+
+                for (Repeat repeat : scheduled.values()) {
+                    if (earliest == null || repeat.due - earliest.due < 0) {
+                        earliest = repeat;
+                    }
+                }
+
+                if (earliest == null) {
+                    wait = 0;
+                } else {
+                    wait = Math.max(ready - now, earliest.due - now);
+
+                    if (wait <= 0) {
+                        scheduled.remove(earliest.command.key());
+                        return earliest;
+                    }
+                }
+            }
+
+            try {
+                if (wait == 0) {
+                    lock.wait();
+                } else {
+                    lock.wait(wait / 1_000_000L, (int) (wait % 1_000_000L));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    private void transmit(Command command) {
+        try {
+            switch (command.action) {
+                case TURN_ON:
+                    transmitter.turnOn(command.channel);
+                    break;
+                case TURN_OFF:
+                    transmitter.turnOff(command.channel);
+                    break;
+                case SET_LEVEL:
+                    transmitter.setLevel(command.channel, command.level);
+                    break;
+                case BIND:
+                    transmitter.bindChannel(command.channel);
+                    break;
+                case UNBIND:
+                    transmitter.unbindChannel(command.channel);
+                    break;
+            }
+
+            sent.increment();
+        } catch (RuntimeException e) {
+            logger.error("Cant send Noolite command {}", command, e);
+        }
+    }
+
+    enum Action {
+        TURN_ON, TURN_OFF, SET_LEVEL, BIND, UNBIND
+    }
+
+    static final class Command {
+        private final Action action;
+        private final byte channel;
+        private final byte level;
+
+        private Command(Action action, byte channel, byte level) {
+            this.action = action;
+            this.channel = channel;
+            this.level = level;
+        }
+
+        static Command turnOn(byte channel) {
+            return new Command(Action.TURN_ON, channel, (byte) 0);
+        }
+
+        static Command turnOff(byte channel) {
+            return new Command(Action.TURN_OFF, channel, (byte) 0);
+        }
+
+        static Command setLevel(byte channel, byte level) {
+            return new Command(Action.SET_LEVEL, channel, level);
+        }
+
+        static Command bind(byte channel) {
+            return new Command(Action.BIND, channel, (byte) 0);
+        }
+
+        static Command unbind(byte channel) {
+            return new Command(Action.UNBIND, channel, (byte) 0);
+        }
+
+        Action getAction() {
+            return action;
+        }
+
+        byte getChannel() {
+            return channel;
+        }
+
+        byte getLevel() {
+            return level;
+        }
+
+        /**
+         * State commands are absolute and safe to repeat, binding commands are sent once.
+         */
+        boolean isRepeatable() {
+            return action != Action.BIND && action != Action.UNBIND;
+        }
+
+        /**
+         * Commands of the same key supersede each other.
+         */
+        private String key() {
+            return (isRepeatable() ? "state/" : "bind/") + channel;
+        }
+
+        @Override
+        public String toString() {
+            return action == Action.SET_LEVEL
+                    ? action + " " + (level & 0xFF) + " on channel " + channel
+                    : action + " on channel " + channel;
+        }
+    }
+
+    private static final class Repeat {
+        private final Command command;
+        private final int left;
+        private final long due;
+
+        private Repeat(Command command, int left, long due) {
+            this.command = command;
+            this.left = left;
+            this.due = due;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.iris.protocol.noolite;
+
+/**
+ * Noolite transmitter adapter (PC11xx USB dongle). Calls block until frame is written to device.
+ */
+interface NooliteTransmitter {
+
+    void open();
+
+    void close();
+
+    void turnOn(byte channel);
+
+    void turnOff(byte channel);
+
+    void setLevel(byte channel, byte level);
+
+    void bindChannel(byte channel);
+
+    void unbindChannel(byte channel);
+}
@@ -0,0 +1,43 @@
+package ru.iris.protocol.noolite;
+
+import ru.iris.noolite4j.sender.PC1132;
+
+class PC1132Transmitter implements NooliteTransmitter {
+
+    private final PC1132 pc = new PC1132();
+
+    @Override
+    public void open() {
+        pc.open();
+    }
+
+    @Override
+    public void close() {
+        pc.close();
+    }
+
+    @Override
+    public void turnOn(byte channel) {
+        pc.turnOn(channel);
+    }
+
+    @Override
+    public void turnOff(byte channel) {
+        pc.turnOff(channel);
+    }
+
+    @Override
+    public void setLevel(byte channel, byte level) {
+        pc.setLevel(channel, level);
+    }
+
+    @Override
+    public void bindChannel(byte channel) {
+        pc.bindChannel(channel);
+    }
+
+    @Override
+    public void unbindChannel(byte channel) {
+        pc.unbindChannel(channel);
+    }
+}
@@ -0,0 +1,224 @@
+package ru.iris.protocol.noolite;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ru.iris.protocol.noolite.NooliteTransmitQueue.Command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class NooliteTransmitQueueTests {
+
+    private static final long TIMEOUT = 5000L;
+
+    private FakePC pc = new FakePC();
+    private NooliteTransmitQueue queue;
+
+    @After
+    public void tearDown() {
+        pc.release();
+        queue.close();
+    }
+
+    @Test
+    public void repeats() throws Exception {
+        queue = new NooliteTransmitQueue(pc, 8, 10, 2, 100);
+        queue.start();
+
+        Assert.assertTrue(queue.submit(Command.turnOn((byte) 1)));
+        Assert.assertTrue(queue.awaitIdle(TIMEOUT));
+
+        List<Frame> frames = pc.frames();
+        Assert.assertEquals(3, frames.size());
+
+        for (int i = 1; i < frames.size(); i++) {
+            Assert.assertEquals("ON 1", frames.get(i).command);
+            Assert.assertTrue(frames.get(i).time - frames.get(i - 1).time >= TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    @Test
+    public void frameGap() throws Exception {
+        queue = new NooliteTransmitQueue(pc, 8, 50, 0, 100);
+        queue.start();
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(queue.submit(Command.turnOff((byte) i)));
+        }
+
+        Assert.assertTrue(queue.awaitIdle(TIMEOUT));
+
+        List<Frame> frames = pc.frames();
+        Assert.assertEquals(5, frames.size());
+
+        for (int i = 1; i < frames.size(); i++) {
+            Assert.assertEquals("OFF " + i, frames.get(i).command);
+            Assert.assertTrue(frames.get(i).time - frames.get(i - 1).time >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    @Test
+    public void supersede() throws Exception {
+        queue = new NooliteTransmitQueue(pc, 8, 10, 0, 100);
+        pc.block();
+        queue.start();
+
+        // first command occupies worker, others wait in queue
+        queue.submit(Command.setLevel((byte) 1, (byte) 10));
+        pc.awaitBlocked();
+
+        for (int level = 20; level <= 100; level += 10) {
+            Assert.assertTrue(queue.submit(Command.setLevel((byte) 1, (byte) level)));
+        }
+
+        queue.submit(Command.turnOn((byte) 2));
+        pc.release();
+        Assert.assertTrue(queue.awaitIdle(TIMEOUT));
+
+        List<Frame> frames = pc.frames();
+        Assert.assertEquals(3, frames.size());
+        Assert.assertEquals("LEVEL 1 10", frames.get(0).command);
+        Assert.assertEquals("LEVEL 1 100", frames.get(1).command);
+        Assert.assertEquals("ON 2", frames.get(2).command);
+        Assert.assertEquals(8, queue.getSuperseded());
+    }
+
+    @Test
+    public void newCommandCancelsRepeats() throws Exception {
+        queue = new NooliteTransmitQueue(pc, 8, 10, 3, 150);
+        queue.start();
+
+        queue.submit(Command.turnOn((byte) 1));
+        // first transmission is done or in progress, repeats are not sent yet
+        pc.awaitFrames(1);
+        queue.submit(Command.turnOff((byte) 1));
+        Assert.assertTrue(queue.awaitIdle(TIMEOUT));
+
+        List<Frame> frames = pc.frames();
+        Assert.assertEquals("ON 1", frames.get(0).command);
+
+        for (int i = 1; i < frames.size(); i++) {
+            Assert.assertEquals("OFF 1", frames.get(i).command);
+        }
+
+        Assert.assertEquals(5, frames.size());
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        queue = new NooliteTransmitQueue(pc, 2, 10, 0, 100);
+        pc.block();
+        queue.start();
+
+        queue.submit(Command.turnOn((byte) 1));
+        pc.awaitBlocked();
+
+        Assert.assertTrue(queue.submit(Command.turnOn((byte) 2)));
+        Assert.assertTrue(queue.submit(Command.turnOn((byte) 3)));
+        Assert.assertFalse(queue.submit(Command.turnOn((byte) 4)));
+        // waiting command of channel can still be replaced
+        Assert.assertTrue(queue.submit(Command.turnOff((byte) 2)));
+        // binding is not superseded by state command
+        Assert.assertFalse(queue.submit(Command.bind((byte) 3)));
+        Assert.assertEquals(2, queue.getRejected());
+
+        pc.release();
+        Assert.assertTrue(queue.awaitIdle(TIMEOUT));
+
+        Assert.assertEquals(3, pc.frames().size());
+        Assert.assertTrue(queue.submit(Command.turnOn((byte) 4)));
+    }
+
+    private static class Frame {
+        private final String command;
+        private final long time;
+
+        private Frame(String command, long time) {
+            this.command = command;
+            this.time = time;
+        }
+    }
+
+    private static class FakePC implements NooliteTransmitter {
+        private final List<Frame> frames = new ArrayList<>();
+        private final Semaphore sent = new Semaphore(0);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            Assert.assertTrue(blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+        void awaitFrames(int count) throws InterruptedException {
+            Assert.assertTrue(sent.tryAcquire(count, TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+        void release() {
+            if (gate != null) {
+                gate.countDown();
+            }
+        }
+
+        synchronized List<Frame> frames() {
+            return new ArrayList<>(frames);
+        }
+
+        private void frame(String command) {
+            synchronized (this) {
+                frames.add(new Frame(command, System.nanoTime()));
+            }
+
+            sent.release();
+            blocked.countDown();
+
+            try {
+                if (gate != null) {
+                    gate.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void turnOn(byte channel) {
+            frame("ON " + channel);
+        }
+
+        @Override
+        public void turnOff(byte channel) {
+            frame("OFF " + channel);
+        }
+
+        @Override
+        public void setLevel(byte channel, byte level) {
+            frame("LEVEL " + channel + " " + (level & 0xFF));
+        }
+
+        @Override
+        public void bindChannel(byte channel) {
+            frame("BIND " + channel);
+        }
+
+        @Override
+        public void unbindChannel(byte channel) {
+            frame("UNBIND " + channel);
+        }
+    }
+}
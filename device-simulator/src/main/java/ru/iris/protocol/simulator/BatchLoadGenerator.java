@@ -0,0 +1,206 @@
+package ru.iris.protocol.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of batch ingestion API (POST /api/event/batch) of running instance with httpapi profile.
+ * Each thread sends batches of temperature values of random simulated channels one after another.
+ * <p>
+ * Usage: BatchLoadGenerator [url] [threads] [channels] [batch size] [seconds] [json|ndjson], defaults are
+ * http://localhost:9000 4 1000 500 60 ndjson
+ */
+public class BatchLoadGenerator {
+
+    private static final int SAMPLES = 100_000;
+
+    private final String url;
+    private final int channels;
+    private final int batchSize;
+    private final boolean ndjson;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final long[] latencies = new long[SAMPLES];
+    private int latencyCount;
+
+    private BatchLoadGenerator(String url, int channels, int batchSize, boolean ndjson) {
+        this.url = url + "/api/event/batch";
+        this.channels = channels;
+        this.batchSize = batchSize;
+        this.ndjson = ndjson;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String url = args.length > 0 ? args[0] : "http://localhost:9000";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int channels = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 60;
+        boolean ndjson = args.length <= 5 || args[5].equalsIgnoreCase("ndjson");
+
+        BatchLoadGenerator generator = new BatchLoadGenerator(url, channels, batchSize, ndjson);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Thread[] workers = new Thread[threads];
+
+        System.out.printf("Sending %s batches of %d items for %d channels to %s from %d threads for %ds%n",
+                ndjson ? "NDJSON" : "JSON", batchSize, channels, generator.url, threads, seconds);
+
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> generator.work(deadline), "batch-load-" + i);
+            workers[i].start();
+        }
+
+        long start = System.nanoTime();
+        long last = start;
+        long lastItems = 0;
+
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(Math.min(10_000L, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))));
+            long now = System.nanoTime();
+            long total = generator.items.get();
+            System.out.printf("%.0f items/s, total %d items, %d requests, %d errors%n",
+                    (total - lastItems) / ((now - last) / 1_000_000_000.0), total, generator.requests.get(), generator.errors.get());
+            last = now;
+            lastItems = total;
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        generator.summary(System.nanoTime() - start);
+    }
+
+    private void work(long deadline) {
+        while (System.nanoTime() < deadline) {
+            byte[] body = batch();
+            long start = System.nanoTime();
+
+            try {
+                if (send(body)) {
+                    items.addAndGet(batchSize);
+                } else {
+                    errors.incrementAndGet();
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                System.err.println("Request failed: " + e);
+            }
+
+            requests.incrementAndGet();
+            record(System.nanoTime() - start);
+        }
+    }
+
+    private byte[] batch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder body = new StringBuilder(batchSize * 100);
+        long now = System.currentTimeMillis();
+
+        if (!ndjson) {
+            body.append('[');
+        }
+
+        for (int i = 0; i < batchSize; i++) {
+            if (i > 0) {
+                body.append(ndjson ? '\n' : ',');
+            }
+
+            body.append("{\"channel\":\"load-").append(random.nextInt(channels))
+                    .append("\",\"label\":\"temperature\",\"value\":\"")
+                    .append(Math.round((20 + random.nextGaussian() * 3) * 100) / 100.0)
+                    .append("\",\"type\":\"DOUBLE\",\"timestamp\":").append(now).append('}');
+        }
+
+        body.append(ndjson ? '\n' : ']');
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if batch is accepted
+     */
+    private boolean send(byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(60_000);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", ndjson ? "application/x-ndjson" : "application/json");
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        int code = connection.getResponseCode();
+        InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String response = in != null ? read(in) : "";
+
+        // connection is returned to keep-alive cache after response is read fully
+        return code == HttpURLConnection.HTTP_OK && !response.contains("\"ERROR\"");
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private synchronized void record(long nanos) {
+        // reservoir sampling keeps uniform sample of all requests
+        if (latencyCount < SAMPLES) {
+            latencies[latencyCount] = nanos;
+        } else {
+            long index = ThreadLocalRandom.current().nextLong(latencyCount + 1L);
+
+            if (index < SAMPLES) {
+                latencies[(int) index] = nanos;
+            }
+        }
+
+        latencyCount++;
+    }
+
+    private synchronized void summary(long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        long[] sorted = Arrays.copyOf(latencies, Math.min(latencyCount, SAMPLES));
+        Arrays.sort(sorted);
+
+        System.out.printf("Done: %d requests, %d items, %d errors in %.1fs: %.1f req/s, %.0f items/s%n",
+                requests.get(), items.get(), errors.get(), seconds, requests.get() / seconds, items.get() / seconds);
+        System.out.printf("Request latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                toMs(percentile(sorted, 0.5)), toMs(percentile(sorted, 0.99)),
+                toMs(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
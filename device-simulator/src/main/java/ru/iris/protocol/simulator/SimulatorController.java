@@ -0,0 +1,261 @@
+package ru.iris.protocol.simulator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import reactor.bus.Event;
+import reactor.fn.Consumer;
+import ru.iris.commons.annotations.RunOnStartup;
+import ru.iris.commons.config.ConfigLoader;
+import ru.iris.commons.registry.DeviceRegistry;
+import ru.iris.commons.service.AbstractProtocolService;
+import ru.iris.models.bus.Queue;
+import ru.iris.models.bus.devices.DeviceChangeEvent;
+import ru.iris.models.bus.devices.DeviceCommandEvent;
+import ru.iris.models.bus.transport.GPSDataEvent;
+import ru.iris.models.database.Device;
+import ru.iris.models.protocol.data.DataLevel;
+import ru.iris.models.protocol.enums.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated device farm for load testing without hardware. Generates events of Xiaomi sensors, Z-Wave dimmers,
+ * Noolite RX channels and transport GPS trackers through the same registry and bus paths as real drivers,
+ * and reports end-to-end throughput and latency.
+ * <p>
+ * Simulated devices have channels with "sim-" prefix. Profile shouldn't be combined with real protocol profiles,
+ * as their controllers receive commands to simulated devices too.
+ */
+@Component
+@Profile("simulator")
+@Qualifier("simulator")
+@RunOnStartup
+@Slf4j
+public class SimulatorController extends AbstractProtocolService {
+
+    private static final String PREFIX = "sim-";
+
+    private final ConfigLoader config;
+    private final DeviceRegistry registry;
+    private final SimulatorStats stats = new SimulatorStats();
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public SimulatorController(ConfigLoader config,
+                               DeviceRegistry registry) {
+        this.config = config;
+        this.registry = registry;
+    }
+
+    @Override
+    public void onStartup() {
+        logger.info("SimulatorController started");
+        if (!config.loadPropertiesFormCfgDirectory("simulator"))
+            logger.error("Cant load simulator-specific configs. Check simulator.property if exists");
+    }
+
+    @Override
+    public void onShutdown() {
+        logger.info("SimulatorController stopping");
+
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void subscribe() throws Exception {
+        // all generated events, to measure delivery latency
+        addSubscription("event\\..*");
+        addSubscription(Queue.COMMAND_DEVICE);
+    }
+
+    @Override
+    public Consumer<Event<?>> handleMessage() {
+        return event -> {
+            Object data = event.getData();
+
+            if (data instanceof DeviceCommandEvent) {
+                handleCommand((DeviceCommandEvent) data);
+            } else {
+                stats.delivered(data);
+            }
+        };
+    }
+
+    @Override
+    @Async
+    public void run() {
+        executor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int sensors = getInt("simulator.xiaomi.sensors", 0);
+        int dimmers = getInt("simulator.zwave.dimmers", 0);
+        int channels = getInt("simulator.noolite.channels", 0);
+        int trackers = getInt("simulator.transport.trackers", 0);
+
+        for (int i = 1; i <= sensors; i++) {
+            Device device = getOrCreateDevice(SourceProtocol.XIAOMI, PREFIX + i, DeviceType.TEMP_HUMI_SENSOR, "Simulated sensor");
+            schedule(getInt("simulator.xiaomi.interval", 10), () -> sensorReport(device));
+        }
+
+        for (int i = 1; i <= dimmers; i++) {
+            Device device = getOrCreateDevice(SourceProtocol.ZWAVE, PREFIX + i, DeviceType.MULTILEVEL_SWITCH, "Simulated dimmer");
+            schedule(getInt("simulator.zwave.interval", 5), () -> dimmerReport(device));
+        }
+
+        for (int i = 1; i <= channels; i++) {
+            Device device = getOrCreateDevice(SourceProtocol.NOOLITE, PREFIX + i, DeviceType.BINARY_SWITCH, "Simulated switch");
+            schedule(getInt("simulator.noolite.interval", 30), () -> switchReport(device));
+        }
+
+        for (int i = 1; i <= trackers; i++) {
+            int id = 1000 + i;
+            schedule(getInt("simulator.transport.interval", 1), () -> gpsReport(id));
+        }
+
+        int report = getInt("simulator.report.interval", 60);
+        executor.scheduleWithFixedDelay(() -> logger.info("Simulator: {}", stats.report()), report, report, TimeUnit.SECONDS);
+
+        logger.info("Simulating {} Xiaomi sensors, {} Z-Wave dimmers, {} Noolite channels, {} GPS trackers",
+                sensors, dimmers, channels, trackers);
+    }
+
+    @Override
+    public String getServiceIdentifier() {
+        return "simulator";
+    }
+
+    private void sensorReport(Device device) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        send(device, Queue.EVENT_TEMPERATURE, StandartDeviceValueLabel.TEMPERATURE.getName(),
+                String.valueOf(Math.round((20 + random.nextGaussian() * 3) * 100) / 100.0), ValueType.DOUBLE);
+        send(device, Queue.EVENT_HUMIDITY, StandartDeviceValueLabel.HUMIDITY.getName(),
+                String.valueOf(Math.round((45 + random.nextGaussian() * 10) * 100) / 100.0), ValueType.DOUBLE);
+    }
+
+    private void dimmerReport(Device device) {
+        String level = String.valueOf(ThreadLocalRandom.current().nextInt(100));
+        send(device, Queue.EVENT_DEVICE_LEVEL, StandartDeviceValueLabel.LEVEL.getName(), level, ValueType.BYTE);
+    }
+
+    private void switchReport(Device device) {
+        if (ThreadLocalRandom.current().nextBoolean()) {
+            send(device, Queue.EVENT_DEVICE_ON, StandartDeviceValueLabel.LEVEL.getName(),
+                    StandartDeviceValue.FULL_ON.getValue(), ValueType.BYTE);
+        } else {
+            send(device, Queue.EVENT_DEVICE_OFF, StandartDeviceValueLabel.LEVEL.getName(),
+                    StandartDeviceValue.FULL_OFF.getValue(), ValueType.BYTE);
+        }
+    }
+
+    private void gpsReport(int id) {
+        // moves along a circle of ~1 km around fixed point
+        double angle = (System.currentTimeMillis() / 1000.0 + id * 60L) / 600.0 * 2 * Math.PI;
+
+        GPSDataEvent event = GPSDataEvent.builder()
+                .id(id)
+                .latitude(55.75 + Math.sin(angle) * 0.009)
+                .longitude(37.62 + Math.cos(angle) * 0.015)
+                .elevation(150D)
+                .speed(36D)
+                .time(System.currentTimeMillis())
+                .build();
+
+        long start = stats.start();
+        stats.sent(event, start);
+        broadcast(Queue.EVENT_TRANSPORT, event);
+    }
+
+    private void send(Device device, Queue queue, String label, String value, ValueType type) {
+        long start = stats.start();
+
+        registry.addChange(device, label, value, type);
+
+        DeviceChangeEvent event = new DeviceChangeEvent(device.getChannel(), device.getSource(), label, value, type);
+        stats.sent(event, start);
+        broadcast(queue, event);
+    }
+
+    private void handleCommand(DeviceCommandEvent command) {
+        if (command.getChannel() == null || !command.getChannel().startsWith(PREFIX)) {
+            return;
+        }
+
+        Device device = registry.getDevice(command.getProtocol(), command.getChannel());
+
+        if (device == null) {
+            return;
+        }
+
+        switch (EventLabel.parse(command.getEventLabel())) {
+            case TURN_ON:
+                send(device, Queue.EVENT_DEVICE_ON, StandartDeviceValueLabel.LEVEL.getName(),
+                        StandartDeviceValue.FULL_ON.getValue(), ValueType.BYTE);
+                break;
+            case TURN_OFF:
+                send(device, Queue.EVENT_DEVICE_OFF, StandartDeviceValueLabel.LEVEL.getName(),
+                        StandartDeviceValue.FULL_OFF.getValue(), ValueType.BYTE);
+                break;
+            case SET_LEVEL:
+                if (command.getData() instanceof DataLevel) {
+                    send(device, Queue.EVENT_DEVICE_LEVEL, StandartDeviceValueLabel.LEVEL.getName(),
+                            ((DataLevel) command.getData()).getTo(), ValueType.BYTE);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Device getOrCreateDevice(SourceProtocol protocol, String channel, DeviceType type, String productName) {
+        Device device = registry.getDevice(protocol, channel);
+
+        if (device == null) {
+            device = new Device();
+            device.setSource(protocol);
+            device.setChannel(channel);
+            device.setType(type);
+            device.setState(State.ACTIVE);
+            device.setManufacturer("IRIS");
+            device.setProductName(productName);
+            device.setHumanReadable(protocol + "/" + channel);
+
+            device = registry.addOrUpdateDevice(device);
+        }
+
+        return device;
+    }
+
+    /**
+     * Schedules generator with random initial delay, so devices don't report all at once.
+     */
+    private void schedule(int intervalSeconds, Runnable generator) {
+        long interval = TimeUnit.SECONDS.toMillis(Math.max(1, intervalSeconds));
+        long delay = ThreadLocalRandom.current().nextLong(interval);
+
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                generator.run();
+            } catch (RuntimeException e) {
+                logger.error("Simulator error", e);
+            }
+        }, delay, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = config.get(key);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+}
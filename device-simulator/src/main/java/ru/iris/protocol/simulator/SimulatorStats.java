@@ -0,0 +1,96 @@
+package ru.iris.protocol.simulator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end statistics of simulated events: from generation (before registry update) to delivery
+ * to bus subscriber. Events are matched by identity, as the bus delivers the same object.
+ */
+class SimulatorStats {
+
+    // latency percentiles are calculated over last events
+    private static final int SAMPLES = 4096;
+
+    private final Map<Object, Long> inFlight = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+
+    // guarded by this
+    private final long[] samples = new long[SAMPLES];
+    private int position = 0;
+    private int count = 0;
+    private long max = 0;
+    private long lastReport = System.nanoTime();
+
+    /**
+     * @return start time to pass in {@link #sent(Object, long)}
+     */
+    long start() {
+        return System.nanoTime();
+    }
+
+    void sent(Object event, long start) {
+        inFlight.put(event, start);
+        sent.increment();
+    }
+
+    void delivered(Object event) {
+        Long start = inFlight.remove(event);
+
+        if (start == null) {
+            return;
+        }
+
+        long latency = System.nanoTime() - start;
+        delivered.increment();
+
+        synchronized (this) {
+            samples[position] = latency;
+            position = (position + 1) % SAMPLES;
+            count = Math.min(count + 1, SAMPLES);
+            max = Math.max(max, latency);
+        }
+    }
+
+    /**
+     * Returns report line and resets interval counters.
+     */
+    synchronized String report() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastReport) / 1_000_000_000.0;
+        long sentCount = sent.sumThenReset();
+        long deliveredCount = delivered.sumThenReset();
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        String report = String.format("sent %.1f ev/s, delivered %.1f ev/s, in flight %d, latency p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                sentCount / seconds, deliveredCount / seconds, inFlight.size(),
+                toMs(percentile(sorted, 0.5)), toMs(percentile(sorted, 0.99)), toMs(max));
+
+        lastReport = now;
+        count = 0;
+        position = 0;
+        max = 0;
+
+        return report;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
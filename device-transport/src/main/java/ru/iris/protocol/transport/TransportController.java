@@ -1,17 +1,9 @@
 package ru.iris.protocol.transport;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.jenetics.jpx.GPX;
-import javastrava.api.v3.auth.TokenManager;
-import javastrava.api.v3.auth.model.Token;
-import javastrava.api.v3.auth.ref.AuthorisationScope;
-import javastrava.api.v3.model.reference.StravaActivityType;
-import javastrava.api.v3.service.Strava;
-import javastrava.api.v3.service.exception.BadRequestException;
-import javastrava.api.v3.service.exception.UnauthorizedException;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
 import org.joda.time.DateTime;
 import org.joda.time.Instant;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,15 +29,22 @@ import ru.iris.models.database.Device;
 import ru.iris.models.protocol.data.DataGPS;
 import ru.iris.models.protocol.data.DataLevel;
 import ru.iris.models.protocol.enums.*;
-import ru.iris.protocol.transport.utils.StravaHttpUtils;
+import ru.iris.protocol.transport.geo.Geofence;
+import ru.iris.protocol.transport.geo.GeofenceEngine;
+import ru.iris.protocol.transport.track.HistoryThinner;
+import ru.iris.protocol.transport.track.StravaUploader;
+import ru.iris.protocol.transport.track.TrackBuffer;
+import ru.iris.protocol.transport.track.TrackExporter;
+import ru.iris.protocol.transport.track.TrackSimplifier;
+import ru.iris.protocol.transport.track.TrackUploader;
 
 import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
@@ -70,15 +69,71 @@ public class TransportController extends AbstractProtocolService {
     private final double noActivityMinutes = 10D;
     private final double staleSpeed = 2D;
     private final double minSpeed = 5D;
-    private Map<Integer, Integer> speedStale = new HashMap<>();
+    private final long trackMaxGapSec = 60L;
+    private final double geofenceCellDegrees = 0.01D;
+    private Map<Integer, Integer> speedStale = new ConcurrentHashMap<>();
     private Map<Integer, Long> lastPing = new ConcurrentHashMap<>();
-    private Map<Integer, List<GPSDataEvent>> tracks = new HashMap<>();
+    private final ConcurrentHashMap<Integer, TrackSimplifier> tracks = new ConcurrentHashMap<>();
+    private TrackExporter exporter;
+    private HistoryThinner history;
+    private double trackTolerance = 5D;
+    private GeofenceEngine geofences;
 
     @Override
     public void onStartup() {
         logger.info("TransportController started");
         if (!config.loadPropertiesFormCfgDirectory("transport"))
             logger.error("Cant load transport-specific configs. Check transport.property if exists");
+
+        TrackUploader uploader = "true".equals(config.get("strava.export")) ? new StravaUploader(config) : null;
+        String attempts = config.get("strava.upload.attempts");
+        String retry = config.get("strava.upload.retrySec");
+
+        exporter = new TrackExporter(
+                new File("gpx"),
+                "true".equals(config.get("gpx.gzip")),
+                uploader,
+                attempts != null ? Integer.parseInt(attempts.trim()) : 5,
+                (retry != null ? Long.parseLong(retry.trim()) : 60L) * 1000L
+        );
+
+        String tolerance = config.get("track.tolerance.m");
+        String distance = config.get("data.gps.distance.m");
+        String interval = config.get("data.gps.intervalSec");
+
+        trackTolerance = tolerance != null ? Double.parseDouble(tolerance.trim()) : trackTolerance;
+        history = new HistoryThinner(
+                distance != null ? Double.parseDouble(distance.trim()) : 50D,
+                interval != null ? Long.parseLong(interval.trim()) : 300L
+        );
+
+        String hysteresis = config.get("geofence.hysteresis.m");
+        geofences = new GeofenceEngine(
+                loadGeofences(),
+                geofenceCellDegrees,
+                hysteresis != null ? Double.parseDouble(hysteresis.trim()) : 20D
+        );
+    }
+
+    /**
+     * @return transports inside of each geofence
+     */
+    public Map<String, Set<Integer>> getGeofenceOccupancy() {
+        return geofences.getOccupancy();
+    }
+
+    /**
+     * @return transports inside geofence, null if there is no such geofence
+     */
+    public Set<Integer> getTransportsInGeofence(String geofence) {
+        return geofences.getTransports(geofence);
+    }
+
+    /**
+     * @return transports, which latest position is within radius (meters) from point
+     */
+    public Set<Integer> getTransportsNear(double latitude, double longitude, double radius) {
+        return geofences.getTransportsNear(latitude, longitude, radius);
     }
 
     @Scheduled(fixedRate = 6 * 60 * 60 * 1000, initialDelay = 20_000) // 6 hours
@@ -105,7 +160,7 @@ public class TransportController extends AbstractProtocolService {
         );
 
         logger.info("Clean transport GPX folder");
-        FileUtils.cleanDirectory(new File("gpx/"));
+        exporter.clean();
     }
 
     @Scheduled(fixedRate = 15 * 60 * 1000, initialDelay = 30_000) // 15 minutes
@@ -115,18 +170,19 @@ public class TransportController extends AbstractProtocolService {
         for (Integer id : lastPing.keySet()) {
             double delta = ((Instant.now().getMillis() - lastPing.get(id)) / 1000D) / 60D; // in minutes
             int stale = speedStale.get(id) == null ? 0 : speedStale.get(id);
-            int trackSize = tracks.get(id) == null ? 0 : tracks.get(id).size();
 
             if (delta >= noActivityMinutes || stale >= 60 * noActivityMinutes) { // no info or speed stale - save tracks
-                try {
-                    if (trackSize > 10) {
-                        logger.info("Saving GPS tracks for transport {}. Delta is: {}, stale is: {}", id, delta, stale);
-                        writeTrack(id);
-                    }
-                } finally {
-                    tracks.remove(id);
-                    lastPing.remove(id);
-                    speedStale.remove(id);
+                // points are added inside tracks.compute, so removed track is not reachable by writers anymore
+                // and points coming after this moment start new track
+                TrackSimplifier track = tracks.remove(id);
+                lastPing.remove(id);
+                speedStale.remove(id);
+
+                if (track != null && track.getReceived() > 10) {
+                    TrackBuffer points = track.finish();
+                    logger.info("Saving GPS tracks for transport {}. Delta is: {}, stale is: {}, points: {} of {}",
+                            id, delta, stale, points.size(), track.getReceived());
+                    exporter.export(id, points);
                 }
             } else {
                 logger.info("No data to save for transport {}", id);
@@ -137,6 +193,7 @@ public class TransportController extends AbstractProtocolService {
     @Override
     public void onShutdown() {
         logger.info("TransportController stopping");
+        exporter.close();
     }
 
     @Override
@@ -199,20 +256,22 @@ public class TransportController extends AbstractProtocolService {
 
     private void handleGPSData(GPSDataEvent data) {
         Device device = getDevice(data);
+        long time = data.getTime() != null ? data.getTime() : Instant.now().getMillis() / 1000L;
 
-        try {
-            registry.addChange(
-                    device,
-                    StandartDeviceValueLabel.GPS_DATA.getName(),
-                    objectMapper.writeValueAsString(data),
-                    ValueType.JSON
-            );
-        } catch (JsonProcessingException e) {
-            logger.error("Can't serialize data: ", e);
+        // history keeps thinned points, route shape is kept by track
+        if (history.accept(data.getTransportId(), data.getLatitude(), data.getLongitude(), time)) {
+            try {
+                registry.addChange(
+                        device,
+                        StandartDeviceValueLabel.GPS_DATA.getName(),
+                        objectMapper.writeValueAsString(data),
+                        ValueType.JSON
+                );
+            } catch (JsonProcessingException e) {
+                logger.error("Can't serialize data: ", e);
+            }
         }
 
-        tracks.computeIfAbsent(data.getTransportId(), k -> new ArrayList<>());
-
         int stale = speedStale.get(data.getTransportId()) == null ? 0 : speedStale.get(data.getTransportId());
         if (data.getSpeed() <= staleSpeed) {
             speedStale.put(data.getTransportId(), ++stale);
@@ -223,7 +282,21 @@ public class TransportController extends AbstractProtocolService {
         }
 
         if (data.getSpeed() >= minSpeed || stale <= 2 * 60) {
-            tracks.get(data.getTransportId()).add(data);
+            // add under map lock, so saveTrack can't detach and finish track in the middle
+            tracks.compute(data.getTransportId(), (id, track) -> {
+                if (track == null) {
+                    track = new TrackSimplifier(trackTolerance, trackMaxGapSec);
+                }
+
+                track.add(
+                        data.getLatitude(),
+                        data.getLongitude(),
+                        data.getElevation() != null ? data.getElevation() : Double.NaN,
+                        data.getSpeed(),
+                        time
+                );
+                return track;
+            });
         }
 
         broadcast(Queue.EVENT_GPS_DATA, DeviceChangeEvent.builder()
@@ -233,70 +306,80 @@ public class TransportController extends AbstractProtocolService {
                 .data(new DataGPS(data.getLatitude(), data.getLongitude(), data.getSpeed(), data.getElevation()))
                 .build()
         );
+
+        checkGeofences(device, data);
     }
 
-    @Override
-    @Async
-    public void run() {
+    private void checkGeofences(Device device, GPSDataEvent data) {
+        List<GeofenceEngine.Transition> transitions = geofences.update(data.getTransportId(), data.getLatitude(), data.getLongitude());
 
-    }
+        if (transitions.isEmpty()) {
+            return;
+        }
 
-    @Override
-    public String getServiceIdentifier() {
-        return "transport";
+        // rules can read current geofences of transport from device value
+        registry.addChange(
+                device,
+                StandartDeviceValueLabel.GEOFENCE.getName(),
+                String.join(",", geofences.getGeofences(data.getTransportId())),
+                ValueType.STRING
+        );
+
+        for (GeofenceEngine.Transition transition : transitions) {
+            logger.info("Transport {}: {}", data.getTransportId(), transition);
+
+            broadcast(transition.isEnter() ? Queue.EVENT_GEOFENCE_ENTER : Queue.EVENT_GEOFENCE_EXIT, DeviceChangeEvent.builder()
+                    .channel(device.getChannel())
+                    .protocol(SourceProtocol.TRANSPORT)
+                    .eventLabel(transition.isEnter() ? "GeofenceEnter" : "GeofenceExit")
+                    .data(new DataLevel(transition.getGeofence(), ValueType.STRING))
+                    .build()
+            );
+        }
     }
 
-    private void writeTrack(Integer id) {
-        if (tracks.get(id) == null || tracks.get(id).size() <= 10) {
-            return;
+    /**
+     * Geofences are configured as JSON array: [{"name": "home", "points": [[lat, lon], [lat, lon], [lat, lon]]}]
+     */
+    private List<Geofence> loadGeofences() {
+        List<Geofence> result = new ArrayList<>();
+        String json = config.get("geofence.zones");
+
+        if (json == null || json.trim().isEmpty()) {
+            return result;
         }
 
-        final GPX gpx = GPX.builder()
-                .addTrack(track -> track
-                        .addSegment(segment ->
-                                tracks.get(id).forEach(point -> {
-                                    if (point != null) {
-                                        segment.addPoint(p ->
-                                                p
-                                                        .lat(point.getLatitude())
-                                                        .lon(point.getLongitude())
-                                                        .ele(point.getElevation())
-                                                        .speed(point.getSpeed())
-                                                        .time(point.getTime() * 1000L)
-                                        );
-                                    }
-                                })
-                        ))
-                .build();
-
-        String filename;
         try {
-            filename = "gpx/track-" + id + "-" + Instant.now().getMillis() + ".gpx";
-            GPX.write(gpx, filename);
-        } catch (IOException e) {
-            logger.error("IOException while writing GPX track file", e);
-            return;
+            for (JsonNode zone : objectMapper.readTree(json)) {
+                JsonNode points = zone.get("points");
+                double[] latitude = new double[points.size()];
+                double[] longitude = new double[points.size()];
+
+                for (int i = 0; i < points.size(); i++) {
+                    latitude[i] = points.get(i).get(0).asDouble();
+                    longitude[i] = points.get(i).get(1).asDouble();
+                }
+
+                result.add(new Geofence(zone.get("name").asText(), latitude, longitude));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Cant load geofences, check geofence.zones: {}", e.toString());
+            return new ArrayList<>();
         }
 
-        if (config.get("strava.export").equals("true")) {
-            logger.info("Exporting GPS track to Strava ({})", filename);
-            Token token = getValidTokenWithFullAccess();
-            Strava strava = new Strava(token);
-
-            strava.upload(
-                    StravaActivityType.EBIKE_RIDE,
-                    "GPS track integration upload - " + Instant.now().toString(),
-                    "GPS track exported from IRIS smart home system",
-                    false,
-                    false,
-                    false,
-                    "gpx",
-                    null,
-                    new File(filename)
-            );
+        logger.info("Loaded {} geofences", result.size());
+        return result;
+    }
 
-            logger.info("Exported ({})", filename);
-        }
+    @Override
+    @Async
+    public void run() {
+
+    }
+
+    @Override
+    public String getServiceIdentifier() {
+        return "transport";
     }
 
     private Device getDevice(AbstractTransportEvent data) {
@@ -322,23 +405,4 @@ public class TransportController extends AbstractProtocolService {
 
         return device;
     }
-
-    private Token getValidTokenWithFullAccess() {
-        return tokenWithExactScope(AuthorisationScope.WRITE, AuthorisationScope.VIEW_PRIVATE);
-    }
-
-    private Token tokenWithExactScope(final AuthorisationScope... scopes) {
-        Token token = TokenManager.instance().retrieveTokenWithExactScope(config.get("strava.username"), scopes);
-        if (token == null) {
-            try {
-                StravaHttpUtils utils = new StravaHttpUtils(config.get("strava.client.id"), config.get("strava.client.secret"));
-                token = utils.getStravaAccessToken(config.get("strava.username"), config.get("strava.password"), scopes);
-                TokenManager.instance().storeToken(token);
-            } catch (BadRequestException | UnauthorizedException e) {
-                logger.error("Strava error: ", e);
-                return null;
-            }
-        }
-        return token;
-    }
 }
@@ -0,0 +1,51 @@
+package ru.iris.protocol.transport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.iris.models.status.ErrorStatus;
+
+import java.util.Set;
+
+/**
+ * Transports in geofences and near points by their latest positions, without history queries
+ */
+@RestController
+@Profile("transport")
+public class TransportGeofenceController {
+
+    @Autowired
+    private TransportController controller;
+
+    /**
+     * @return geofence name -> ids of transports inside
+     */
+    @RequestMapping(value = "/api/transport/geofence", method = RequestMethod.GET)
+    public Object getOccupancy() {
+        return controller.getGeofenceOccupancy();
+    }
+
+    @RequestMapping(value = "/api/transport/geofence/{name}", method = RequestMethod.GET)
+    public Object getTransportsInGeofence(@PathVariable String name) {
+        Set<Integer> transports = controller.getTransportsInGeofence(name);
+
+        if (transports == null) {
+            return new ErrorStatus("Unknown geofence " + name);
+        }
+
+        return transports;
+    }
+
+    /**
+     * @param radius meters
+     */
+    @RequestMapping(value = "/api/transport/near", method = RequestMethod.GET)
+    public Object getTransportsNear(@RequestParam double lat, @RequestParam double lon,
+                                    @RequestParam(defaultValue = "500") double radius) {
+        return controller.getTransportsNear(lat, lon, radius);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.iris.protocol.transport.geo;
+
+/**
+ * Distances on Earth surface in meters, coordinates are in degrees.
+ */
+public final class Geo {
+
+    private static final double EARTH_RADIUS = 6_371_000D;
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180D;
+
+    private Geo() {
+    }
+
+    /**
+     * Great-circle distance (haversine).
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1D, Math.sqrt(a)));
+    }
+
+    /**
+     * Distance from point P to segment AB. Uses local flat projection around A, which is precise enough
+     * for segments up to tens of kilometers.
+     */
+    public static double segmentDistance(double lat, double lon, double latA, double lonA, double latB, double lonB) {
+        double kx = Math.cos(Math.toRadians(latA)) * METERS_PER_DEGREE;
+        double bx = (lonB - lonA) * kx;
+        double by = (latB - latA) * METERS_PER_DEGREE;
+        double px = (lon - lonA) * kx;
+        double py = (lat - latA) * METERS_PER_DEGREE;
+        double length = bx * bx + by * by;
+        double t = length > 0 ? Math.max(0D, Math.min(1D, (px * bx + py * by) / length)) : 0D;
+        double dx = px - t * bx;
+        double dy = py - t * by;
+
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.iris.protocol.transport.geo;
+
+/**
+ * Named polygon zone, vertices are in degrees. Polygon is closed implicitly.
+ */
+public class Geofence {
+
+    private final String name;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+
+    public Geofence(String name, double[] latitude, double[] longitude) {
+        if (latitude.length < 3 || latitude.length != longitude.length) {
+            throw new IllegalArgumentException("Geofence " + name + " needs at least 3 vertices");
+        }
+
+        this.name = name;
+        this.latitude = latitude.clone();
+        this.longitude = longitude.clone();
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+
+        for (int i = 0; i < latitude.length; i++) {
+            minLat = Math.min(minLat, latitude[i]);
+            maxLat = Math.max(maxLat, latitude[i]);
+            minLon = Math.min(minLon, longitude[i]);
+            maxLon = Math.max(maxLon, longitude[i]);
+        }
+
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLon = minLon;
+        this.maxLon = maxLon;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Even-odd rule, bounding box is checked first.
+     */
+    public boolean contains(double lat, double lon) {
+        if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) {
+            return false;
+        }
+
+        boolean inside = false;
+
+        for (int i = 0, j = latitude.length - 1; i < latitude.length; j = i++) {
+            if ((latitude[i] > lat) != (latitude[j] > lat)
+                    && lon < (longitude[j] - longitude[i]) * (lat - latitude[i]) / (latitude[j] - latitude[i]) + longitude[i]) {
+                inside = !inside;
+            }
+        }
+
+        return inside;
+    }
+
+    /**
+     * @return distance in meters from point to the nearest edge
+     */
+    public double distanceToBorder(double lat, double lon) {
+        double min = Double.MAX_VALUE;
+
+        for (int i = 0, j = latitude.length - 1; i < latitude.length; j = i++) {
+            min = Math.min(min, Geo.segmentDistance(lat, lon, latitude[j], longitude[j], latitude[i], longitude[i]));
+        }
+
+        return min;
+    }
+
+    double getMinLat() {
+        return minLat;
+    }
+
+    double getMaxLat() {
+        return maxLat;
+    }
+
+    double getMinLon() {
+        return minLon;
+    }
+
+    double getMaxLon() {
+        return maxLon;
+    }
+}
@@ -0,0 +1,157 @@
+package ru.iris.protocol.transport.geo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Latest positions of transports and their presence in geofences.
+ * <p>
+ * On each position update only geofences from the grid cell of the position are checked for entering, and only
+ * geofences transport is inside of are checked for leaving. Transport leaves geofence, when it's outside farther
+ * than hysteresis from the border, so GPS noise near the border doesn't produce enter / exit series.
+ */
+public class GeofenceEngine {
+
+    private static final double METERS_PER_DEGREE = 6_371_000D * Math.PI / 180D;
+
+    private final Map<String, Geofence> geofences = new LinkedHashMap<>();
+    private final GridIndex<Geofence> geofenceIndex;
+    private final GridIndex<Integer> positionIndex;
+    private final double hysteresis;
+
+    private final Map<Integer, double[]> positions = new HashMap<>();
+    // transport -> names of geofences it's inside
+    private final Map<Integer, Set<String>> inside = new HashMap<>();
+    // geofence name -> transports inside
+    private final Map<String, Set<Integer>> members = new HashMap<>();
+
+    /**
+     * @param cellSize   grid cell size in degrees
+     * @param hysteresis meters outside of border to leave geofence
+     */
+    public GeofenceEngine(Collection<Geofence> geofences, double cellSize, double hysteresis) {
+        this.geofenceIndex = new GridIndex<>(cellSize);
+        this.positionIndex = new GridIndex<>(cellSize);
+        this.hysteresis = hysteresis;
+
+        for (Geofence geofence : geofences) {
+            this.geofences.put(geofence.getName(), geofence);
+            geofenceIndex.put(geofence, geofence.getMinLat(), geofence.getMinLon(), geofence.getMaxLat(), geofence.getMaxLon());
+            members.put(geofence.getName(), new TreeSet<>());
+        }
+    }
+
+    /**
+     * Updates position of transport.
+     *
+     * @return geofences entered and left by this move
+     */
+    public synchronized List<Transition> update(int transportId, double lat, double lon) {
+        positions.put(transportId, new double[]{lat, lon});
+        positionIndex.put(transportId, lat, lon);
+
+        Set<String> current = inside.computeIfAbsent(transportId, k -> new TreeSet<>());
+        List<Transition> transitions = new ArrayList<>();
+
+        Iterator<String> it = current.iterator();
+
+        while (it.hasNext()) {
+            Geofence geofence = geofences.get(it.next());
+
+            if (!geofence.contains(lat, lon) && geofence.distanceToBorder(lat, lon) > hysteresis) {
+                it.remove();
+                members.get(geofence.getName()).remove(transportId);
+                transitions.add(new Transition(geofence.getName(), false));
+            }
+        }
+
+        for (Geofence geofence : geofenceIndex.query(lat, lon, lat, lon)) {
+            if (!current.contains(geofence.getName()) && geofence.contains(lat, lon)) {
+                current.add(geofence.getName());
+                members.get(geofence.getName()).add(transportId);
+                transitions.add(new Transition(geofence.getName(), true));
+            }
+        }
+
+        return transitions;
+    }
+
+    /**
+     * @return names of geofences transport is inside
+     */
+    public synchronized Set<String> getGeofences(int transportId) {
+        Set<String> current = inside.get(transportId);
+        return current != null ? new TreeSet<>(current) : Collections.emptySet();
+    }
+
+    /**
+     * @return transports inside geofence, null if there is no such geofence
+     */
+    public synchronized Set<Integer> getTransports(String geofence) {
+        Set<Integer> transports = members.get(geofence);
+        return transports != null ? new TreeSet<>(transports) : null;
+    }
+
+    /**
+     * @return transports inside of each geofence
+     */
+    public synchronized Map<String, Set<Integer>> getOccupancy() {
+        Map<String, Set<Integer>> result = new LinkedHashMap<>();
+
+        for (String name : geofences.keySet()) {
+            result.put(name, new TreeSet<>(members.get(name)));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return transports with the latest position within radius (meters) from point
+     */
+    public synchronized Set<Integer> getTransportsNear(double lat, double lon, double radius) {
+        double dLat = radius / METERS_PER_DEGREE;
+        double dLon = dLat / Math.max(0.01D, Math.cos(Math.toRadians(lat)));
+        Set<Integer> result = new TreeSet<>();
+
+        for (Integer id : positionIndex.query(lat - dLat, lon - dLon, lat + dLat, lon + dLon)) {
+            double[] position = positions.get(id);
+
+            if (Geo.distance(lat, lon, position[0], position[1]) <= radius) {
+                result.add(id);
+            }
+        }
+
+        return result;
+    }
+
+    public static class Transition {
+        private final String geofence;
+        private final boolean enter;
+
+        Transition(String geofence, boolean enter) {
+            this.geofence = geofence;
+            this.enter = enter;
+        }
+
+        public String getGeofence() {
+            return geofence;
+        }
+
+        public boolean isEnter() {
+            return enter;
+        }
+
+        @Override
+        public String toString() {
+            return (enter ? "enter " : "exit ") + geofence;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.iris.protocol.transport.geo;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spatial index of items with bounding boxes on regular grid of latitude / longitude cells.
+ * Query returns candidates from cells intersecting the box, exact check is up to caller.
+ * Items covering too many cells are kept aside and returned by every query.
+ * <p>
+ * Not thread-safe.
+ */
+class GridIndex<T> {
+
+    private static final int MAX_CELLS = 4096;
+    private static final long[] LARGE = new long[0];
+
+    private final double cellSize;
+    private final Map<Long, Set<T>> cells = new HashMap<>();
+    private final Map<T, long[]> items = new HashMap<>();
+    private final Set<T> large = new HashSet<>();
+
+    /**
+     * @param cellSize cell size in degrees
+     */
+    GridIndex(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    void put(T item, double minLat, double minLon, double maxLat, double maxLon) {
+        long[] keys = keys(minLat, minLon, maxLat, maxLon);
+        long[] old = items.get(item);
+
+        // point didn't leave its cell
+        if (old != null && old.length == 1 && keys.length == 1 && old[0] == keys[0]) {
+            return;
+        }
+
+        remove(item);
+
+        if (keys == LARGE) {
+            large.add(item);
+        } else {
+            for (long key : keys) {
+                cells.computeIfAbsent(key, k -> new HashSet<>()).add(item);
+            }
+        }
+
+        items.put(item, keys);
+    }
+
+    void put(T item, double lat, double lon) {
+        put(item, lat, lon, lat, lon);
+    }
+
+    void remove(T item) {
+        long[] keys = items.remove(item);
+
+        if (keys == null) {
+            return;
+        }
+
+        if (keys == LARGE) {
+            large.remove(item);
+            return;
+        }
+
+        for (long key : keys) {
+            Set<T> cell = cells.get(key);
+
+            if (cell != null) {
+                cell.remove(item);
+
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    Set<T> query(double minLat, double minLon, double maxLat, double maxLon) {
+        Set<T> result = new HashSet<>(large);
+        long[] keys = keys(minLat, minLon, maxLat, maxLon);
+
+        if (keys == LARGE) {
+            result.addAll(items.keySet());
+            return result;
+        }
+
+        for (long key : keys) {
+            Set<T> cell = cells.get(key);
+
+            if (cell != null) {
+                result.addAll(cell);
+            }
+        }
+
+        return result;
+    }
+
+    private long[] keys(double minLat, double minLon, double maxLat, double maxLon) {
+        int lat0 = cell(minLat);
+        int lat1 = cell(maxLat);
+        int lon0 = cell(minLon);
+        int lon1 = cell(maxLon);
+        long count = (long) (lat1 - lat0 + 1) * (lon1 - lon0 + 1);
+
+        if (count > MAX_CELLS) {
+            return LARGE;
+        }
+
+        long[] keys = new long[(int) count];
+        int i = 0;
+
+        for (int lat = lat0; lat <= lat1; lat++) {
+            for (int lon = lon0; lon <= lon1; lon++) {
+                keys[i++] = ((long) lat << 32) | (lon & 0xFFFFFFFFL);
+            }
+        }
+
+        return keys;
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / cellSize);
+    }
+}
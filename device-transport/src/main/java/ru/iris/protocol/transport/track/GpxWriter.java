@@ -0,0 +1,98 @@
+package ru.iris.protocol.transport.track;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+
+/**
+ * Writes GPX 1.1 track with StAX point by point, straight from track buffer, without building document in memory.
+ * Speed is written to point extensions as Garmin TrackPointExtension v2 {@code gpxtpx:speed}, as GPX 1.1 has no speed
+ * element and extension elements must not be in GPX namespace.
+ */
+public final class GpxWriter {
+
+    private static final String NS = "http://www.topografix.com/GPX/1/1";
+    private static final String TPX_PREFIX = "gpxtpx";
+    private static final String TPX_NS = "http://www.garmin.com/xmlschemas/TrackPointExtension/v2";
+    private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+
+    private GpxWriter() {
+    }
+
+    /**
+     * Stream is not closed.
+     */
+    public static void write(TrackBuffer track, String name, OutputStream out) throws IOException {
+        try {
+            XMLStreamWriter xml = FACTORY.createXMLStreamWriter(out, "UTF-8");
+
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.setDefaultNamespace(NS);
+            xml.setPrefix(TPX_PREFIX, TPX_NS);
+            xml.writeStartElement(NS, "gpx");
+            xml.writeDefaultNamespace(NS);
+            xml.writeNamespace(TPX_PREFIX, TPX_NS);
+            xml.writeAttribute("version", "1.1");
+            xml.writeAttribute("creator", "IRIS");
+
+            xml.writeStartElement(NS, "trk");
+            element(xml, "name", name);
+            xml.writeStartElement(NS, "trkseg");
+
+            try {
+                track.forEach((lat, lon, ele, speed, time) -> {
+                    try {
+                        point(xml, lat, lon, ele, speed, time);
+                    } catch (XMLStreamException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            } catch (IllegalStateException e) {
+                throw (XMLStreamException) e.getCause();
+            }
+
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cant write GPX track " + name, e);
+        }
+    }
+
+    private static void point(XMLStreamWriter xml, double lat, double lon, double ele, double speed, long time)
+            throws XMLStreamException {
+        xml.writeStartElement(NS, "trkpt");
+        xml.writeAttribute("lat", Double.toString(lat));
+        xml.writeAttribute("lon", Double.toString(lon));
+
+        if (!Double.isNaN(ele)) {
+            element(xml, "ele", Double.toString(ele));
+        }
+
+        element(xml, "time", Instant.ofEpochSecond(time).toString());
+
+        if (!Double.isNaN(speed)) {
+            xml.writeStartElement(NS, "extensions");
+            xml.writeStartElement(TPX_PREFIX, "TrackPointExtension", TPX_NS);
+            xml.writeStartElement(TPX_PREFIX, "speed", TPX_NS);
+            xml.writeCharacters(Double.toString(speed));
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+        }
+
+        xml.writeEndElement();
+    }
+
+    private static void element(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        xml.writeStartElement(NS, name);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+}
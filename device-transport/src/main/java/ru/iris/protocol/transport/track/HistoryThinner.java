@@ -0,0 +1,54 @@
+package ru.iris.protocol.transport.track;
+
+import ru.iris.protocol.transport.geo.Geo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which GPS points are stored to history: point is stored, when transport moved far enough from
+ * the last stored point or enough time passed since it. Standing transport is stored once per interval.
+ */
+public class HistoryThinner {
+
+    private final double minDistance;
+    private final long maxIntervalSec;
+    private final Map<Integer, Stored> transports = new ConcurrentHashMap<>();
+
+    /**
+     * @param minDistance    meters from the last stored point
+     * @param maxIntervalSec seconds since the last stored point
+     */
+    public HistoryThinner(double minDistance, long maxIntervalSec) {
+        this.minDistance = minDistance;
+        this.maxIntervalSec = maxIntervalSec;
+    }
+
+    /**
+     * @return true if point should be stored
+     */
+    public boolean accept(int transportId, double lat, double lon, long time) {
+        Stored last = transports.computeIfAbsent(transportId, k -> new Stored());
+
+        synchronized (last) {
+            if (last.present
+                    && time - last.time < maxIntervalSec
+                    && Geo.distance(last.latitude, last.longitude, lat, lon) < minDistance) {
+                return false;
+            }
+
+            last.present = true;
+            last.latitude = lat;
+            last.longitude = lon;
+            last.time = time;
+            return true;
+        }
+    }
+
+    private static class Stored {
+        private boolean present;
+        private double latitude;
+        private double longitude;
+        private long time;
+    }
+}
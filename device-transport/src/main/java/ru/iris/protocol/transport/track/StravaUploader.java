@@ -0,0 +1,76 @@
+package ru.iris.protocol.transport.track;
+
+import javastrava.api.v3.auth.TokenManager;
+import javastrava.api.v3.auth.model.Token;
+import javastrava.api.v3.auth.ref.AuthorisationScope;
+import javastrava.api.v3.model.StravaUploadResponse;
+import javastrava.api.v3.model.reference.StravaActivityType;
+import javastrava.api.v3.service.Strava;
+import javastrava.api.v3.service.exception.BadRequestException;
+import javastrava.api.v3.service.exception.UnauthorizedException;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.Instant;
+import ru.iris.commons.config.ConfigLoader;
+import ru.iris.protocol.transport.utils.StravaHttpUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+@Slf4j
+public class StravaUploader implements TrackUploader {
+
+    private final ConfigLoader config;
+
+    public StravaUploader(ConfigLoader config) {
+        this.config = config;
+    }
+
+    @Override
+    public void upload(File file) throws IOException {
+        logger.info("Exporting GPS track to Strava ({})", file);
+        Token token = getValidTokenWithFullAccess();
+
+        if (token == null) {
+            throw new IOException("No Strava access token");
+        }
+
+        Strava strava = new Strava(token);
+
+        StravaUploadResponse response = strava.upload(
+                StravaActivityType.EBIKE_RIDE,
+                "GPS track integration upload - " + Instant.now().toString(),
+                "GPS track exported from IRIS smart home system",
+                false,
+                false,
+                false,
+                file.getName().endsWith(".gz") ? "gpx.gz" : "gpx",
+                null,
+                file
+        );
+
+        if (response != null && response.getError() != null) {
+            throw new IOException("Strava error: " + response.getError());
+        }
+
+        logger.info("Exported ({})", file);
+    }
+
+    private Token getValidTokenWithFullAccess() {
+        return tokenWithExactScope(AuthorisationScope.WRITE, AuthorisationScope.VIEW_PRIVATE);
+    }
+
+    private Token tokenWithExactScope(final AuthorisationScope... scopes) {
+        Token token = TokenManager.instance().retrieveTokenWithExactScope(config.get("strava.username"), scopes);
+        if (token == null) {
+            try {
+                StravaHttpUtils utils = new StravaHttpUtils(config.get("strava.client.id"), config.get("strava.client.secret"));
+                token = utils.getStravaAccessToken(config.get("strava.username"), config.get("strava.password"), scopes);
+                TokenManager.instance().storeToken(token);
+            } catch (BadRequestException | UnauthorizedException e) {
+                logger.error("Strava error: ", e);
+                return null;
+            }
+        }
+        return token;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.iris.protocol.transport.track;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GPS track of one transport, stored column-wise in primitive chunks: about 32 bytes per point instead of
+ * GPSDataEvent with five boxed fields. Points are only appended.
+ * <p>
+ * Writers are synchronized, readers iterate without lock over the points present at the start of iteration,
+ * so long export doesn't block ingestion.
+ */
+public class TrackBuffer {
+
+    private static final int CHUNK_SIZE = 512;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int size;
+
+    /**
+     * @param elevation NaN if unknown
+     * @param speed     NaN if unknown
+     * @param time      unix time in seconds
+     */
+    public synchronized void add(double latitude, double longitude, double elevation, double speed, long time) {
+        int offset = size % CHUNK_SIZE;
+
+        if (offset == 0) {
+            chunks.add(new Chunk());
+        }
+
+        Chunk chunk = chunks.get(chunks.size() - 1);
+        chunk.latitude[offset] = latitude;
+        chunk.longitude[offset] = longitude;
+        chunk.elevation[offset] = (float) elevation;
+        chunk.speed[offset] = (float) speed;
+        chunk.time[offset] = time;
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Calls consumer for each point in order of addition. Points added during iteration are not visited.
+     */
+    public void forEach(PointConsumer consumer) {
+        List<Chunk> view;
+        int count;
+
+        synchronized (this) {
+            view = new ArrayList<>(chunks);
+            count = size;
+        }
+
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = view.get(i / CHUNK_SIZE);
+            int offset = i % CHUNK_SIZE;
+
+            consumer.accept(
+                    chunk.latitude[offset],
+                    chunk.longitude[offset],
+                    chunk.elevation[offset],
+                    chunk.speed[offset],
+                    chunk.time[offset]
+            );
+        }
+    }
+
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(double latitude, double longitude, double elevation, double speed, long time);
+    }
+
+    private static class Chunk {
+        private final double[] latitude = new double[CHUNK_SIZE];
+        private final double[] longitude = new double[CHUNK_SIZE];
+        private final float[] elevation = new float[CHUNK_SIZE];
+        private final float[] speed = new float[CHUNK_SIZE];
+        private final long[] time = new long[CHUNK_SIZE];
+    }
+}
@@ -0,0 +1,179 @@
+package ru.iris.protocol.transport.track;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports finished tracks in background: GPX file is streamed from track buffer by writer thread, then file is
+ * uploaded from upload queue. Failed upload is retried with exponential backoff, file is kept until it's uploaded
+ * or attempts are exhausted.
+ */
+@Slf4j
+public class TrackExporter {
+
+    private static final String PART = ".part";
+
+    private final File directory;
+    private final boolean gzip;
+    private final TrackUploader uploader;
+    private final int maxAttempts;
+    private final long retryDelayMs;
+    // files waiting for upload, they must not be cleaned
+    private final Set<File> pending = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> thread(r, "gpx-writer"));
+    private final ScheduledExecutorService uploads = Executors.newSingleThreadScheduledExecutor(r -> thread(r, "gpx-upload"));
+
+    /**
+     * @param uploader     null if tracks are only written to files
+     * @param maxAttempts  upload attempts per file
+     * @param retryDelayMs delay before second attempt, doubled for each next one
+     */
+    public TrackExporter(File directory, boolean gzip, TrackUploader uploader, int maxAttempts, long retryDelayMs) {
+        this.directory = directory;
+        this.gzip = gzip;
+        this.uploader = uploader;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    /**
+     * Queues track export and returns immediately. Track must not be changed after it's passed here.
+     */
+    public void export(int transportId, TrackBuffer track) {
+        try {
+            writer.execute(() -> write(transportId, track));
+        } catch (RejectedExecutionException e) {
+            // exporter is stopped on shutdown, track is still saved
+            logger.info("Writing GPS track of transport {} synchronously", transportId);
+            write(transportId, track);
+        }
+    }
+
+    /**
+     * Deletes exported files, except the ones waiting for upload and being written.
+     */
+    public void clean() {
+        File[] files = directory.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isFile() && !pending.contains(file) && !file.getName().endsWith(PART) && !file.delete()) {
+                logger.error("Cant delete {}", file);
+            }
+        }
+    }
+
+    /**
+     * Waits for queued tracks to be written, uploads which are not done yet are abandoned.
+     */
+    public void close() {
+        writer.shutdown();
+
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.error("GPS tracks are still being written, giving up");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        uploads.shutdownNow();
+
+        if (!pending.isEmpty()) {
+            logger.info("{} GPS tracks are not uploaded: {}", pending.size(), pending);
+        }
+    }
+
+    private void write(int transportId, TrackBuffer track) {
+        String name = "track-" + transportId + "-" + System.currentTimeMillis();
+        File file = new File(directory, name + (gzip ? ".gpx.gz" : ".gpx"));
+        File part = new File(directory, file.getName() + PART);
+        long start = System.currentTimeMillis();
+
+        try {
+            Files.createDirectories(directory.toPath());
+
+            try (OutputStream out = open(part)) {
+                GpxWriter.write(track, name, out);
+            }
+
+            // uploader and cleaner never see half-written file
+            Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("IOException while writing GPX track file", e);
+
+            if (part.exists() && !part.delete()) {
+                logger.error("Cant delete {}", part);
+            }
+
+            return;
+        }
+
+        logger.info("GPS track of transport {} with {} points written to {} in {} ms",
+                transportId, track.size(), file, System.currentTimeMillis() - start);
+
+        if (uploader != null) {
+            pending.add(file);
+
+            try {
+                uploads.execute(() -> upload(file, 1));
+            } catch (RejectedExecutionException e) {
+                // exporter is stopped, file stays in directory
+                pending.remove(file);
+            }
+        }
+    }
+
+    private OutputStream open(File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        return gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+
+    private void upload(File file, int attempt) {
+        try {
+            uploader.upload(file);
+            pending.remove(file);
+        } catch (Exception e) {
+            if (attempt >= maxAttempts) {
+                logger.error("Cant upload GPS track {}, giving up after {} attempts", file, attempt, e);
+                pending.remove(file);
+                return;
+            }
+
+            long delay = retryDelayMs << Math.min(attempt - 1, 16);
+            logger.error("Cant upload GPS track {} (attempt {} of {}): {}, retrying in {}s",
+                    file, attempt, maxAttempts, e.toString(), delay / 1000);
+
+            try {
+                uploads.schedule(() -> upload(file, attempt + 1), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException stopped) {
+                // exporter is stopped, file stays in directory
+            }
+        }
+    }
+
+    private static Thread thread(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
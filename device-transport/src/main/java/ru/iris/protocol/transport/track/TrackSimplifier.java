@@ -0,0 +1,124 @@
+package ru.iris.protocol.transport.track;
+
+import ru.iris.protocol.transport.geo.Geo;
+
+/**
+ * Simplifies track online while points arrive (opening window algorithm): point is dropped, if it lies within
+ * tolerance of the segment between the last kept point and a later point. So every received point is within
+ * tolerance of the simplified track, while straight parts of route are kept as a few points.
+ * <p>
+ * Points around gaps in time are always kept. Window is bounded, so each point costs limited work.
+ */
+public class TrackSimplifier {
+
+    private static final int WINDOW = 256;
+
+    private final TrackBuffer track = new TrackBuffer();
+    private final double tolerance;
+    private final long maxGapSec;
+
+    // window of points since the last kept one (index 0), the last point in window is not decided yet
+    private final double[] latitude = new double[WINDOW];
+    private final double[] longitude = new double[WINDOW];
+    private final double[] elevation = new double[WINDOW];
+    private final double[] speed = new double[WINDOW];
+    private final long[] time = new long[WINDOW];
+    private int count;
+    private int received;
+    private boolean finished;
+
+    /**
+     * @param tolerance maximum distance in meters between received point and simplified track
+     * @param maxGapSec points separated by longer time are both kept
+     */
+    public TrackSimplifier(double tolerance, long maxGapSec) {
+        this.tolerance = tolerance;
+        this.maxGapSec = maxGapSec;
+    }
+
+    /**
+     * @throws IllegalStateException if track is already finished, point must go to new simplifier
+     */
+    public synchronized void add(double lat, double lon, double ele, double spd, long t) {
+        if (finished) {
+            throw new IllegalStateException("Track is finished");
+        }
+
+        received++;
+
+        if (count == 0) {
+            keep(lat, lon, ele, spd, t);
+            return;
+        }
+
+        if (t - time[count - 1] > maxGapSec) {
+            flush();
+            keep(lat, lon, ele, spd, t);
+            return;
+        }
+
+        if (count == WINDOW || !fits(lat, lon)) {
+            // the previous point becomes the last kept one
+            flush();
+        }
+
+        put(count++, lat, lon, ele, spd, t);
+    }
+
+    /**
+     * Keeps the last received point and returns simplified track. Track is not changed by this simplifier after that,
+     * later points are rejected.
+     */
+    public synchronized TrackBuffer finish() {
+        flush();
+        count = 0;
+        finished = true;
+        return track;
+    }
+
+    /**
+     * @return number of received points
+     */
+    public synchronized int getReceived() {
+        return received;
+    }
+
+    /**
+     * @return true if points between the last kept one and the new one are within tolerance of segment between them
+     */
+    private boolean fits(double lat, double lon) {
+        for (int i = 1; i < count; i++) {
+            if (Geo.segmentDistance(latitude[i], longitude[i], latitude[0], longitude[0], lat, lon) > tolerance) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Keeps the last point of window and starts new window from it.
+     */
+    private void flush() {
+        if (count > 1) {
+            int last = count - 1;
+            track.add(latitude[last], longitude[last], elevation[last], speed[last], time[last]);
+            put(0, latitude[last], longitude[last], elevation[last], speed[last], time[last]);
+            count = 1;
+        }
+    }
+
+    private void keep(double lat, double lon, double ele, double spd, long t) {
+        track.add(lat, lon, ele, spd, t);
+        put(0, lat, lon, ele, spd, t);
+        count = 1;
+    }
+
+    private void put(int index, double lat, double lon, double ele, double spd, long t) {
+        latitude[index] = lat;
+        longitude[index] = lon;
+        elevation[index] = ele;
+        speed[index] = spd;
+        time[index] = t;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.iris.protocol.transport.track;
+
+import java.io.File;
+
+/**
+ * Uploads exported GPX file to external service. Failed upload is retried by {@link TrackExporter}.
+ */
+public interface TrackUploader {
+
+    /**
+     * @throws Exception if file is not uploaded and upload should be retried
+     */
+    void upload(File file) throws Exception;
+}
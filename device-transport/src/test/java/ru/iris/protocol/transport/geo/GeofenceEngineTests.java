@@ -0,0 +1,103 @@
+package ru.iris.protocol.transport.geo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceEngineTests {
+
+    private static final Geofence HOME = new Geofence("home",
+            new double[]{55.750, 55.750, 55.760, 55.760},
+            new double[]{37.600, 37.620, 37.620, 37.600});
+
+    private static final Geofence OFFICE = new Geofence("office",
+            new double[]{55.800, 55.800, 55.810},
+            new double[]{37.500, 37.520, 37.510});
+
+    private GeofenceEngine engine() {
+        return new GeofenceEngine(Arrays.asList(HOME, OFFICE), 0.01D, 20D);
+    }
+
+    @Test
+    public void enterAndExit() {
+        GeofenceEngine engine = engine();
+
+        assertTrue(engine.update(1, 55.740, 37.610).isEmpty());
+
+        List<GeofenceEngine.Transition> transitions = engine.update(1, 55.755, 37.610);
+        assertEquals(1, transitions.size());
+        assertEquals("home", transitions.get(0).getGeofence());
+        assertTrue(transitions.get(0).isEnter());
+        assertEquals(Collections.singleton("home"), engine.getGeofences(1));
+
+        // moving inside produces nothing
+        assertTrue(engine.update(1, 55.758, 37.615).isEmpty());
+
+        transitions = engine.update(1, 55.805, 37.510);
+        assertEquals(2, transitions.size());
+        assertFalse(transitions.get(0).isEnter());
+        assertEquals("home", transitions.get(0).getGeofence());
+        assertTrue(transitions.get(1).isEnter());
+        assertEquals("office", transitions.get(1).getGeofence());
+    }
+
+    @Test
+    public void noiseNearBorderIsIgnored() {
+        GeofenceEngine engine = engine();
+
+        engine.update(1, 55.7501, 37.610);
+        assertEquals(Collections.singleton("home"), engine.getGeofences(1));
+
+        // ~11 m outside of the south border
+        assertTrue(engine.update(1, 55.7499, 37.610).isEmpty());
+        assertTrue(engine.update(1, 55.7501, 37.610).isEmpty());
+        assertTrue(engine.update(1, 55.7499, 37.610).isEmpty());
+
+        // ~55 m outside
+        List<GeofenceEngine.Transition> transitions = engine.update(1, 55.7495, 37.610);
+        assertEquals(1, transitions.size());
+        assertFalse(transitions.get(0).isEnter());
+        assertTrue(engine.getGeofences(1).isEmpty());
+    }
+
+    @Test
+    public void occupancy() {
+        GeofenceEngine engine = engine();
+
+        engine.update(1, 55.755, 37.610);
+        engine.update(2, 55.756, 37.611);
+        engine.update(3, 55.805, 37.510);
+        engine.update(4, 55.900, 37.900);
+
+        assertEquals(new TreeSet<>(Arrays.asList(1, 2)), engine.getTransports("home"));
+        assertEquals(Collections.singleton(3), engine.getTransports("office"));
+        assertNull(engine.getTransports("unknown"));
+        assertEquals(2, engine.getOccupancy().size());
+    }
+
+    @Test
+    public void transportsNear() {
+        GeofenceEngine engine = engine();
+
+        engine.update(1, 55.755, 37.610);
+        engine.update(2, 55.757, 37.610);
+        engine.update(3, 55.765, 37.610);
+
+        Set<Integer> near = engine.getTransportsNear(55.755, 37.610, 300D);
+        assertEquals(new TreeSet<>(Arrays.asList(1, 2)), near);
+
+        // transport moved to another cell
+        engine.update(3, 55.7551, 37.6101);
+        assertEquals(3, engine.getTransportsNear(55.755, 37.610, 300D).size());
+        assertTrue(engine.getTransportsNear(55.700, 37.610, 300D).isEmpty());
+    }
+}
@@ -0,0 +1,146 @@
+package ru.iris.protocol.transport.track;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+public class TrackExporterTests {
+
+    private File directory;
+    private TrackExporter exporter;
+
+    @After
+    public void tearDown() {
+        exporter.close();
+
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        directory.delete();
+    }
+
+    @Test
+    public void gzipGpx() throws Exception {
+        directory = Files.createTempDirectory("gpx").toFile();
+        exporter = new TrackExporter(directory, true, null, 1, 0);
+
+        TrackBuffer track = track(2000);
+        exporter.export(1, track);
+        exporter.close();
+
+        File[] files = directory.listFiles();
+        Assert.assertEquals(1, files.length);
+        Assert.assertTrue(files[0].getName().matches("track-1-\\d+\\.gpx\\.gz"));
+
+        Document gpx;
+
+        try (InputStream in = new GZIPInputStream(new FileInputStream(files[0]))) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            gpx = factory.newDocumentBuilder().parse(in);
+        }
+
+        NodeList points = gpx.getElementsByTagNameNS("http://www.topografix.com/GPX/1/1", "trkpt");
+        Assert.assertEquals(2000, points.getLength());
+
+        Element first = (Element) points.item(0);
+        Assert.assertEquals("55.0", first.getAttribute("lat"));
+        Assert.assertEquals("37.0", first.getAttribute("lon"));
+        Assert.assertEquals("1970-01-01T00:00:00Z", first.getElementsByTagNameNS("*", "time").item(0).getTextContent());
+        // unknown elevation is omitted
+        Assert.assertEquals(0, first.getElementsByTagNameNS("*", "ele").getLength());
+        Assert.assertEquals(1, ((Element) points.item(1)).getElementsByTagNameNS("*", "ele").getLength());
+        // speed is an extension element, it must not be in GPX namespace
+        Assert.assertEquals(0, first.getElementsByTagNameNS("http://www.topografix.com/GPX/1/1", "speed").getLength());
+        Assert.assertEquals("20.0", first.getElementsByTagNameNS(
+                "http://www.garmin.com/xmlschemas/TrackPointExtension/v2", "speed").item(0).getTextContent());
+    }
+
+    @Test
+    public void uploadRetry() throws Exception {
+        directory = Files.createTempDirectory("gpx").toFile();
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch uploaded = new CountDownLatch(1);
+
+        exporter = new TrackExporter(directory, false, file -> {
+            Assert.assertTrue(file.exists());
+
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("service unavailable");
+            }
+
+            uploaded.countDown();
+        }, 5, 50);
+
+        exporter.export(2, track(20));
+
+        Assert.assertTrue(uploaded.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, attempts.get());
+
+        // uploaded file can be cleaned
+        Thread.sleep(50);
+        exporter.clean();
+        Assert.assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void uploadGivesUp() throws Exception {
+        directory = Files.createTempDirectory("gpx").toFile();
+        AtomicInteger attempts = new AtomicInteger();
+
+        exporter = new TrackExporter(directory, false, file -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("service unavailable");
+        }, 2, 50);
+
+        exporter.export(3, track(20));
+        Thread.sleep(500);
+
+        Assert.assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void pendingUploadIsNotCleaned() throws Exception {
+        directory = Files.createTempDirectory("gpx").toFile();
+        CountDownLatch started = new CountDownLatch(1);
+
+        exporter = new TrackExporter(directory, false, file -> {
+            started.countDown();
+            throw new IllegalStateException("service unavailable");
+        }, 2, 60_000);
+
+        exporter.export(4, track(20));
+
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        exporter.clean();
+        Assert.assertEquals(1, directory.listFiles().length);
+    }
+
+    private static TrackBuffer track(int size) {
+        TrackBuffer track = new TrackBuffer();
+
+        for (int i = 0; i < size; i++) {
+            track.add(55D + i * 0.0001D, 37D + i * 0.0001D, i == 0 ? Double.NaN : 150D, 20D, i);
+        }
+
+        return track;
+    }
+}
@@ -0,0 +1,149 @@
+package ru.iris.protocol.transport.track;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.iris.protocol.transport.geo.Geo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TrackSimplifierTests {
+
+    private static final double LAT = 55.75D;
+    private static final double LON = 37.6D;
+    private static final double METERS_PER_DEGREE = 6_371_000D * Math.PI / 180D;
+
+    @Test
+    public void withinTolerance() {
+        List<double[]> route = route();
+        TrackSimplifier simplifier = new TrackSimplifier(5D, 60L);
+
+        for (double[] point : route) {
+            simplifier.add(point[0], point[1], 150D, 20D, (long) point[2]);
+        }
+
+        List<double[]> simplified = points(simplifier.finish());
+
+        Assert.assertEquals(route.size(), simplifier.getReceived());
+        Assert.assertTrue("Simplified to " + simplified.size(), simplified.size() * 10 < route.size());
+        Assert.assertArrayEquals(route.get(0), simplified.get(0), 0D);
+        Assert.assertArrayEquals(route.get(route.size() - 1), simplified.get(simplified.size() - 1), 0D);
+
+        for (double[] point : route) {
+            double min = Double.MAX_VALUE;
+
+            for (int i = 1; i < simplified.size(); i++) {
+                double[] a = simplified.get(i - 1);
+                double[] b = simplified.get(i);
+                min = Math.min(min, Geo.segmentDistance(point[0], point[1], a[0], a[1], b[0], b[1]));
+            }
+
+            Assert.assertTrue("Point is " + min + " m away from track", min <= 5D + 1e-6);
+        }
+    }
+
+    @Test
+    public void gapIsKept() {
+        TrackSimplifier simplifier = new TrackSimplifier(5D, 60L);
+
+        for (int i = 0; i < 100; i++) {
+            // the same straight line, but with 10 minutes pause in the middle
+            simplifier.add(LAT, LON + east(i * 10D), Double.NaN, 20D, i < 50 ? i : i + 600);
+        }
+
+        List<double[]> simplified = points(simplifier.finish());
+
+        Assert.assertEquals(4, simplified.size());
+        Assert.assertEquals(49D, simplified.get(1)[2], 0D);
+        Assert.assertEquals(650D, simplified.get(2)[2], 0D);
+    }
+
+    @Test
+    public void addAfterFinish() {
+        TrackSimplifier simplifier = new TrackSimplifier(5D, 60L);
+
+        for (int i = 0; i < 10; i++) {
+            simplifier.add(LAT, LON + east(i * 10D), Double.NaN, 20D, i);
+        }
+
+        TrackBuffer track = simplifier.finish();
+        int size = track.size();
+        boolean rejected = false;
+
+        try {
+            simplifier.add(LAT, LON + east(1000D), Double.NaN, 20D, 100);
+        } catch (IllegalStateException e) {
+            rejected = true;
+        }
+
+        Assert.assertTrue(rejected);
+        Assert.assertEquals(size, track.size());
+        Assert.assertEquals(10, simplifier.getReceived());
+    }
+
+    @Test
+    public void thinning() {
+        HistoryThinner thinner = new HistoryThinner(45D, 300L);
+        int stored = 0;
+
+        // 10 m/s for 10 minutes, then standing for 10 minutes
+        for (int t = 0; t < 1200; t++) {
+            double lon = LON + east(Math.min(t, 600) * 10D);
+
+            if (thinner.accept(1, LAT, lon, t)) {
+                stored++;
+            }
+        }
+
+        // every 5 s while moving and every 5 minutes while standing
+        Assert.assertEquals(120 + 2, stored);
+        Assert.assertTrue(thinner.accept(2, LAT, LON, 0));
+    }
+
+    /**
+     * 1 km east, 1 km north and a half circle of 300 m radius, point every 10 m with GPS noise up to 2 m.
+     */
+    private static List<double[]> route() {
+        Random random = new Random(42);
+        List<double[]> route = new ArrayList<>();
+        int t = 0;
+
+        for (int i = 0; i <= 100; i++) {
+            route.add(noisy(random, i * 10D, 0D, t++));
+        }
+
+        for (int i = 1; i <= 100; i++) {
+            route.add(noisy(random, 1000D, i * 10D, t++));
+        }
+
+        for (int i = 1; i <= 94; i++) {
+            double angle = Math.PI * i / 94D;
+            route.add(noisy(random, 1300D - 300D * Math.cos(angle), 1000D + 300D * Math.sin(angle), t++));
+        }
+
+        return route;
+    }
+
+    private static double[] noisy(Random random, double x, double y, long time) {
+        return new double[]{
+                LAT + north(y + (random.nextDouble() * 4D - 2D) / Math.sqrt(2D)),
+                LON + east(x + (random.nextDouble() * 4D - 2D) / Math.sqrt(2D)),
+                time
+        };
+    }
+
+    private static double north(double meters) {
+        return meters / METERS_PER_DEGREE;
+    }
+
+    private static double east(double meters) {
+        return meters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(LAT)));
+    }
+
+    private static List<double[]> points(TrackBuffer track) {
+        List<double[]> points = new ArrayList<>();
+        track.forEach((lat, lon, ele, speed, time) -> points.add(new double[]{lat, lon, time}));
+        return points;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.iris.protocol.xiaomi;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import ru.iris.xiaomi4j.Gateway;
+import ru.iris.xiaomi4j.model.GatewayModel;
+import ru.iris.xiaomi4j.watchers.Notification;
+
+import java.net.InetAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Connection to single Xiaomi gateway. Reports are handled on gateway's own receive thread and commands are sent
+ * from its own command thread, so slow or unreachable gateway doesn't delay others.
+ */
+@Slf4j
+class GatewayWorker {
+
+    @Getter
+    private final String sid;
+    @Getter
+    private final InetAddress host;
+    private final Gateway gateway;
+    private final ExecutorService receiver;
+    private final ExecutorService commands;
+
+    GatewayWorker(GatewayModel model, String encryptionKey, Consumer<Notification> handler) {
+        this.sid = model.getSid();
+        this.host = model.getHost();
+        this.receiver = Executors.newSingleThreadExecutor(r -> newThread(r, "xiaomi-rx-" + sid));
+        this.commands = Executors.newSingleThreadExecutor(r -> newThread(r, "xiaomi-tx-" + sid));
+        this.gateway = new Gateway(model.getHost(), model.getPort(), model.getSid(), encryptionKey,
+                notification -> execute(receiver, () -> handler.accept(notification)));
+    }
+
+    void writeToDevice(String deviceSid, String[] keys, Object[] values) {
+        execute(commands, () -> gateway.writeToDevice(deviceSid, keys, values));
+    }
+
+    void discoverItems() {
+        execute(commands, gateway::discoverItems);
+    }
+
+    void close() {
+        gateway.close();
+        receiver.shutdownNow();
+        commands.shutdownNow();
+    }
+
+    private void execute(ExecutorService executor, Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.error("Gateway {} error", sid, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Gateway {} is closed, task skipped", sid);
+        }
+    }
+
+    private static Thread newThread(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
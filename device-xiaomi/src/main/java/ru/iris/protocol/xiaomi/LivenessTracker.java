@@ -0,0 +1,39 @@
+package ru.iris.protocol.xiaomi;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks devices, heard from any message including dropped duplicates and heartbeats,
+ * and tells when device should be reported as alive, at most once per ping interval.
+ */
+class LivenessTracker {
+
+    private final long pingIntervalMs;
+    private final Map<String, Seen> seen = new ConcurrentHashMap<>();
+
+    LivenessTracker(long pingIntervalMs) {
+        this.pingIntervalMs = pingIntervalMs;
+    }
+
+    /**
+     * @return true if ping of device is due
+     */
+    boolean touch(String sid) {
+        Seen device = seen.computeIfAbsent(sid, k -> new Seen());
+        long now = System.currentTimeMillis();
+
+        synchronized (device) {
+            if (now - device.lastPing < pingIntervalMs) {
+                return false;
+            }
+
+            device.lastPing = now;
+            return true;
+        }
+    }
+
+    private static class Seen {
+        private long lastPing;
+    }
+}
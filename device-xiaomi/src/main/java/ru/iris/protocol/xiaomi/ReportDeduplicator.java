@@ -0,0 +1,101 @@
+package ru.iris.protocol.xiaomi;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops repeated gateway messages before they reach registry and bus:
+ * <ul>
+ * <li>retransmits: the same (sid, cmd, token, data) within short TTL - gateways resend packets and the same
+ * multicast packet may be delivered through several gateway connections;</li>
+ * <li>heartbeat with the same data, as the last handled message of device - it only confirms that device is alive.</li>
+ * </ul>
+ * Event payloads (button clicks, motion, door open / close etc) are never dropped: the same event, repeated
+ * by user or sensor, is a new event.
+ */
+class ReportDeduplicator {
+
+    private static final int REPORT = 0;
+    private static final int HEARTBEAT = 1;
+    private static final int OTHER = 2;
+
+    private final long ttlMs;
+    private final Map<String, Seen> seen = new ConcurrentHashMap<>();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder heartbeats = new LongAdder();
+
+    ReportDeduplicator(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * @param token gateway token of message, null if message has no token
+     * @return true if message should be handled
+     */
+    boolean accept(String sid, String cmd, String token, String data) {
+        Seen device = seen.computeIfAbsent(sid, k -> new Seen());
+        int slot = "report".equals(cmd) ? REPORT : "heartbeat".equals(cmd) ? HEARTBEAT : OTHER;
+        long now = System.currentTimeMillis();
+
+        synchronized (device) {
+            if (!isEvent(data)
+                    && now - device.times[slot] < ttlMs
+                    && equals(device.data[slot], data)
+                    && equals(device.commands[slot], cmd)
+                    && equals(device.tokens[slot], token)) {
+                duplicates.increment();
+                return false;
+            }
+
+            device.times[slot] = now;
+            device.data[slot] = data;
+            device.commands[slot] = cmd;
+            device.tokens[slot] = token;
+
+            if (slot == HEARTBEAT && data != null && data.equals(device.last)) {
+                heartbeats.increment();
+                return false;
+            }
+
+            device.last = data;
+        }
+
+        accepted.increment();
+        return true;
+    }
+
+    long getAccepted() {
+        return accepted.sum();
+    }
+
+    long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    long getHeartbeats() {
+        return heartbeats.sum();
+    }
+
+    /**
+     * Events come as status ({"status":"click"}, {"status":"motion"}, {"status":"open"}) or as
+     * wireless switch channels ({"channel_0":"click"}).
+     */
+    static boolean isEvent(String data) {
+        return data != null && (data.contains("\"status\"") || data.contains("\"channel_"));
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static class Seen {
+        private final long[] times = new long[3];
+        private final String[] data = new String[3];
+        private final String[] commands = new String[3];
+        private final String[] tokens = new String[3];
+        // data of the last handled message
+        private String last;
+    }
+}
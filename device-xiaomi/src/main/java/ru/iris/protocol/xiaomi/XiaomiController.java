@@ -1,6 +1,8 @@
 package ru.iris.protocol.xiaomi;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
@@ -34,17 +36,17 @@ import ru.iris.models.protocol.data.DataLevel;
 import ru.iris.models.protocol.data.DataSubChannelLevel;
 import ru.iris.models.protocol.enums.*;
 import ru.iris.models.service.ServiceState;
+import ru.iris.protocol.xiaomi.XiaomiReport.Field;
 import ru.iris.xiaomi4j.Discovery;
-import ru.iris.xiaomi4j.Gateway;
 import ru.iris.xiaomi4j.model.GatewayModel;
 import ru.iris.xiaomi4j.watchers.Notification;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
-
-import static ru.iris.models.protocol.enums.EventLabel.BATTERY_LOW;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @Profile("xiaomi")
@@ -57,16 +59,21 @@ public class XiaomiController extends AbstractProtocolService {
     private final ConfigLoader config;
     private final DeviceRegistry registry;
     private static final JsonParser PARSER = new JsonParser();
+    // report parser is reused by receiving thread
+    private static final ThreadLocal<XiaomiReport> REPORT = ThreadLocal.withInitial(XiaomiReport::new);
+    private final Map<String, LastValues> lastValues = new ConcurrentHashMap<>();
     private List<GatewayController> gateways;
-    private Gateway gateway = null;
+    // connected gateways by sid
+    private final Map<String, GatewayWorker> workers = new ConcurrentHashMap<>();
+    // gateway sid by device sid
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+    private ReportDeduplicator deduplicator;
+    private LivenessTracker liveness;
 
     @Autowired
     private Gson gson;
 
-    private static final int VOLTAGE_MAX_MILLIVOLTS = 3100;
-    private static final int VOLTAGE_MIN_MILLIVOLTS = 2700;
-    private static final int BATT_LEVEL_LOW = 20;
-
     @Autowired
     public XiaomiController(EventBus r,
                             ConfigLoader config,
@@ -97,12 +104,22 @@ public class XiaomiController extends AbstractProtocolService {
             }.getType();
             gateways = gson.fromJson(gatewayConfig, listType);
         }
+
+        String ttl = config.get("dedupTtlMs");
+        String ping = config.get("pingIntervalSec");
+        deduplicator = new ReportDeduplicator(ttl != null ? Long.parseLong(ttl) : 150L);
+        liveness = new LivenessTracker((ping != null ? Long.parseLong(ping) : 300L) * 1000L);
     }
 
     @Override
     public void onShutdown() {
         setServiceState(ServiceState.STOPPING);
         logger.info("XiaomiController stopping");
+
+        running = false;
+        workers.values().forEach(GatewayWorker::close);
+        workers.clear();
+
         setServiceState(ServiceState.STOPPED);
     }
 
@@ -124,8 +141,8 @@ public class XiaomiController extends AbstractProtocolService {
                     return;
                 }
 
-                if (gateway == null) {
-                    logger.error("No gateways configured!");
+                if (workers.isEmpty()) {
+                    logger.error("No gateways connected!");
                     return;
                 }
 
@@ -133,12 +150,12 @@ public class XiaomiController extends AbstractProtocolService {
                     case TURN_ON:
                         if (x.getData() instanceof DataLevel) {
                             logger.info("Turn ON device on channel {}", x.getChannel());
-                            gateway.writeToDevice(x.getChannel(), new String[]{"channel_0"}, new String[]{"on"});
+                            writeToDevice(x.getChannel(), new String[]{"channel_0"}, new String[]{"on"});
                         } else if (x.getData() instanceof DataSubChannelLevel) {
                             DataSubChannelLevel data = (DataSubChannelLevel) x.getData();
                             logger.info("Turn ON device on channel {}, subchannel: {}", x.getChannel(), data.getSubChannel());
                             int subchannel = data.getSubChannel() - 1;
-                            gateway.writeToDevice(x.getChannel(), new String[]{"channel_" + subchannel}, new String[]{"on"});
+                            writeToDevice(x.getChannel(), new String[]{"channel_" + subchannel}, new String[]{"on"});
                         } else {
                             logger.error("Unknown data class!");
                         }
@@ -146,12 +163,12 @@ public class XiaomiController extends AbstractProtocolService {
                     case TURN_OFF:
                         if (x.getData() instanceof DataLevel) {
                             logger.info("Turn OFF device on channel {}", x.getChannel());
-                            gateway.writeToDevice(x.getChannel(), new String[]{"channel_0"}, new String[]{"off"});
+                            writeToDevice(x.getChannel(), new String[]{"channel_0"}, new String[]{"off"});
                         } else if (x.getData() instanceof DataSubChannelLevel) {
                             DataSubChannelLevel data = (DataSubChannelLevel) x.getData();
                             logger.info("Turn OFF device on channel {}, subchannel: {}", x.getChannel(), data.getSubChannel());
                             int subchannel = data.getSubChannel() - 1;
-                            gateway.writeToDevice(x.getChannel(), new String[]{"channel_" + subchannel}, new String[]{"off"});
+                            writeToDevice(x.getChannel(), new String[]{"channel_" + subchannel}, new String[]{"off"});
                         } else {
                             logger.error("Unknown data class!");
                         }
@@ -169,49 +186,144 @@ public class XiaomiController extends AbstractProtocolService {
     public void run() throws InterruptedException {
         logger.info("Gateways: {}", gateways);
 
-        List<GatewayModel> discoveredGateways = new ArrayList<>();
+        if (gateways == null || gateways.isEmpty()) {
+            return;
+        }
 
-        while (discoveredGateways.size() == 0) {
-            logger.info("Searching for Xiaomi gateway");
+        String interval = config.get("discoveryIntervalSec");
+        long discoveryInterval = (interval != null ? Long.parseLong(interval) : 60L) * 1000L;
 
+        // all gateways answer the same whois request, so one scan finds them all
+        while (running) {
             Discovery discovery = new Discovery();
             discovery.startScan();
 
-            discoveredGateways = discovery.getGatewayModels();
+            Thread.sleep(workers.isEmpty() ? 10_000L : discoveryInterval);
+
+            List<GatewayModel> discovered = new ArrayList<>(discovery.getGatewayModels());
+            discovery.stopScan();
+
+            for (GatewayModel model : discovered) {
+                connect(model);
+            }
 
-            Thread.sleep(10_000L);
+            if (workers.isEmpty()) {
+                logger.info("No gateways, specified in xiaomi.properties, found yet. Discovered: {}", discovered.size());
+            }
+        }
+    }
 
-            logger.info("Gateways found: " + discoveredGateways.size());
+    private void connect(GatewayModel model) {
+        GatewayController controller = gateways.stream()
+                .filter(c -> model.getSid().equals(c.getSerial()))
+                .findFirst()
+                .orElse(null);
 
-            discovery.stopScan();
+        if (controller == null || !running) {
+            return;
         }
 
-        for (GatewayModel model : discoveredGateways) {
-            for (GatewayController controller : gateways) {
-                if (model.getSid().equals(controller.getSerial())) {
-                    gateway = new Gateway(
-                            model.getHost(),
-                            model.getPort(),
-                            model.getSid(),
-                            controller.getEncryptionKey(),
-                            this::doWork);
-                }
+        GatewayWorker worker = workers.get(model.getSid());
+
+        if (worker != null) {
+            if (worker.getHost().equals(model.getHost())) {
+                return;
             }
+
+            logger.info("Gateway {} changed address to {}, reconnecting", model.getSid(), model.getHost());
+            worker.close();
+        }
+
+        worker = new GatewayWorker(model, controller.getEncryptionKey(), this::doWork);
+        workers.put(model.getSid(), worker);
+        worker.discoverItems();
+
+        logger.info("Connected to gateway {} at {}", model.getSid(), model.getHost());
+
+        if (!getServiceState().equals(ServiceState.RUNNING)) {
+            setServiceState(ServiceState.STARTED);
         }
+    }
+
+    /**
+     * Sends command through gateway, which owns device. If owner is not known yet, command is sent
+     * through all gateways, the ones without such device just ignore it.
+     */
+    private void writeToDevice(String sid, String[] keys, Object[] values) {
+        GatewayWorker owner = workers.get(owners.getOrDefault(sid, sid));
 
-        if (gateway == null) {
-            logger.error("No gateways found, specified in xiaomi.properties");
+        if (owner != null) {
+            owner.writeToDevice(sid, keys, values);
+            return;
         }
 
-        setServiceState(ServiceState.STARTED);
+        logger.debug("Owner gateway of device {} is unknown, sending to all gateways", sid);
+        workers.values().forEach(worker -> worker.writeToDevice(sid, keys, values));
     }
 
-    @SuppressWarnings("Duplicates")
     private void doWork(Notification notification) {
         if (!getServiceState().equals(ServiceState.RUNNING)) {
             setServiceState(ServiceState.RUNNING);
         }
 
+        String sid = notification.getSid();
+
+        if (sid == null) {
+            return;
+        }
+
+        // every message proves that device is alive, even if it's dropped below
+        if (liveness.touch(sid)) {
+            broadcast(Queue.EVENT_DEVICE_PING, DeviceChangeEvent.builder()
+                    .channel(sid)
+                    .protocol(SourceProtocol.XIAOMI)
+                    .eventLabel("Ping")
+                    .build()
+            );
+        }
+
+        JsonObject message = notification.getRawMessage();
+        String data = message != null && message.has("data") ? message.get("data").getAsString() : null;
+        String token = message != null && message.has("token") ? message.get("token").getAsString() : null;
+
+        if (!deduplicator.accept(sid, notification.getCommand(), token, data)) {
+            return;
+        }
+
+        // device list of gateway tells which devices it owns
+        if ("get_id_list_ack".equals(notification.getCommand())) {
+            updateOwners(sid, notification.getRawMessage());
+            return;
+        }
+
+        // the same device may be reported by several gateway workers
+        LastValues last = lastValues.computeIfAbsent(sid, k -> new LastValues());
+
+        synchronized (last) {
+            process(notification, last);
+        }
+    }
+
+    private void updateOwners(String gatewaySid, JsonObject message) {
+        if (message == null || !message.has("data")) {
+            return;
+        }
+
+        try {
+            JsonArray devices = PARSER.parse(message.get("data").getAsString()).getAsJsonArray();
+
+            for (JsonElement device : devices) {
+                owners.put(device.getAsString(), gatewaySid);
+            }
+
+            logger.info("Gateway {} owns {} devices", gatewaySid, devices.size());
+        } catch (RuntimeException e) {
+            logger.error("Cant parse device list of gateway {}", gatewaySid, e);
+        }
+    }
+
+    @SuppressWarnings("Duplicates")
+    private void process(Notification notification, LastValues last) {
         String sid = notification.getSid();
         Device device = registry.getDevice(SourceProtocol.XIAOMI, sid);
 
@@ -285,359 +397,246 @@ public class XiaomiController extends AbstractProtocolService {
             }
         }
 
-        JsonObject message;
-
-        switch (notification.getType()) {
-            case SENSOR_HT:
-                message = notification.getRawMessage();
-
-                if (message.has("data")) {
-                    JsonObject data = PARSER.parse(message.get("data").getAsString()).getAsJsonObject();
-                    Double temp, humi;
-
-                    if (data.has("temperature")) {
-                        temp = data.get("temperature").getAsInt() / 100D;
-                        DeviceValue tempDb = device.getValues().get(StandartDeviceValueLabel.TEMPERATURE.getName());
+        JsonObject message = notification.getRawMessage();
 
-                        if ((tempDb != null && tempDb.getCurrentValue() != null && !Objects.equals(Double.valueOf(tempDb.getCurrentValue()), temp))
-                                || tempDb == null || tempDb.getCurrentValue() == null) {
-                            registry.addChange(device, StandartDeviceValueLabel.TEMPERATURE.getName(), temp.toString(), ValueType.DOUBLE);
-
-                            broadcast("event.device.temperature", new DeviceChangeEvent(
-                                    device.getChannel(),
-                                    SourceProtocol.XIAOMI,
-                                    StandartDeviceValueLabel.TEMPERATURE.getName(),
-                                    temp.toString(),
-                                    ValueType.DOUBLE)
-                            );
-
-                            logger.info("Channel: {} Temperature: {}C", notification.getSid(), temp);
-                        }
-                    }
+        if (message == null || !message.has("data")) {
+            return;
+        }
 
-                    if (data.has("humidity")) {
-                        humi = data.get("humidity").getAsInt() / 100D;
-                        DeviceValue humiDb = device.getValues().get(StandartDeviceValueLabel.HUMIDITY.getName());
+        XiaomiReport report = REPORT.get();
+        report.parse(message.get("data").getAsString());
 
-                        if ((humiDb != null && humiDb.getCurrentValue() != null && !Objects.equals(Double.valueOf(humiDb.getCurrentValue()), humi))
-                                || humiDb == null || humiDb.getCurrentValue() == null) {
-                            registry.addChange(device, StandartDeviceValueLabel.HUMIDITY.getName(), humi.toString(), ValueType.DOUBLE);
+        switch (notification.getType()) {
+            case SENSOR_HT:
+                if (report.has(Field.TEMPERATURE)
+                        && isChanged(device, last, Field.TEMPERATURE, report.getInt(Field.TEMPERATURE), StandartDeviceValueLabel.TEMPERATURE.getName(), 100)) {
+                    String temp = String.valueOf(report.getInt(Field.TEMPERATURE) / 100D);
+                    registry.addChange(device, StandartDeviceValueLabel.TEMPERATURE.getName(), temp, ValueType.DOUBLE);
+
+                    broadcast("event.device.temperature", new DeviceChangeEvent(
+                            device.getChannel(),
+                            SourceProtocol.XIAOMI,
+                            StandartDeviceValueLabel.TEMPERATURE.getName(),
+                            temp,
+                            ValueType.DOUBLE)
+                    );
+
+                    logger.info("Channel: {} Temperature: {}C", sid, temp);
+                }
 
-                            broadcast("event.device.humidity", new DeviceChangeEvent(
-                                    device.getChannel(),
-                                    SourceProtocol.XIAOMI,
-                                    StandartDeviceValueLabel.HUMIDITY.getName(),
-                                    humi.toString(),
-                                    ValueType.DOUBLE)
-                            );
+                if (report.has(Field.HUMIDITY)
+                        && isChanged(device, last, Field.HUMIDITY, report.getInt(Field.HUMIDITY), StandartDeviceValueLabel.HUMIDITY.getName(), 100)) {
+                    String humi = String.valueOf(report.getInt(Field.HUMIDITY) / 100D);
+                    registry.addChange(device, StandartDeviceValueLabel.HUMIDITY.getName(), humi, ValueType.DOUBLE);
 
-                            logger.info("Channel: {} Humidity: {}%", notification.getSid(), humi);
-                        }
-                    }
+                    broadcast("event.device.humidity", new DeviceChangeEvent(
+                            device.getChannel(),
+                            SourceProtocol.XIAOMI,
+                            StandartDeviceValueLabel.HUMIDITY.getName(),
+                            humi,
+                            ValueType.DOUBLE)
+                    );
 
-                    if (data.has("voltage")) {
-                        checkVoltage(device, data);
-                    }
+                    logger.info("Channel: {} Humidity: {}%", sid, humi);
                 }
 
+                checkVoltage(device, last, report);
                 break;
             case SENSOR_AQARA_MAGNET:
-                message = notification.getRawMessage();
-
-                if (message.has("data")) {
-                    JsonObject data = PARSER.parse(message.get("data").getAsString()).getAsJsonObject();
-
-                    if (data.has("status")) {
-                        Boolean status = data.get("status").getAsString().equals("open");
-                        DeviceValue statusDb = device.getValues().get(StandartDeviceValueLabel.OPENED.getName());
-
-                        if ((statusDb != null && statusDb.getCurrentValue() != null && !Boolean.valueOf(statusDb.getCurrentValue()) == status)
-                                || statusDb == null || statusDb.getCurrentValue() == null) {
-                            registry.addChange(device, StandartDeviceValueLabel.OPENED.getName(), status.toString(), ValueType.BOOL);
-
-                            broadcast("event.device.doorsensor." + data.get("status").getAsString(), new DeviceChangeEvent(
-                                    device.getChannel(),
-                                    SourceProtocol.XIAOMI,
-                                    StandartDeviceValueLabel.OPENED.getName(),
-                                    status.toString(),
-                                    ValueType.BOOL)
-                            );
-
-                            logger.info("Channel: {} Door sensor state is {}", notification.getSid(),
-                                        status ? "open" : "closed");
-                        }
-                    }
-
-                    if (data.has("voltage")) {
-                        checkVoltage(device, data);
+                if (report.has(Field.STATUS)) {
+                    String state = report.getString(Field.STATUS);
+                    boolean status = state.equals("open");
+                    DeviceValue statusDb = device.getValues().get(StandartDeviceValueLabel.OPENED.getName());
+
+                    if (statusDb == null || statusDb.getCurrentValue() == null || Boolean.valueOf(statusDb.getCurrentValue()) != status) {
+                        registry.addChange(device, StandartDeviceValueLabel.OPENED.getName(), String.valueOf(status), ValueType.BOOL);
+
+                        broadcast("event.device.doorsensor." + state, new DeviceChangeEvent(
+                                device.getChannel(),
+                                SourceProtocol.XIAOMI,
+                                StandartDeviceValueLabel.OPENED.getName(),
+                                String.valueOf(status),
+                                ValueType.BOOL)
+                        );
+
+                        logger.info("Channel: {} Door sensor state is {}", sid, status ? "open" : "closed");
                     }
                 }
+
+                checkVoltage(device, last, report);
                 break;
             case SWITCH:
-                message = notification.getRawMessage();
-
-                if (message.has("data")) {
-                    JsonObject data = PARSER.parse(message.get("data").getAsString()).getAsJsonObject();
-
-                    if (data.has("voltage")) {
-                        checkVoltage(device, data);
-                    }
+                checkVoltage(device, last, report);
 
-                    if (data.has("status")) {
-                        String status = data.get("status").getAsString();
-                        DeviceValue statusDb = device.getValues().get(StandartDeviceValueLabel.STATUS.getName());
+                if (report.has(Field.STATUS)) {
+                    String status = report.getString(Field.STATUS);
+                    DeviceValue statusDb = device.getValues().get(StandartDeviceValueLabel.STATUS.getName());
 
-                        if ((statusDb != null && statusDb.getCurrentValue() != null && !statusDb.getCurrentValue().equals(status))
-                                || statusDb == null || statusDb.getCurrentValue() == null) {
-                            registry.addChange(device, StandartDeviceValueLabel.STATUS.getName(), status, ValueType.STRING);
+                    if (statusDb == null || statusDb.getCurrentValue() == null || !statusDb.getCurrentValue().equals(status)) {
+                        registry.addChange(device, StandartDeviceValueLabel.STATUS.getName(), status, ValueType.STRING);
 
-                            broadcast("event.device.button", new DeviceChangeEvent(
-                                        device.getChannel(),
-                                        SourceProtocol.XIAOMI,
-                                    StandartDeviceValueLabel.STATUS.getName(),
-                                    status,
-                                    ValueType.STRING)
-                                );
+                        broadcast("event.device.button", new DeviceChangeEvent(
+                                device.getChannel(),
+                                SourceProtocol.XIAOMI,
+                                StandartDeviceValueLabel.STATUS.getName(),
+                                status,
+                                ValueType.STRING)
+                        );
 
-                            logger.info("Channel: {} Button status: {}", notification.getSid(), status);
-                            }
+                        logger.info("Channel: {} Button status: {}", sid, status);
                     }
                 }
                 break;
             case SENSOR_AQARA_FLOOD:
-                message = notification.getRawMessage();
+                checkVoltage(device, last, report);
 
-                if (message.has("data")) {
-                    JsonObject data = PARSER.parse(message.get("data").getAsString()).getAsJsonObject();
+                if (report.has(Field.STATUS)) {
+                    boolean leak = report.getString(Field.STATUS).equals("leak");
+                    DeviceValue leakDb = device.getValues().get(StandartDeviceValueLabel.LEAK.getName());
 
-                    if (data.has("voltage")) {
-                        checkVoltage(device, data);
-                    }
+                    if (leakDb == null || leakDb.getCurrentValue() == null || Boolean.valueOf(leakDb.getCurrentValue()) != leak) {
+                        registry.addChange(device, StandartDeviceValueLabel.LEAK.getName(), String.valueOf(leak), ValueType.BOOL);
 
-                    if (data.has("status")) {
-                        DeviceValue leakDb = device.getValues().get(StandartDeviceValueLabel.LEAK.getName());
-                        Boolean leak;
-
-                        if (data.get("status").getAsString().equals("leak")) {
-                            leak = true;
-                            if ((leakDb != null && leakDb.getCurrentValue() != null && !Objects.equals(Boolean.valueOf(leakDb.getCurrentValue()), true))
-                                    || leakDb == null || leakDb.getCurrentValue() == null) {
-                                registry.addChange(device, StandartDeviceValueLabel.LEAK.getName(), leak.toString(), ValueType.BOOL);
-
-                                broadcast("event.device.leak", new DeviceChangeEvent(
-                                        device.getChannel(),
-                                        SourceProtocol.XIAOMI,
-                                        StandartDeviceValueLabel.LEAK.getName(),
-                                        leak.toString(),
-                                        ValueType.BOOL)
-                                );
-
-                                logger.info("Channel: {} Leak detected", notification.getSid());
-                            }
-                        } else {
-                            leak = false;
-                            if ((leakDb != null && leakDb.getCurrentValue() != null && !Objects.equals(Boolean.valueOf(leakDb.getCurrentValue()), false))
-                                    || leakDb == null || leakDb.getCurrentValue() == null) {
-                                registry.addChange(device, StandartDeviceValueLabel.LEAK.getName(), leak.toString(), ValueType.BOOL);
-
-                                broadcast("event.device.leak", new DeviceChangeEvent(
-                                        device.getChannel(),
-                                        SourceProtocol.XIAOMI,
-                                        StandartDeviceValueLabel.LEAK.getName(),
-                                        leak.toString(),
-                                        ValueType.BOOL)
-                                );
-                                logger.info("Channel: {} Leak gone", notification.getSid());
-                            }
-                        }
+                        broadcast("event.device.leak", new DeviceChangeEvent(
+                                device.getChannel(),
+                                SourceProtocol.XIAOMI,
+                                StandartDeviceValueLabel.LEAK.getName(),
+                                String.valueOf(leak),
+                                ValueType.BOOL)
+                        );
+
+                        logger.info("Channel: {} Leak {}", sid, leak ? "detected" : "gone");
                     }
                 }
                 break;
             case SWITCH_AQARA_ZERO_1BUTTON:
             case SWITCH_AQARA_1BUTTON:
-                message = notification.getRawMessage();
-
-                if (message.has("data")) {
-                    JsonObject data = PARSER.parse(message.get(StandartDeviceValueLabel.LEVEL.getName()).getAsString()).getAsJsonObject();
-
-                    if (data.has("voltage")) {
-                        checkVoltage(device, data);
-                    }
-
-                    if (data.has("channel_0")) {
-                        String ch0 = data.get("channel_0").getAsString().equals("on")
-                                ? StandartDeviceValue.FULL_ON.getValue() : StandartDeviceValue.FULL_OFF.getValue();
-                        DeviceValue ch0Db = device.getValues().get(StandartDeviceValueLabel.LEVEL.getName());
-
-                        if ((ch0Db != null && ch0Db.getCurrentValue() != null && !ch0Db.getCurrentValue().equals(ch0))
-                                || ch0Db == null || ch0Db.getCurrentValue() == null) {
-                            registry.addChange(device, StandartDeviceValueLabel.LEVEL.getName(), ch0, ValueType.BYTE);
-
-                            broadcast("event.device." + data.get("channel_0").getAsString(), new DeviceChangeEvent(
-                                    device.getChannel(),
-                                    SourceProtocol.XIAOMI,
-                                    StandartDeviceValueLabel.LEVEL.getName(),
-                                    ch0,
-                                    ValueType.BYTE)
-                            );
-
-	                          logger.info("Channel: {} Light is {}", notification.getSid(),
-	                                      data.get("channel_0").getAsString());
-                        }
+                checkVoltage(device, last, report);
+
+                if (report.has(Field.CHANNEL_0)) {
+                    String state = report.getString(Field.CHANNEL_0);
+                    String ch0 = state.equals("on")
+                            ? StandartDeviceValue.FULL_ON.getValue() : StandartDeviceValue.FULL_OFF.getValue();
+                    DeviceValue ch0Db = device.getValues().get(StandartDeviceValueLabel.LEVEL.getName());
+
+                    if (ch0Db == null || ch0Db.getCurrentValue() == null || !ch0Db.getCurrentValue().equals(ch0)) {
+                        registry.addChange(device, StandartDeviceValueLabel.LEVEL.getName(), ch0, ValueType.BYTE);
+
+                        broadcast("event.device." + state, new DeviceChangeEvent(
+                                device.getChannel(),
+                                SourceProtocol.XIAOMI,
+                                StandartDeviceValueLabel.LEVEL.getName(),
+                                ch0,
+                                ValueType.BYTE)
+                        );
+
+                        logger.info("Channel: {} Light is {}", sid, state);
                     }
                 }
-
                 break;
             case SWITCH_AQARA_ZERO_2BUTTONS:
             case SWITCH_AQARA_2BUTTONS:
-                message = notification.getRawMessage();
-
-                if (message.has("data")) {
-                    JsonObject data = PARSER.parse(message.get("data").getAsString()).getAsJsonObject();
+                checkVoltage(device, last, report);
+                checkSubChannel(device, report, Field.CHANNEL_0, 1, StandartDeviceValueLabel.LEVEL_ON_SUBCHANNEL_1);
+                checkSubChannel(device, report, Field.CHANNEL_1, 2, StandartDeviceValueLabel.LEVEL_ON_SUBCHANNEL_2);
+                break;
+            case SENSOR_MOTION:
+            case SENSOR_AQUARA_MOTION:
+                if (report.has(Field.LUX)
+                        && isChanged(device, last, Field.LUX, report.getInt(Field.LUX), StandartDeviceValueLabel.ILLUMINANCE.getName(), 1)) {
+                    String lux = String.valueOf(report.getInt(Field.LUX));
+                    registry.addChange(device, StandartDeviceValueLabel.ILLUMINANCE.getName(), lux, ValueType.INT);
+
+                    broadcast("event.device.illuminance", new DeviceChangeEvent(
+                            device.getChannel(),
+                            SourceProtocol.XIAOMI,
+                            StandartDeviceValueLabel.ILLUMINANCE.getName(),
+                            lux,
+                            ValueType.INT)
+                    );
+
+                    logger.info("Channel: {} Illuminance: {} lux", sid, lux);
+                }
 
-                    if (data.has("voltage")) {
-                        checkVoltage(device, data);
-                    }
+                if (report.has(Field.STATUS) && report.getString(Field.STATUS).equals("motion")) {
+                    registry.addChange(device, StandartDeviceValueLabel.MOTION.getName(), "true", ValueType.TRIGGER);
 
-                    if (data.has("channel_0")) {
-                        String ch0 = data.get("channel_0").getAsString().equals("on")
-                                ? StandartDeviceValue.FULL_ON.getValue() : StandartDeviceValue.FULL_OFF.getValue();
-                        DeviceValue ch0Db = device.getValues().get(StandartDeviceValueLabel.LEVEL_ON_SUBCHANNEL_1.getName());
-
-                        if ((ch0Db != null && ch0Db.getCurrentValue() != null && !ch0Db.getCurrentValue().equals(ch0))
-                                || ch0Db == null || ch0Db.getCurrentValue() == null) {
-                            registry.addChange(device, StandartDeviceValueLabel.LEVEL_ON_SUBCHANNEL_1.getName(), ch0, ValueType.BYTE);
-
-		                        broadcast(
-				                        "event.device." + data.get("channel_0").getAsString(),
-				                        DeviceChangeEvent.builder()
-						                        .channel(device.getChannel())
-						                        .protocol(SourceProtocol.XIAOMI)
-						                        .eventLabel(StandartDeviceValueLabel.LEVEL.getName())
-						                        .data(new DataSubChannelLevel(1, ch0, ValueType.BYTE))
-						                        .build()
-		                        );
-
-	                          logger.info("Channel: {}, subchannel 1: Light is {}", notification.getSid(),
-	                                    data.get("channel_0").getAsString());
-                        }
-                    }
+                    broadcast("event.device.motion", new DeviceChangeEvent(
+                            device.getChannel(),
+                            SourceProtocol.XIAOMI,
+                            StandartDeviceValueLabel.MOTION.getName(),
+                            "true",
+                            ValueType.TRIGGER)
+                    );
 
-                    if (data.has("channel_1")) {
-                        String ch1 = data.get("channel_1").getAsString().equals("on")
-                                ? StandartDeviceValue.FULL_ON.getValue() : StandartDeviceValue.FULL_OFF.getValue();
-                        DeviceValue ch1Db = device.getValues().get(StandartDeviceValueLabel.LEVEL_ON_SUBCHANNEL_2.getName());
-
-                        if ((ch1Db != null && ch1Db.getCurrentValue() != null && !ch1Db.getCurrentValue().equals(ch1))
-                                || ch1Db == null || ch1Db.getCurrentValue() == null) {
-                            registry.addChange(device, StandartDeviceValueLabel.LEVEL_ON_SUBCHANNEL_2.getName(), ch1, ValueType.BYTE);
-
-	                        broadcast(
-			                        "event.device." + data.get("channel_1").getAsString(),
-			                        DeviceChangeEvent.builder()
-					                        .channel(device.getChannel())
-					                        .protocol(SourceProtocol.XIAOMI)
-					                        .eventLabel(StandartDeviceValueLabel.LEVEL.getName())
-					                        .data(new DataSubChannelLevel(2, ch1, ValueType.BYTE))
-					                        .build()
-	                        );
-
-                            logger.info("Channel: {}, subchannel 2: Light is {}", notification.getSid(),
-                                    data.get("channel_1").getAsString());
-                        }
-                    }
+                    logger.info("Channel: {} Motion detected", sid);
                 }
-                break;
-	        case SENSOR_MOTION:
-	        case SENSOR_AQUARA_MOTION:
-		        message = notification.getRawMessage();
-
-		        if (message.has("data")) {
-			        JsonObject data = PARSER.parse(message.get("data").getAsString()).getAsJsonObject();
-
-			        if (data.has("lux")) {
-				        Integer lux = data.get("lux").getAsInt();
-				        DeviceValue luxDb = device.getValues().get(StandartDeviceValueLabel.ILLUMINANCE.getName());
-
-				        if ((luxDb != null && luxDb.getCurrentValue() != null && !Objects.equals(Integer.valueOf(luxDb.getCurrentValue()), lux))
-				            || luxDb == null || luxDb.getCurrentValue() == null) {
-					        registry.addChange(device, StandartDeviceValueLabel.ILLUMINANCE.getName(), lux.toString(), ValueType.INT);
-
-					        broadcast("event.device.illuminance", new DeviceChangeEvent(
-							        device.getChannel(),
-							        SourceProtocol.XIAOMI,
-							        StandartDeviceValueLabel.ILLUMINANCE.getName(),
-							        lux.toString(),
-							        ValueType.INT)
-					        );
-
-					        logger.info("Channel: {} Illuminance: {} lux", notification.getSid(), lux);
-				        }
-			        }
-
-			        if (data.has("status")) {
-				        Boolean motion = data.get("status").getAsString().equals("motion");
-
-				        if (motion) {
-					        registry.addChange(device, StandartDeviceValueLabel.MOTION.getName(), motion.toString(), ValueType.TRIGGER);
-
-					        broadcast("event.device.motion", new DeviceChangeEvent(
-							        device.getChannel(),
-							        SourceProtocol.XIAOMI,
-							        StandartDeviceValueLabel.MOTION.getName(),
-							        motion.toString(),
-							        ValueType.TRIGGER)
-					        );
-
-					        logger.info("Channel: {} Motion detected", notification.getSid());
-				        }
-			        }
-
-			        if (data.has("no_motion")) {
-				        Integer nomotion = data.get("no_motion").getAsInt();
-				        DeviceValue nomotionDb = device.getValues().get(StandartDeviceValueLabel.NO_MOTION.getName());
-
-				        if ((nomotionDb != null && nomotionDb.getCurrentValue() != null && !Objects.equals(Integer.valueOf(nomotionDb.getCurrentValue()), nomotion))
-				            || nomotionDb == null || nomotionDb.getCurrentValue() == null) {
-					        registry.addChange(device, StandartDeviceValueLabel.NO_MOTION.getName(), nomotion.toString(), ValueType.INT);
-
-					        broadcast("event.device.motion.absent", new DeviceChangeEvent(
-							        device.getChannel(),
-							        SourceProtocol.XIAOMI,
-							        StandartDeviceValueLabel.NO_MOTION.getName(),
-							        nomotion.toString(),
-							        ValueType.INT)
-					        );
-
-					        logger.info("Channel: {} No motion detected: {}s", notification.getSid(), nomotion);
-				        }
-			        }
-
-			        if (data.has("voltage")) {
-                        checkVoltage(device, data);
-                    }
+
+                if (report.has(Field.NO_MOTION)
+                        && isChanged(device, last, Field.NO_MOTION, report.getInt(Field.NO_MOTION), StandartDeviceValueLabel.NO_MOTION.getName(), 1)) {
+                    String nomotion = String.valueOf(report.getInt(Field.NO_MOTION));
+                    registry.addChange(device, StandartDeviceValueLabel.NO_MOTION.getName(), nomotion, ValueType.INT);
+
+                    broadcast("event.device.motion.absent", new DeviceChangeEvent(
+                            device.getChannel(),
+                            SourceProtocol.XIAOMI,
+                            StandartDeviceValueLabel.NO_MOTION.getName(),
+                            nomotion,
+                            ValueType.INT)
+                    );
+
+                    logger.info("Channel: {} No motion detected: {}s", sid, nomotion);
                 }
 
+                checkVoltage(device, last, report);
                 break;
             default:
                 //skip
         }
     }
 
-    private void checkVoltage(Device device, JsonObject data) {
-        checkBatteryLevelFromVoltage(device.getChannel(), data.get("voltage").getAsInt());
-        Double voltage = data.get("voltage").getAsDouble() / 1000D;
-        DeviceValue voltageDb = device.getValues().get(StandartDeviceValueLabel.VOLTAGE.getName());
+    private void checkSubChannel(Device device, XiaomiReport report, Field field, int subchannel, StandartDeviceValueLabel label) {
+        if (!report.has(field)) {
+            return;
+        }
+
+        String state = report.getString(field);
+        String level = state.equals("on")
+                ? StandartDeviceValue.FULL_ON.getValue() : StandartDeviceValue.FULL_OFF.getValue();
+        DeviceValue levelDb = device.getValues().get(label.getName());
+
+        if (levelDb == null || levelDb.getCurrentValue() == null || !levelDb.getCurrentValue().equals(level)) {
+            registry.addChange(device, label.getName(), level, ValueType.BYTE);
+
+            broadcast(
+                    "event.device." + state,
+                    DeviceChangeEvent.builder()
+                            .channel(device.getChannel())
+                            .protocol(SourceProtocol.XIAOMI)
+                            .eventLabel(StandartDeviceValueLabel.LEVEL.getName())
+                            .data(new DataSubChannelLevel(subchannel, level, ValueType.BYTE))
+                            .build()
+            );
+
+            logger.info("Channel: {}, subchannel {}: Light is {}", device.getChannel(), subchannel, state);
+        }
+    }
+
+    private void checkVoltage(Device device, LastValues last, XiaomiReport report) {
+        if (!report.has(Field.VOLTAGE)) {
+            return;
+        }
 
-        if ((voltageDb != null && voltageDb.getCurrentValue() != null && !Objects.equals(Double.valueOf(voltageDb.getCurrentValue()), voltage))
-                || voltageDb == null || voltageDb.getCurrentValue() == null) {
-            registry.addChange(device, StandartDeviceValueLabel.VOLTAGE.getName(), voltage.toString(), ValueType.DOUBLE);
+        // battery level and low battery events are derived from voltage events by fleet health service
+        if (isChanged(device, last, Field.VOLTAGE, report.getInt(Field.VOLTAGE), StandartDeviceValueLabel.VOLTAGE.getName(), 1000)) {
+            String voltage = String.valueOf(report.getInt(Field.VOLTAGE) / 1000D);
+            registry.addChange(device, StandartDeviceValueLabel.VOLTAGE.getName(), voltage, ValueType.DOUBLE);
 
             broadcast(Queue.EVENT_VOLTAGE, new DeviceChangeEvent(
                     device.getChannel(),
                     SourceProtocol.XIAOMI,
                     StandartDeviceValueLabel.VOLTAGE.getName(),
-                    voltage.toString(),
+                    voltage,
                     ValueType.DOUBLE)
             );
 
@@ -645,23 +644,59 @@ public class XiaomiController extends AbstractProtocolService {
         }
     }
 
-    private void checkBatteryLevelFromVoltage(String channel, Integer voltage) {
-        voltage = Math.min(VOLTAGE_MAX_MILLIVOLTS, voltage);
-        voltage = Math.max(VOLTAGE_MIN_MILLIVOLTS, voltage);
-        Integer battLevel = (int) ((float) (voltage - VOLTAGE_MIN_MILLIVOLTS)
-                / (float) (VOLTAGE_MAX_MILLIVOLTS - VOLTAGE_MIN_MILLIVOLTS) * 100);
-
-        if (battLevel <= BATT_LEVEL_LOW) {
-            broadcast("event.device.battery", new DeviceProtocolEvent(channel, SourceProtocol.XIAOMI, BATTERY_LOW.getName()));
-            logger.info("Channel: {} Battery low", channel);
+    /**
+     * Compares raw reported value with the last one. Last value is read from registry only once per device
+     * and field, then it's kept in numeric cache.
+     *
+     * @param scale raw value = registry value * scale
+     */
+    private boolean isChanged(Device device, LastValues last, Field field, int value, String label, int scale) {
+        int previous = last.get(field);
+
+        if (previous == LastValues.UNKNOWN) {
+            DeviceValue db = device.getValues().get(label);
+
+            if (db != null && db.getCurrentValue() != null) {
+                try {
+                    previous = (int) Math.round(Double.parseDouble(db.getCurrentValue()) * scale);
+                } catch (NumberFormatException ignored) {
+                }
+            }
         }
+
+        last.set(field, value);
+        return previous != value;
     }
 
     @Scheduled(fixedDelay = 3600000, initialDelay = 10000)
     void searchDevices() {
-    	if(gateway != null) {
-		    gateway.discoverItems();
-	    }
+        workers.values().forEach(GatewayWorker::discoverItems);
+
+        if (deduplicator != null) {
+            logger.debug("Xiaomi messages handled: {}, duplicates dropped: {}, heartbeats without changes: {}",
+                    deduplicator.getAccepted(), deduplicator.getDuplicates(), deduplicator.getHeartbeats());
+        }
+    }
+
+    /**
+     * Last reported raw numeric values of device.
+     */
+    private static class LastValues {
+        private static final int UNKNOWN = Integer.MIN_VALUE;
+
+        private final int[] values = new int[Field.values().length];
+
+        private LastValues() {
+            Arrays.fill(values, UNKNOWN);
+        }
+
+        private int get(Field field) {
+            return values[field.ordinal()];
+        }
+
+        private void set(Field field, int value) {
+            values[field.ordinal()] = value;
+        }
     }
 
     @Getter
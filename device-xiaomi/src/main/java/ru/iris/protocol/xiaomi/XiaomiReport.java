@@ -0,0 +1,260 @@
+package ru.iris.protocol.xiaomi;
+
+import java.util.Arrays;
+
+/**
+ * Reusable parser of gateway report data, e.g. {"voltage":3005,"temperature":"2318","humidity":"5120"}.
+ * Known fields are extracted straight from the string without building JSON tree, numbers may be quoted.
+ * Known string values are returned as constants, so parsing of usual report doesn't allocate.
+ * <p>
+ * Instance isn't thread-safe, it's meant to be reused by receiving thread.
+ */
+class XiaomiReport {
+
+    enum Field {
+        TEMPERATURE("temperature", true),
+        HUMIDITY("humidity", true),
+        VOLTAGE("voltage", true),
+        LUX("lux", true),
+        NO_MOTION("no_motion", true),
+        STATUS("status", false),
+        CHANNEL_0("channel_0", false),
+        CHANNEL_1("channel_1", false);
+
+        private final String key;
+        private final boolean numeric;
+
+        Field(String key, boolean numeric) {
+            this.key = key;
+            this.numeric = numeric;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    private static final String[] KNOWN_VALUES = {
+            "on", "off", "open", "close", "leak", "no_leak", "motion",
+            "click", "double_click", "long_click_press", "long_click_release"
+    };
+
+    private final boolean[] present = new boolean[FIELDS.length];
+    private final int[] numbers = new int[FIELDS.length];
+    private final String[] strings = new String[FIELDS.length];
+
+    /**
+     * @param data JSON object of report
+     * @return false if data is not a valid flat JSON object, fields, parsed before error, are still available
+     */
+    boolean parse(String data) {
+        Arrays.fill(present, false);
+        Arrays.fill(strings, null);
+
+        if (data == null) {
+            return false;
+        }
+
+        int length = data.length();
+        int i = skipWhitespace(data, 0);
+
+        if (i >= length || data.charAt(i) != '{') {
+            return false;
+        }
+
+        i++;
+
+        while (true) {
+            i = skipWhitespace(data, i);
+
+            if (i >= length) {
+                return false;
+            }
+
+            char c = data.charAt(i);
+
+            if (c == '}') {
+                return true;
+            }
+
+            if (c == ',') {
+                i++;
+                continue;
+            }
+
+            if (c != '"') {
+                return false;
+            }
+
+            int keyStart = i + 1;
+            int keyEnd = findQuote(data, keyStart);
+
+            if (keyEnd < 0) {
+                return false;
+            }
+
+            i = skipWhitespace(data, keyEnd + 1);
+
+            if (i >= length || data.charAt(i) != ':') {
+                return false;
+            }
+
+            i = skipWhitespace(data, i + 1);
+
+            if (i >= length) {
+                return false;
+            }
+
+            Field field = findField(data, keyStart, keyEnd);
+            int valueStart;
+            int valueEnd;
+            c = data.charAt(i);
+
+            if (c == '"') {
+                valueStart = i + 1;
+                valueEnd = findQuote(data, valueStart);
+
+                if (valueEnd < 0) {
+                    return false;
+                }
+
+                i = valueEnd + 1;
+            } else if (c == '{' || c == '[') {
+                // nested values are not used
+                i = skipNested(data, i);
+
+                if (i < 0) {
+                    return false;
+                }
+
+                continue;
+            } else {
+                valueStart = i;
+
+                while (i < length && data.charAt(i) != ',' && data.charAt(i) != '}' && !Character.isWhitespace(data.charAt(i))) {
+                    i++;
+                }
+
+                valueEnd = i;
+            }
+
+            if (field != null) {
+                set(field, data, valueStart, valueEnd);
+            }
+        }
+    }
+
+    boolean has(Field field) {
+        return present[field.ordinal()];
+    }
+
+    int getInt(Field field) {
+        return numbers[field.ordinal()];
+    }
+
+    String getString(Field field) {
+        return strings[field.ordinal()];
+    }
+
+    private void set(Field field, String data, int start, int end) {
+        int index = field.ordinal();
+
+        if (field.numeric) {
+            int i = start;
+            boolean negative = false;
+
+            if (i < end && data.charAt(i) == '-') {
+                negative = true;
+                i++;
+            }
+
+            int digits = 0;
+            int value = 0;
+
+            // fractional part is dropped, reports contain integers only
+            while (i < end && Character.isDigit(data.charAt(i))) {
+                value = value * 10 + (data.charAt(i) - '0');
+                digits++;
+                i++;
+            }
+
+            if (digits > 0) {
+                numbers[index] = negative ? -value : value;
+                present[index] = true;
+            }
+        } else {
+            strings[index] = toString(data, start, end);
+            present[index] = true;
+        }
+    }
+
+    private static Field findField(String data, int start, int end) {
+        int length = end - start;
+
+        for (Field field : FIELDS) {
+            if (field.key.length() == length && data.regionMatches(start, field.key, 0, length)) {
+                return field;
+            }
+        }
+
+        return null;
+    }
+
+    private static String toString(String data, int start, int end) {
+        int length = end - start;
+
+        for (String value : KNOWN_VALUES) {
+            if (value.length() == length && data.regionMatches(start, value, 0, length)) {
+                return value;
+            }
+        }
+
+        return data.substring(start, end);
+    }
+
+    private static int findQuote(String data, int from) {
+        for (int i = from; i < data.length(); i++) {
+            char c = data.charAt(i);
+
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int skipNested(String data, int from) {
+        int depth = 0;
+
+        for (int i = from; i < data.length(); i++) {
+            char c = data.charAt(i);
+
+            if (c == '"') {
+                i = findQuote(data, i + 1);
+
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) {
+                    return i + 1;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static int skipWhitespace(String data, int from) {
+        int i = from;
+
+        while (i < data.length() && Character.isWhitespace(data.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+}
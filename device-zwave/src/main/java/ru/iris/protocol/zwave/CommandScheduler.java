@@ -0,0 +1,188 @@
+package ru.iris.protocol.zwave;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zwave4j.Manager;
+import org.zwave4j.ValueId;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Schedules commands to Z-Wave network. Commands, issued within batch window, are sent together:
+ * <ul>
+ * <li>only the last command to the same value is kept, previous ones are dropped;</li>
+ * <li>value refreshes (polling) are sent only when there are no pending commands and OpenZWave send queue
+ * is almost empty, so user commands never wait behind polling.</li>
+ * </ul>
+ * OpenZWave has no multicast send: scenes and switch-all are executed by controller as one SetValue per node,
+ * so every command of a batch is sent to its node separately.
+ */
+@Slf4j
+class CommandScheduler {
+
+    // refreshes are sent only while OpenZWave send queue is shorter
+    private static final int MAX_SEND_QUEUE = 2;
+
+    private final long windowMs;
+    private final LongSupplier homeId;
+    private final BiConsumer<ValueId, String> setter;
+    private final ScheduledExecutorService executor;
+
+    // guarded by this
+    private final Map<Long, Command> commands = new LinkedHashMap<>();
+    private final Map<Long, ValueId> refreshes = new LinkedHashMap<>();
+    private boolean scheduled = false;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param windowMs batch window
+     * @param homeId   Z-Wave network home id
+     * @param setter   sends single value to node
+     */
+    CommandScheduler(long windowMs, LongSupplier homeId, BiConsumer<ValueId, String> setter) {
+        this.windowMs = windowMs;
+        this.homeId = homeId;
+        this.setter = setter;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "zwave-commands");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets value with user priority. Replaces not yet sent command to the same value.
+     */
+    void set(ValueId valueId, String value) {
+        long key = ValueMetadata.key(valueId);
+        submitted.increment();
+
+        synchronized (this) {
+            if (commands.put(key, new Command(valueId, value)) != null) {
+                dropped.increment();
+            }
+
+            // node reports new value after set, no need to poll it
+            refreshes.remove(key);
+            schedule(windowMs);
+        }
+    }
+
+    /**
+     * Requests value refresh with polling priority.
+     *
+     * @return false if command or refresh of this value is already pending
+     */
+    boolean refresh(ValueId valueId) {
+        long key = ValueMetadata.key(valueId);
+
+        synchronized (this) {
+            if (commands.containsKey(key) || refreshes.containsKey(key)) {
+                return false;
+            }
+
+            refreshes.put(key, valueId);
+            schedule(windowMs);
+            return true;
+        }
+    }
+
+    synchronized int getPendingRefreshes() {
+        return refreshes.size();
+    }
+
+    long getSubmitted() {
+        return submitted.sum();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    // must be called with lock held
+    private void schedule(long delay) {
+        if (!scheduled && !executor.isShutdown()) {
+            scheduled = true;
+            executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<Command> batch;
+
+        synchronized (this) {
+            scheduled = false;
+            batch = new ArrayList<>(commands.values());
+            commands.clear();
+        }
+
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+
+        // refreshes go one by one, so commands, issued meanwhile, don't wait behind them
+        while (true) {
+            ValueId valueId;
+
+            synchronized (this) {
+                if (!commands.isEmpty() || refreshes.isEmpty()) {
+                    return;
+                }
+
+                if (Manager.get().getSendQueueCount(homeId.getAsLong()) >= MAX_SEND_QUEUE) {
+                    schedule(windowMs);
+                    return;
+                }
+
+                Iterator<ValueId> it = refreshes.values().iterator();
+                valueId = it.next();
+                it.remove();
+            }
+
+            try {
+                Manager.get().refreshValue(valueId);
+            } catch (RuntimeException e) {
+                logger.error("Cant refresh value of node {}", valueId.getNodeId(), e);
+            }
+        }
+    }
+
+    private void send(List<Command> batch) {
+        for (Command command : batch) {
+            set(command);
+        }
+    }
+
+    private void set(Command command) {
+        try {
+            setter.accept(command.valueId, command.value);
+        } catch (RuntimeException e) {
+            logger.error("Cant set value {} on node {}", command.value, command.valueId.getNodeId(), e);
+        }
+    }
+
+    private static class Command {
+        private final ValueId valueId;
+        private final String value;
+
+        private Command(ValueId valueId, String value) {
+            this.valueId = valueId;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package ru.iris.protocol.zwave;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zwave4j.Manager;
+import org.zwave4j.ValueGenre;
+import org.zwave4j.ValueId;
+import ru.iris.models.bus.devices.DeviceProtocolEvent;
+import ru.iris.models.protocol.enums.SourceProtocol;
+import ru.iris.models.protocol.enums.ValueType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive polling of Z-Wave values.
+ * <p>
+ * Poll interval of each value follows observed change frequency: value is polled twice per average period
+ * between its changes, within [min interval, max interval / importance]. Importance depends on command class,
+ * switches are polled more often than meters, values of other command classes are not polled at all.
+ * Any change, reported by node itself, postpones the next poll.
+ * <p>
+ * Sleeping (not listening) nodes are never polled, failed nodes are backed off exponentially.
+ * Polls are limited by global budget per second and sent through {@link CommandScheduler} with polling priority.
+ */
+@Slf4j
+class PollingManager {
+
+    private static final long TICK_MS = 1000L;
+    private static final int STATS_TICKS = 60;
+    // weight of the last period between changes in its average
+    private static final double ALPHA = 0.3;
+
+    private final CommandScheduler scheduler;
+    private final LongSupplier homeId;
+    private final BiConsumer<String, Object> publisher;
+    private final int budgetPerSecond;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+
+    private final Map<Long, PolledValue> values = new ConcurrentHashMap<>();
+    private final Map<Short, NodeBackoff> backoff = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    // accessed only on executor thread
+    private double tokens = 0;
+    private long ticks = 0;
+    private long polls = 0;
+    private final Map<Short, Long> nodePolls = new HashMap<>();
+
+    PollingManager(CommandScheduler scheduler, LongSupplier homeId, BiConsumer<String, Object> publisher,
+                   int budgetPerSecond, long minIntervalMs, long maxIntervalMs) {
+        this.scheduler = scheduler;
+        this.homeId = homeId;
+        this.publisher = publisher;
+        this.budgetPerSecond = budgetPerSecond;
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = Math.max(maxIntervalMs, minIntervalMs);
+    }
+
+    synchronized void start() {
+        if (executor != null || budgetPerSecond <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "zwave-polling");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+
+        logger.info("ZWave polling started: {} values, budget {} polls/s", values.size(), budgetPerSecond);
+    }
+
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    void add(ValueId valueId) {
+        int importance = getImportance(valueId);
+
+        if (importance == 0) {
+            return;
+        }
+
+        values.put(ValueMetadata.key(valueId), new PolledValue(valueId, maxIntervalMs / importance));
+    }
+
+    void remove(ValueId valueId) {
+        values.remove(ValueMetadata.key(valueId));
+    }
+
+    void removeNode(short nodeId) {
+        values.keySet().removeIf(key -> ValueMetadata.nodeId(key) == nodeId);
+        backoff.remove(nodeId);
+    }
+
+    /**
+     * Value change, reported by node or result of poll.
+     */
+    void onChanged(ValueId valueId) {
+        PolledValue value = values.get(ValueMetadata.key(valueId));
+
+        if (value != null) {
+            value.changed(System.currentTimeMillis());
+        }
+    }
+
+    private void tick() {
+        try {
+            poll();
+
+            if (++ticks % STATS_TICKS == 0) {
+                publishStats();
+            }
+        } catch (RuntimeException e) {
+            logger.error("ZWave polling error", e);
+        }
+    }
+
+    private void poll() {
+        tokens = Math.min(budgetPerSecond, tokens + budgetPerSecond * TICK_MS / 1000.0);
+
+        long now = System.currentTimeMillis();
+        List<PolledValue> due = new ArrayList<>();
+
+        for (PolledValue value : values.values()) {
+            if (value.nextPoll <= now) {
+                due.add(value);
+            }
+        }
+
+        // most overdue first
+        due.sort(Comparator.comparingLong(v -> v.nextPoll));
+
+        Manager manager = Manager.get();
+        long home = homeId.getAsLong();
+        Map<Short, Boolean> available = new HashMap<>();
+
+        for (PolledValue value : due) {
+            if (tokens < 1) {
+                break;
+            }
+
+            short node = value.valueId.getNodeId();
+
+            if (!available.computeIfAbsent(node, n -> isAvailable(manager, home, n, now))) {
+                continue;
+            }
+
+            if (scheduler.refresh(value.valueId)) {
+                tokens--;
+                polls++;
+                nodePolls.merge(node, 1L, Long::sum);
+            }
+
+            // failed node gets single probe poll
+            if (backoff.containsKey(node)) {
+                available.put(node, false);
+            }
+
+            value.nextPoll = now + value.interval;
+        }
+    }
+
+    private boolean isAvailable(Manager manager, long home, short node, long now) {
+        // sleeping nodes report themselves on wake up, polls would only wait in wake up queue
+        if (!manager.isNodeListeningDevice(home, node)) {
+            return false;
+        }
+
+        NodeBackoff nodeBackoff = backoff.get(node);
+
+        if (manager.isNodeFailed(home, node)) {
+            if (nodeBackoff == null) {
+                nodeBackoff = new NodeBackoff();
+                backoff.put(node, nodeBackoff);
+            }
+
+            if (nodeBackoff.until <= now) {
+                nodeBackoff.delay = Math.min(maxIntervalMs, nodeBackoff.delay == 0 ? minIntervalMs : nodeBackoff.delay * 2);
+                nodeBackoff.until = now + nodeBackoff.delay;
+                logger.debug("Node {} is failed, polling backed off for {} ms", node, nodeBackoff.delay);
+
+                // single poll to check if node is back
+                return true;
+            }
+
+            return false;
+        }
+
+        if (nodeBackoff != null) {
+            logger.info("Node {} is back, polling resumed", node);
+            backoff.remove(node);
+        }
+
+        return true;
+    }
+
+    private void publishStats() {
+        double rate = polls / (STATS_TICKS * TICK_MS / 1000.0);
+
+        publisher.accept("event.device.zwave.polling.rate",
+                new DeviceProtocolEvent(SourceProtocol.ZWAVE, "PollRate", String.valueOf(Math.round(rate * 1000) / 1000.0), ValueType.DECIMAL));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("ZWave polling: {} values, {} polls/s, per node (last {} s): {}, backed off: {}",
+                    values.size(), rate, STATS_TICKS * TICK_MS / 1000, nodePolls, backoff.keySet());
+        }
+
+        polls = 0;
+        nodePolls.clear();
+    }
+
+    /**
+     * @return polling weight of value, 0 if value is not polled
+     */
+    private static int getImportance(ValueId valueId) {
+        if (valueId.getGenre() != ValueGenre.USER) {
+            return 0;
+        }
+
+        switch (valueId.getCommandClassId()) {
+            // COMMAND_CLASS_SWITCH_BINARY, COMMAND_CLASS_SWITCH_MULTILEVEL
+            case 0x25:
+            case 0x26:
+                return 4;
+            // COMMAND_CLASS_SENSOR_BINARY, COMMAND_CLASS_SENSOR_MULTILEVEL, COMMAND_CLASS_THERMOSTAT_SETPOINT
+            case 0x30:
+            case 0x31:
+            case 0x43:
+                return 2;
+            // COMMAND_CLASS_METER
+            case 0x32:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private class PolledValue {
+        private final ValueId valueId;
+        private final long maxInterval;
+        private volatile long interval;
+        private volatile long nextPoll;
+        private long lastChange = 0;
+        private double period = 0;
+
+        private PolledValue(ValueId valueId, long maxInterval) {
+            this.valueId = valueId;
+            this.maxInterval = Math.max(minIntervalMs, maxInterval);
+            this.interval = this.maxInterval;
+            this.nextPoll = System.currentTimeMillis() + interval;
+        }
+
+        private synchronized void changed(long now) {
+            if (lastChange > 0) {
+                long last = now - lastChange;
+                period = period == 0 ? last : ALPHA * last + (1 - ALPHA) * period;
+                interval = Math.max(minIntervalMs, Math.min(maxInterval, (long) (period / 2)));
+            }
+
+            lastChange = now;
+            nextPoll = now + interval;
+        }
+    }
+
+    private static class NodeBackoff {
+        private long delay = 0;
+        private long until = 0;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.iris.protocol.zwave;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline stage: lock-free multi-producer queue with single consumer thread. Items are handled
+ * in order they were offered. Offer never blocks, so it's safe to call from native callbacks.
+ */
+@Slf4j
+class Stage<T> {
+
+    private final String name;
+    private final Consumer<T> handler;
+    private final int capacity;
+
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    Stage(String name, int capacity, Consumer<T> handler) {
+        this.name = name;
+        this.capacity = capacity;
+        this.handler = handler;
+        this.worker = new Thread(this::work, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * @param item item to handle
+     * @return false if stage is full or stopped and item was dropped
+     */
+    boolean offer(T item) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+
+        queue.offer(item);
+        LockSupport.unpark(worker);
+        return true;
+    }
+
+    /**
+     * Stops worker after remaining items are handled.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    long getProcessed() {
+        return processed.sum();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    private void work() {
+        while (running || !queue.isEmpty()) {
+            T item = queue.poll();
+
+            if (item == null) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                continue;
+            }
+
+            size.decrementAndGet();
+
+            try {
+                handler.accept(item);
+            } catch (Exception e) {
+                logger.error("Stage {} failed to handle {}", name, item, e);
+            }
+
+            processed.increment();
+        }
+
+        logger.debug("Stage {} stopped: processed {}, dropped {}", name, processed.sum(), dropped.sum());
+    }
+}
@@ -0,0 +1,45 @@
+package ru.iris.protocol.zwave;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.zwave4j.ValueId;
+import ru.iris.models.protocol.enums.ValueType;
+
+/**
+ * Static part of OpenZWave value: label, units, type and serialized ValueId. It doesn't change
+ * while value exists, so it's read from OpenZWave once on VALUE_ADDED and cached.
+ */
+@Getter
+@ToString
+class ValueMetadata {
+    private final String label;
+    private final String units;
+    private final boolean readOnly;
+    private final ValueType type;
+    private final String additionalData;
+
+    ValueMetadata(String label, String units, boolean readOnly, ValueType type, String additionalData) {
+        this.label = label;
+        this.units = units;
+        this.readOnly = readOnly;
+        this.type = type;
+        this.additionalData = additionalData;
+    }
+
+    /**
+     * Packed 64-bit value id, the same fields as OpenZWave ValueID::GetId(), which zwave4j doesn't expose.
+     * zwave4j ValueId has no equals/hashCode, so it can't be used as a map key itself.
+     */
+    static long key(ValueId valueId) {
+        return ((long) (valueId.getNodeId() & 0xFF) << 48)
+                | ((long) (valueId.getGenre().ordinal() & 0x0F) << 44)
+                | ((long) (valueId.getCommandClassId() & 0xFF) << 36)
+                | ((long) (valueId.getInstance() & 0xFF) << 28)
+                | ((long) (valueId.getIndex() & 0xFFFF) << 12)
+                | (valueId.getType().ordinal() & 0xFFF);
+    }
+
+    static short nodeId(long key) {
+        return (short) ((key >>> 48) & 0xFF);
+    }
+}
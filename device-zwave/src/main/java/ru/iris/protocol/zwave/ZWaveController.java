@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.zwave4j.*;
 import reactor.bus.Event;
@@ -25,9 +26,12 @@ import ru.iris.models.protocol.data.DataLevel;
 import ru.iris.models.protocol.enums.*;
 import ru.iris.models.protocol.enums.ValueType;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Component
@@ -40,8 +44,17 @@ public class ZWaveController extends AbstractProtocolService {
     private final EventBus r;
     private final ConfigLoader config;
     private final DeviceRegistry registry;
-    private Long homeId;
-    private boolean ready = false;
+    private static final int STAGE_CAPACITY = 65536;
+
+    private volatile Long homeId;
+    private Stage<ZWaveNotification> notificationStage;
+    private Stage<BusMessage> busStage;
+    private volatile CommandScheduler commandScheduler;
+    private volatile PollingManager pollingManager;
+    private volatile ZWaveSnapshot snapshot;
+
+    // value metadata by packed value id, see ValueMetadata.key()
+    private final Map<Long, ValueMetadata> metadata = new ConcurrentHashMap<>();
 
     @Autowired
     private ObjectMapper objectMapper;
@@ -65,6 +78,21 @@ public class ZWaveController extends AbstractProtocolService {
     @Override
     public void onShutdown() {
         logger.info("ZWaveController stopping");
+
+        saveSnapshot();
+
+        if (notificationStage != null) {
+            notificationStage.stop();
+        }
+        if (busStage != null) {
+            busStage.stop();
+        }
+        if (pollingManager != null) {
+            pollingManager.stop();
+        }
+        if (commandScheduler != null) {
+            commandScheduler.stop();
+        }
     }
 
     @Override
@@ -152,274 +180,329 @@ public class ZWaveController extends AbstractProtocolService {
 
         Manager manager = Manager.create();
 
+        busStage = new Stage<>("zwave-bus", STAGE_CAPACITY, message -> broadcast(message.queue, message.event));
+        notificationStage = new Stage<>("zwave-notifications", STAGE_CAPACITY, this::process);
+
+        String batchWindow = config.get("commandBatchWindowMs");
+        commandScheduler = new CommandScheduler(batchWindow != null ? Long.parseLong(batchWindow) : 50L,
+                () -> homeId != null ? homeId : 0L, this::setTypedValue);
+
+        String pollBudget = config.get("pollBudgetPerSecond");
+        String pollMin = config.get("pollMinIntervalSec");
+        String pollMax = config.get("pollMaxIntervalSec");
+        pollingManager = new PollingManager(commandScheduler, () -> homeId != null ? homeId : 0L, this::publish,
+                pollBudget != null ? Integer.parseInt(pollBudget) : 0,
+                TimeUnit.SECONDS.toMillis(pollMin != null ? Long.parseLong(pollMin) : 30L),
+                TimeUnit.SECONDS.toMillis(pollMax != null ? Long.parseLong(pollMax) : 3600L));
+
+        // called on OpenZWave thread: copy notification and return as fast as possible
         NotificationWatcher watcher = (notification, context) -> {
+            NotificationType type = notification.getType();
+            Object value = null;
+            String label = null;
+
+            if (type == NotificationType.VALUE_CHANGED || type == NotificationType.VALUE_ADDED) {
+                value = getValue(notification.getValueId());
+            } else if (type == NotificationType.VALUE_REMOVED) {
+                // value is deleted by OpenZWave after callback returns
+                label = manager.getValueLabel(notification.getValueId());
+            }
 
-            String node = String.valueOf(notification.getNodeId());
-            Device device;
+            if (!notificationStage.offer(new ZWaveNotification(notification, value, label))) {
+                logger.warn("ZWave notification queue is full, {} for node {} dropped", type, notification.getNodeId());
+            }
+        };
 
-            switch (notification.getType()) {
-                case DRIVER_READY:
-                    homeId = notification.getHomeId();
-                    logger.info("Driver ready. Home ID: {}", homeId);
-                    broadcast("event.device.zwave.driver.ready", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "DriverReady", homeId.toString(), ValueType.LONG));
-                    break;
-                case DRIVER_FAILED:
-                    logger.info("Driver failed");
-                    broadcast("event.device.zwave.driver.failed", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "DriverFailed"));
-                    break;
-                case DRIVER_RESET:
-                    logger.info("Driver reset");
-                    broadcast("event.device.zwave.driver.reset", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "DriverReset"));
-                    break;
-                case AWAKE_NODES_QUERIED:
-                    logger.info("Awake nodes queried");
-                    ready = true;
-                    broadcast("event.device.zwave.awake.nodes.queried", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "AwakeNodesQueried"));
-                    break;
-                case ALL_NODES_QUERIED:
-                    logger.info("All node queried");
-                    manager.writeConfig(homeId);
-                    ready = true;
-                    broadcast("event.device.zwave.all.nodes.queried", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "AllNodesQueried"));
-                    break;
-                case ALL_NODES_QUERIED_SOME_DEAD:
-                    logger.info("All node queried, some dead");
-                    manager.writeConfig(homeId);
-                    broadcast("event.device.zwave.all.nodes.queried.some.dead", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "AllNodesQueriedSomeDead"));
-                    break;
-                case POLLING_ENABLED:
-                    logger.info("Polling enabled");
-                    broadcast("event.device.zwave.polling.enabled", new DeviceChangeEvent(node, SourceProtocol.ZWAVE, "polling", "true", ValueType.BOOL));
-                    break;
-                case POLLING_DISABLED:
-                    logger.info("Polling disabled");
-                    broadcast("event.device.zwave.polling.enabled", new DeviceChangeEvent(node, SourceProtocol.ZWAVE, "polling", "false", ValueType.BOOL));
-                    break;
-                case NODE_NEW:
-                    broadcast("event.device.zwave.node.new", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "NewNode", node, ValueType.SHORT));
-                    break;
-                case NODE_ADDED:
-                    broadcast("event.device.zwave.node.added", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "AddedNode", node, ValueType.SHORT));
-                    break;
-                case NODE_REMOVED:
-                    broadcast("event.device.zwave.node.removed", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "RemovedNode", node, ValueType.SHORT));
-                    break;
-                case ESSENTIAL_NODE_QUERIES_COMPLETE:
-                    broadcast("event.device.zwave.essential.node.queries.complete", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "EssentialNodeQueriesComplete"));
-                    break;
-                case NODE_QUERIES_COMPLETE:
-                    broadcast("event.device.zwave.node.queries.complete", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "NodeQueriesComplete"));
-                    break;
-                case NODE_EVENT:
-                    logger.info("Update info for node " + node);
-                    manager.refreshNodeInfo(homeId, notification.getNodeId());
-                    broadcast("event.device.zwave.node.event", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "EventNode", node, ValueType.SHORT));
-                    break;
-                case NODE_NAMING:
-                    broadcast("event.device.zwave.node.naming", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "NamingNode", node, ValueType.SHORT));
-                    break;
-                case NODE_PROTOCOL_INFO:
-                    broadcast("event.device.zwave.node.info", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "InfoNode", node, ValueType.SHORT));
-                    break;
-                case VALUE_REFRESHED:
-                    broadcast("event.device.zwave.node.refreshed", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "RefreshedNode", node, ValueType.SHORT));
-                    logger.info("Node {} refreshed", node);
-                    break;
-                case GROUP:
-                    broadcast("event.device.zwave.group", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "Group", node, ValueType.SHORT));
-                    break;
-                case SCENE_EVENT:
-                    broadcast("event.device.zwave.scene.event", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "SceneEvent", node, ValueType.SHORT));
-                    break;
-                case CREATE_BUTTON:
-                    broadcast("event.device.zwave.button.create", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "ButtonCreate", node, ValueType.SHORT));
-                    break;
-                case DELETE_BUTTON:
-                    broadcast("event.device.zwave.button.delete", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "ButtonDelete", node, ValueType.SHORT));
-                    break;
-                case BUTTON_ON:
-                    broadcast("event.device.zwave.button.on", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "ButtonOn", node, ValueType.SHORT));
-                    break;
-                case BUTTON_OFF:
-                    broadcast("event.device.zwave.button.off", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "ButtonOff", node, ValueType.SHORT));
-                    break;
-                case NOTIFICATION:
-                    broadcast("event.device.zwave.notification", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "Notification", node, ValueType.SHORT));
-                    break;
-                case VALUE_ADDED:
+        String snapshotFile = config.get("snapshotFile");
+        String snapshotMaxAge = config.get("snapshotMaxAgeHours");
+        snapshot = new ZWaveSnapshot(new File(snapshotFile != null ? snapshotFile : "./data/zwave-snapshot.json"), objectMapper,
+                TimeUnit.HOURS.toMillis(snapshotMaxAge != null ? Long.parseLong(snapshotMaxAge) : 24L));
 
-                    // check empty label
-                    if (Manager.get().getValueLabel(notification.getValueId()).isEmpty())
-                        break;
+        // serve last known values while OpenZWave interviews network
+        logger.info("Restored {} ZWave values from snapshot", snapshot.restore(registry));
 
-                    String nodeType = manager.getNodeType(homeId, notification.getNodeId());
-
-                    switch (nodeType) {
-
-                        case "Portable Remote Controller":
-                            addZWaveDeviceOrValue(DeviceType.CONTROLLER, notification);
-                            break;
-                        case "Multilevel Power Switch":
-                            addZWaveDeviceOrValue(DeviceType.MULTILEVEL_SWITCH, notification);
-                            break;
-                        case "Routing Alarm Sensor":
-                            addZWaveDeviceOrValue(DeviceType.ALARM_SENSOR, notification);
-                            break;
-                        case "Binary Power Switch":
-                            addZWaveDeviceOrValue(DeviceType.BINARY_SWITCH, notification);
-                            break;
-                        case "Routing Binary Sensor":
-                            addZWaveDeviceOrValue(DeviceType.BINARY_SENSOR, notification);
-                            break;
-                        case "Routing Multilevel Sensor":
-                            addZWaveDeviceOrValue(DeviceType.MULTILEVEL_SENSOR, notification);
-                            break;
-                        case "Simple Meter":
-                            addZWaveDeviceOrValue(DeviceType.SIMPLE_METER, notification);
-                            break;
-                        case "Simple Window Covering":
-                            addZWaveDeviceOrValue(DeviceType.DRAPES, notification);
-                            break;
-                        case "Setpoint Thermostat":
-                            addZWaveDeviceOrValue(DeviceType.THERMOSTAT, notification);
-                            break;
-
-                        default:
-                            logger.info("Unassigned value for node" +
-                                    node +
-                                    " type " +
-                                    manager.getNodeType(notification.getHomeId(), notification.getNodeId()) +
-                                    " class " +
-                                    notification.getValueId().getCommandClassId() +
-                                    " genre " +
-                                    notification.getValueId().getGenre() +
-                                    " label " +
-                                    manager.getValueLabel(notification.getValueId()) +
-                                    " value " +
-                                    getValue(notification.getValueId()) +
-                                    " index " +
-                                    notification.getValueId().getIndex() +
-                                    " instance " +
-                                    notification.getValueId().getInstance()
-                            );
+        manager.addWatcher(watcher, null);
+        manager.addDriver(config.get("zwavePort"));
 
-                            // finnaly, create message and sent
-                            broadcast("event.device.zwave.value.added",
-                                    new DeviceChangeEvent(node,
-                                            SourceProtocol.ZWAVE,
-                                            Manager.get().getValueLabel(notification.getValueId()),
-                                            getValue(notification.getValueId()) != null
-                                                    ? getValue(notification.getValueId()).toString() : "",
-                                            getValueType(notification.getValueId())
-                                    )
-                            );
-                    }
+        logger.info("ZWave driver added, network initialization continues in background");
+    }
+
+    @Scheduled(initialDelay = 300_000L, fixedDelay = 300_000L)
+    public void saveSnapshot() {
+        if (snapshot != null) {
+            snapshot.save(registry);
+        }
+    }
+
+    /**
+     * Handles notification on pipeline worker thread: registry and database updates, bus events
+     */
+    private void process(ZWaveNotification notification) {
+        Manager manager = Manager.get();
 
-                    // enable value polling TODO
-                    //Manager.get().enablePoll(notification.getValueId());
+        String node = notification.getNode();
+        Device device;
 
+        switch (notification.getType()) {
+            case DRIVER_READY:
+                homeId = notification.getHomeId();
+                logger.info("Driver ready. Home ID: {}", homeId);
+                publish("event.device.zwave.driver.ready", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "DriverReady", homeId.toString(), ValueType.LONG));
+                break;
+            case DRIVER_FAILED:
+                logger.info("Driver failed");
+                publish("event.device.zwave.driver.failed", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "DriverFailed"));
+                break;
+            case DRIVER_RESET:
+                logger.info("Driver reset");
+                publish("event.device.zwave.driver.reset", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "DriverReset"));
+                break;
+            case AWAKE_NODES_QUERIED:
+                logger.info("Awake nodes queried");
+                pollingManager.start();
+                publish("event.device.zwave.awake.nodes.queried", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "AwakeNodesQueried"));
+                break;
+            case ALL_NODES_QUERIED:
+                logger.info("All node queried");
+                manager.writeConfig(homeId);
+                pollingManager.start();
+                saveSnapshot();
+                publish("event.device.zwave.all.nodes.queried", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "AllNodesQueried"));
+                break;
+            case ALL_NODES_QUERIED_SOME_DEAD:
+                logger.info("All node queried, some dead");
+                manager.writeConfig(homeId);
+                publish("event.device.zwave.all.nodes.queried.some.dead", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "AllNodesQueriedSomeDead"));
+                break;
+            case POLLING_ENABLED:
+                logger.info("Polling enabled");
+                publish("event.device.zwave.polling.enabled", new DeviceChangeEvent(node, SourceProtocol.ZWAVE, "polling", "true", ValueType.BOOL));
+                break;
+            case POLLING_DISABLED:
+                logger.info("Polling disabled");
+                publish("event.device.zwave.polling.enabled", new DeviceChangeEvent(node, SourceProtocol.ZWAVE, "polling", "false", ValueType.BOOL));
+                break;
+            case NODE_NEW:
+                publish("event.device.zwave.node.new", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "NewNode", node, ValueType.SHORT));
+                break;
+            case NODE_ADDED:
+                publish("event.device.zwave.node.added", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "AddedNode", node, ValueType.SHORT));
+                break;
+            case NODE_REMOVED:
+                metadata.keySet().removeIf(key -> ValueMetadata.nodeId(key) == notification.getNodeId());
+                pollingManager.removeNode(notification.getNodeId());
+                publish("event.device.zwave.node.removed", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "RemovedNode", node, ValueType.SHORT));
+                break;
+            case ESSENTIAL_NODE_QUERIES_COMPLETE:
+                publish("event.device.zwave.essential.node.queries.complete", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "EssentialNodeQueriesComplete"));
+                break;
+            case NODE_QUERIES_COMPLETE:
+                publish("event.device.zwave.node.queries.complete", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "NodeQueriesComplete"));
+                break;
+            case NODE_EVENT:
+                logger.info("Update info for node " + node);
+                manager.refreshNodeInfo(homeId, notification.getNodeId());
+                publish("event.device.zwave.node.event", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "EventNode", node, ValueType.SHORT));
+                break;
+            case NODE_NAMING:
+                publish("event.device.zwave.node.naming", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "NamingNode", node, ValueType.SHORT));
+                break;
+            case NODE_PROTOCOL_INFO:
+                publish("event.device.zwave.node.info", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "InfoNode", node, ValueType.SHORT));
+                break;
+            case VALUE_REFRESHED:
+                publish("event.device.zwave.node.refreshed", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "RefreshedNode", node, ValueType.SHORT));
+                logger.info("Node {} refreshed", node);
+                break;
+            case GROUP:
+                publish("event.device.zwave.group", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "Group", node, ValueType.SHORT));
+                break;
+            case SCENE_EVENT:
+                publish("event.device.zwave.scene.event", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "SceneEvent", node, ValueType.SHORT));
+                break;
+            case CREATE_BUTTON:
+                publish("event.device.zwave.button.create", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "ButtonCreate", node, ValueType.SHORT));
+                break;
+            case DELETE_BUTTON:
+                publish("event.device.zwave.button.delete", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "ButtonDelete", node, ValueType.SHORT));
+                break;
+            case BUTTON_ON:
+                publish("event.device.zwave.button.on", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "ButtonOn", node, ValueType.SHORT));
+                break;
+            case BUTTON_OFF:
+                publish("event.device.zwave.button.off", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "ButtonOff", node, ValueType.SHORT));
+                break;
+            case NOTIFICATION:
+                publish("event.device.zwave.notification", new DeviceProtocolEvent(SourceProtocol.ZWAVE, "Notification", node, ValueType.SHORT));
+                break;
+            case VALUE_ADDED:
+
+                // value may be re-added with other metadata, so read it again
+                metadata.remove(ValueMetadata.key(notification.getValueId()));
+
+                // check empty label
+                if (getMetadata(notification.getValueId()).getLabel().isEmpty())
                     break;
-                case VALUE_REMOVED:
-                    device = registry.getDevice(SourceProtocol.ZWAVE, node);
 
-                    if (device == null) {
-                        logger.info("Remove ZWave value requested, but node {} not found", node);
+                String nodeType = manager.getNodeType(homeId, notification.getNodeId());
+
+                switch (nodeType) {
+
+                    case "Portable Remote Controller":
+                        addZWaveDeviceOrValue(DeviceType.CONTROLLER, notification);
+                        break;
+                    case "Multilevel Power Switch":
+                        addZWaveDeviceOrValue(DeviceType.MULTILEVEL_SWITCH, notification);
+                        break;
+                    case "Routing Alarm Sensor":
+                        addZWaveDeviceOrValue(DeviceType.ALARM_SENSOR, notification);
+                        break;
+                    case "Binary Power Switch":
+                        addZWaveDeviceOrValue(DeviceType.BINARY_SWITCH, notification);
+                        break;
+                    case "Routing Binary Sensor":
+                        addZWaveDeviceOrValue(DeviceType.BINARY_SENSOR, notification);
+                        break;
+                    case "Routing Multilevel Sensor":
+                        addZWaveDeviceOrValue(DeviceType.MULTILEVEL_SENSOR, notification);
+                        break;
+                    case "Simple Meter":
+                        addZWaveDeviceOrValue(DeviceType.SIMPLE_METER, notification);
+                        break;
+                    case "Simple Window Covering":
+                        addZWaveDeviceOrValue(DeviceType.DRAPES, notification);
+                        break;
+                    case "Setpoint Thermostat":
+                        addZWaveDeviceOrValue(DeviceType.THERMOSTAT, notification);
                         break;
-                    }
 
-                    // remove value from device
-                    device.getValues().remove(Manager.get().getValueLabel(notification.getValueId()));
+                    default:
+                        logger.info("Unassigned value for node" +
+                                node +
+                                " type " +
+                                manager.getNodeType(notification.getHomeId(), notification.getNodeId()) +
+                                " class " +
+                                notification.getValueId().getCommandClassId() +
+                                " genre " +
+                                notification.getValueId().getGenre() +
+                                " label " +
+                                getMetadata(notification.getValueId()).getLabel() +
+                                " value " +
+                                notification.getValue() +
+                                " index " +
+                                notification.getValueId().getIndex() +
+                                " instance " +
+                                notification.getValueId().getInstance()
+                        );
 
-                    broadcast("event.device.zwave.value.removed",
-                            new DeviceChangeEvent(node,
-                                    SourceProtocol.ZWAVE,
-                                    Manager.get().getValueLabel(notification.getValueId()),
-                                    null,
-                                    getValueType(notification.getValueId())
-                            )
-                    );
+                        // finnaly, create message and sent
+                        publish("event.device.zwave.value.added",
+                                new DeviceChangeEvent(node,
+                                        SourceProtocol.ZWAVE,
+                                        getMetadata(notification.getValueId()).getLabel(),
+                                        notification.getValue() != null
+                                                ? notification.getValue().toString() : "",
+                                        getMetadata(notification.getValueId()).getType()
+                                )
+                        );
+                }
 
-                    if (!manager.getValueLabel(notification.getValueId()).isEmpty()) {
-                        logger.info("Node {}: Value \"{}\" removed", device.getChannel(), manager.getValueLabel(notification.getValueId()));
-                    }
+                pollingManager.add(notification.getValueId());
 
+                break;
+            case VALUE_REMOVED:
+                device = registry.getDevice(SourceProtocol.ZWAVE, node);
+
+                if (device == null) {
+                    logger.info("Remove ZWave value requested, but node {} not found", node);
                     break;
-                case VALUE_CHANGED:
-                    device = registry.getDevice(SourceProtocol.ZWAVE, node);
+                }
 
-                    if (device == null) {
-                        logger.info("Change ZWave value requested, but node {} not found", node);
-                        break;
-                    }
-
-                    // Check for awaked after sleeping nodes
-                    if (manager.isNodeAwake(homeId, notification.getNodeId()) && device.getState().equals(State.SLEEPING)) {
-                        logger.info("Setting node {}  to LISTEN state", device.getChannel());
-                        device.setState(State.ACTIVE);
-                    }
-
-                    logger.info("Node " +
-                            device.getChannel() + ": " +
-                            "Value for label \"" + manager.getValueLabel(notification.getValueId()) + "\" changed --> " +
-                            "\"" + getValue(notification.getValueId()) + "\"");
-
-                    String label = manager.getValueLabel(notification.getValueId());
-                    ValueId valueId = notification.getValueId();
-                    DeviceValue value = device.getValues().get(label);
-
-                    if (value == null)
-                        value = new DeviceValue();
-
-                    value.setName(label);
-                    value.setType(getValueType(valueId));
-                    value.setUnits(Manager.get().getValueUnits(valueId));
-                    value.setReadOnly(Manager.get().isValueReadOnly(valueId));
-                    value.setCurrentValue(getValue(valueId) != null ? getValue(valueId).toString() : "unknown");
-                    try {
-                        value.setAdditionalData(objectMapper.writeValueAsString(valueId));
-                    } catch (JsonProcessingException e) {
-                        logger.error("", e);
-                    }
-
-                    registry.addChange(value);
-                    device.getValues().put(label, value);
-
-                    // update
-                    registry.addOrUpdateDevice(device);
-
-                    broadcast("event.device.zwave.value.changed",
-                            new DeviceChangeEvent(node,
-                                    SourceProtocol.ZWAVE,
-                                    Manager.get().getValueLabel(notification.getValueId()),
-                                    getValue(notification.getValueId()) != null
-                                            ? getValue(notification.getValueId()).toString() : "",
-                                    getValueType(notification.getValueId())
-                            )
-                    );
+                // value is already removed from OpenZWave, label was taken on callback
+                ValueMetadata removed = metadata.remove(ValueMetadata.key(notification.getValueId()));
+                pollingManager.remove(notification.getValueId());
+                String removedLabel = removed != null ? removed.getLabel() : notification.getLabel();
 
+                // remove value from device
+                device.getValues().remove(removedLabel);
+
+                publish("event.device.zwave.value.removed",
+                        new DeviceChangeEvent(node,
+                                SourceProtocol.ZWAVE,
+                                removedLabel,
+                                null,
+                                getValueType(notification.getValueId())
+                        )
+                );
+
+                if (removedLabel != null && !removedLabel.isEmpty()) {
+                    logger.info("Node {}: Value \"{}\" removed", device.getChannel(), removedLabel);
+                }
+
+                break;
+            case VALUE_CHANGED:
+                device = registry.getDevice(SourceProtocol.ZWAVE, node);
+
+                if (device == null) {
+                    logger.info("Change ZWave value requested, but node {} not found", node);
                     break;
-                default:
-                    logger.info(notification.getType().name());
-                    break;
-            }
+                }
 
+                // Check for awaked after sleeping nodes
+                if (manager.isNodeAwake(homeId, notification.getNodeId()) && device.getState().equals(State.SLEEPING)) {
+                    logger.info("Setting node {}  to LISTEN state", device.getChannel());
+                    device.setState(State.ACTIVE);
+                }
 
-        };
+                pollingManager.onChanged(notification.getValueId());
 
-        manager.addWatcher(watcher, null);
-        manager.addDriver(config.get("zwavePort"));
+                ValueMetadata meta = getMetadata(notification.getValueId());
+                String label = meta.getLabel();
 
-        logger.info("Waiting while ZWave finish initialization");
+                logger.info("Node " +
+                        device.getChannel() + ": " +
+                        "Value for label \"" + label + "\" changed --> " +
+                        "\"" + notification.getValue() + "\"");
 
-        // Waiting for initialization ends
+                DeviceValue value = device.getValues().get(label);
 
-        while (!ready) {
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                logger.error("Error: {}", e.getLocalizedMessage());
-            }
-            logger.info("Still waiting for ZWave controller ready");
+                if (value == null)
+                    value = new DeviceValue();
+
+                value.setName(label);
+                value.setType(meta.getType());
+                value.setUnits(meta.getUnits());
+                value.setReadOnly(meta.isReadOnly());
+                value.setCurrentValue(notification.getValue() != null ? notification.getValue().toString() : "unknown");
+                value.setStale(null);
+                value.setAdditionalData(meta.getAdditionalData());
+
+                registry.addChange(value);
+                device.getValues().put(label, value);
+
+                // update
+                registry.addOrUpdateDevice(device);
+
+                publish("event.device.zwave.value.changed",
+                        new DeviceChangeEvent(node,
+                                SourceProtocol.ZWAVE,
+                                label,
+                                notification.getValue() != null
+                                        ? notification.getValue().toString() : "",
+                                meta.getType()
+                        )
+                );
+
+                break;
+            default:
+                logger.info(notification.getType().name());
+                break;
+        }
+    }
+
+    private void publish(String queue, Object event) {
+        if (!busStage.offer(new BusMessage(queue, event))) {
+            logger.warn("ZWave bus queue is full, event to {} dropped", queue);
         }
     }
 
@@ -428,15 +511,15 @@ public class ZWaveController extends AbstractProtocolService {
         return "zwave";
     }
 
-    private Device addZWaveDeviceOrValue(DeviceType type, Notification notification) {
+    private Device addZWaveDeviceOrValue(DeviceType type, ZWaveNotification notification) {
 
-        String label = Manager.get().getValueLabel(notification.getValueId());
+        ValueMetadata meta = getMetadata(notification.getValueId());
+        String label = meta.getLabel();
         String productName = Manager.get().getNodeProductName(notification.getHomeId(), notification.getNodeId());
         String manufName = Manager.get().getNodeManufacturerName(notification.getHomeId(), notification.getNodeId());
         String node = String.valueOf(notification.getNodeId());
         Device device = registry.getDevice(SourceProtocol.ZWAVE, node);
         boolean listen = false;
-        ValueId valueId = notification.getValueId();
 
         if (Manager.get().requestNodeState(homeId, notification.getNodeId())) {
             listen = true;
@@ -465,15 +548,12 @@ public class ZWaveController extends AbstractProtocolService {
             DeviceValue value = new DeviceValue();
             value.setDevice(device);
             value.setName(label);
-            value.setType(getValueType(valueId));
-            value.setUnits(Manager.get().getValueUnits(valueId));
-            value.setReadOnly(Manager.get().isValueReadOnly(valueId));
-            value.setCurrentValue(getValue(valueId) != null ? getValue(valueId).toString() : "unknown");
-            try {
-                value.setAdditionalData(objectMapper.writeValueAsString((valueId)));
-            } catch (JsonProcessingException e) {
-                logger.error("", e);
-            }
+            value.setType(meta.getType());
+            value.setUnits(meta.getUnits());
+            value.setReadOnly(meta.isReadOnly());
+            value.setCurrentValue(notification.getValue() != null ? notification.getValue().toString() : "unknown");
+            value.setStale(null);
+            value.setAdditionalData(meta.getAdditionalData());
 
             // Check if it is beaming device
             DeviceValue beaming = new DeviceValue();
@@ -509,7 +589,7 @@ public class ZWaveController extends AbstractProtocolService {
             if (label.isEmpty())
                 return device;
 
-            logger.info("Node {}: Add \"{}\" value \"{}\"", node, label, getValue(valueId));
+            logger.info("Node {}: Add \"{}\" value \"{}\"", node, label, notification.getValue());
 
             DeviceValue value = device.getValues().get(label);
 
@@ -518,15 +598,12 @@ public class ZWaveController extends AbstractProtocolService {
 
             value.setDevice(device);
             value.setName(label);
-            value.setType(getValueType(valueId));
-            value.setUnits(Manager.get().getValueUnits(valueId));
-            value.setReadOnly(Manager.get().isValueReadOnly(valueId));
-            value.setCurrentValue(getValue(valueId) != null ? getValue(valueId).toString() : "unknown");
-            try {
-                value.setAdditionalData(objectMapper.writeValueAsString(valueId));
-            } catch (JsonProcessingException e) {
-                logger.error("", e);
-            }
+            value.setType(meta.getType());
+            value.setUnits(meta.getUnits());
+            value.setReadOnly(meta.isReadOnly());
+            value.setCurrentValue(notification.getValue() != null ? notification.getValue().toString() : "unknown");
+            value.setStale(null);
+            value.setAdditionalData(meta.getAdditionalData());
 
             value = registry.addChange(value);
             device.getValues().put(label, value);
@@ -538,9 +615,31 @@ public class ZWaveController extends AbstractProtocolService {
         return device;
     }
 
+    /**
+     * Returns cached metadata of value, reading it from OpenZWave on first access.
+     */
+    private ValueMetadata getMetadata(ValueId valueId) {
+        return metadata.computeIfAbsent(ValueMetadata.key(valueId), key -> {
+            String additionalData = null;
+            try {
+                additionalData = objectMapper.writeValueAsString(valueId);
+            } catch (JsonProcessingException e) {
+                logger.error("", e);
+            }
+
+            return new ValueMetadata(
+                    Manager.get().getValueLabel(valueId),
+                    Manager.get().getValueUnits(valueId),
+                    Manager.get().isValueReadOnly(valueId),
+                    getValueType(valueId),
+                    additionalData
+            );
+        });
+    }
+
     private void setTypedValue(ValueId valueId, String value) {
 
-        logger.debug("Set type {} to label {}", valueId.getType(), Manager.get().getValueLabel(valueId));
+        logger.debug("Set type {} to label {}", valueId.getType(), getMetadata(valueId).getLabel());
 
         switch (valueId.getType()) {
             case BOOL:
@@ -674,8 +773,12 @@ public class ZWaveController extends AbstractProtocolService {
                 logger.error("", e);
             }
 
-            if (!Manager.get().isValueReadOnly(valueId)) {
-                setTypedValue(valueId, level);
+            if (valueId != null && !getMetadata(valueId).isReadOnly()) {
+                if (commandScheduler != null) {
+                    commandScheduler.set(valueId, level);
+                } else {
+                    setTypedValue(valueId, level);
+                }
             } else {
                 logger.info("Node {}: Value \"{}\" is read-only! Skip.", node, label);
             }
@@ -684,6 +787,16 @@ public class ZWaveController extends AbstractProtocolService {
         }
     }
 
+    private static class BusMessage {
+        private final String queue;
+        private final Object event;
+
+        BusMessage(String queue, Object event) {
+            this.queue = queue;
+            this.event = event;
+        }
+    }
+
     private class CallbackListener implements ControllerCallback {
         private ControllerCommand ctl;
 
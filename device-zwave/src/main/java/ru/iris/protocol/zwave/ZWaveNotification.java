@@ -0,0 +1,38 @@
+package ru.iris.protocol.zwave;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.zwave4j.Notification;
+import org.zwave4j.NotificationType;
+import org.zwave4j.ValueId;
+
+/**
+ * Immutable copy of OpenZWave notification. Created on native callback thread, so it contains only
+ * notification fields and, for value notifications, the value itself (or the label of removed value).
+ */
+@Getter
+@ToString
+class ZWaveNotification {
+    private final NotificationType type;
+    private final long homeId;
+    private final short nodeId;
+    private final ValueId valueId;
+    private final Object value;
+    // label of removed value
+    private final String label;
+    private final long time;
+
+    ZWaveNotification(Notification notification, Object value, String label) {
+        this.type = notification.getType();
+        this.homeId = notification.getHomeId();
+        this.nodeId = notification.getNodeId();
+        this.valueId = notification.getValueId();
+        this.value = value;
+        this.label = label;
+        this.time = System.currentTimeMillis();
+    }
+
+    String getNode() {
+        return String.valueOf(nodeId);
+    }
+}
@@ -0,0 +1,140 @@
+package ru.iris.protocol.zwave;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import ru.iris.commons.registry.DeviceRegistry;
+import ru.iris.models.database.Device;
+import ru.iris.models.database.DeviceValue;
+import ru.iris.models.protocol.enums.SourceProtocol;
+import ru.iris.models.protocol.enums.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Last known state of Z-Wave nodes and values, saved to file. On startup values are restored into registry
+ * (marked as stale) before OpenZWave finishes network interview, so rules and UI can use them right away.
+ */
+@Slf4j
+class ZWaveSnapshot {
+
+    private final File file;
+    private final ObjectMapper objectMapper;
+    private final long maxAgeMs;
+
+    ZWaveSnapshot(File file, ObjectMapper objectMapper, long maxAgeMs) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    synchronized void save(DeviceRegistry registry) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.setSaved(System.currentTimeMillis());
+
+        for (Device device : registry.getDevicesByProto(SourceProtocol.ZWAVE)) {
+            Node node = new Node();
+            node.setState(device.getState());
+
+            for (DeviceValue value : device.getValues().values()) {
+                if (value.getCurrentValue() != null) {
+                    node.getValues().put(value.getName(), value.getCurrentValue());
+                }
+            }
+
+            snapshot.getNodes().put(device.getChannel(), node);
+        }
+
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                logger.error("Cant create directory for ZWave snapshot: {}", parent);
+                return;
+            }
+
+            // write and rename, so crash while saving doesn't leave broken snapshot
+            File tmp = new File(file.getPath() + ".tmp");
+            objectMapper.writeValue(tmp, snapshot);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            logger.debug("ZWave snapshot saved: {} nodes", snapshot.getNodes().size());
+        } catch (IOException e) {
+            logger.error("Cant save ZWave snapshot", e);
+        }
+    }
+
+    /**
+     * Restores values, which have no current value yet.
+     *
+     * @return number of restored values
+     */
+    synchronized int restore(DeviceRegistry registry) {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        Snapshot snapshot;
+
+        try {
+            snapshot = objectMapper.readValue(file, Snapshot.class);
+        } catch (IOException e) {
+            logger.error("Cant read ZWave snapshot", e);
+            return 0;
+        }
+
+        if (System.currentTimeMillis() - snapshot.getSaved() > maxAgeMs) {
+            logger.info("ZWave snapshot is too old, skipped");
+            return 0;
+        }
+
+        int restored = 0;
+
+        for (Map.Entry<String, Node> entry : snapshot.getNodes().entrySet()) {
+            Device device = registry.getDevice(SourceProtocol.ZWAVE, entry.getKey());
+
+            if (device == null) {
+                continue;
+            }
+
+            if (entry.getValue().getState() != null) {
+                device.setState(entry.getValue().getState());
+            }
+
+            for (Map.Entry<String, String> value : entry.getValue().getValues().entrySet()) {
+                DeviceValue deviceValue = device.getValues().get(value.getKey());
+
+                if (deviceValue != null && deviceValue.getCurrentValue() == null) {
+                    deviceValue.setCurrentValue(value.getValue());
+                    deviceValue.setStale(true);
+                    restored++;
+                }
+            }
+        }
+
+        return restored;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    static class Snapshot {
+        private long saved;
+        private Map<String, Node> nodes = new HashMap<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    static class Node {
+        private State state;
+        private Map<String, String> values = new HashMap<>();
+    }
+}
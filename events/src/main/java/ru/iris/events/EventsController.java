@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import reactor.bus.Event;
 import reactor.fn.Consumer;
@@ -17,16 +18,23 @@ import ru.iris.commons.helpers.DeviceHelper;
 import ru.iris.commons.helpers.SpeakHelper;
 import ru.iris.commons.registry.DeviceRegistry;
 import ru.iris.commons.service.AbstractService;
+import ru.iris.events.manager.EventCoalescer;
+import ru.iris.events.manager.RuleStatsCollector;
 import ru.iris.events.manager.RuleTriggerManager;
 import ru.iris.events.manager.ScriptManager;
+import ru.iris.events.timer.TimerService;
 import ru.iris.events.types.Rule;
 import ru.iris.events.types.TriggerType;
+import ru.iris.models.bus.devices.AbstractDeviceEvent;
 import ru.iris.models.bus.devices.DeviceChangeEvent;
 import ru.iris.models.bus.devices.DeviceCommandEvent;
 import ru.iris.models.bus.devices.DeviceProtocolEvent;
 import ru.iris.models.bus.event.CommandEvent;
 import ru.iris.models.bus.service.ServiceEvent;
 import ru.iris.models.database.Device;
+import ru.iris.models.web.dto.RuleStatsDTO;
+
+import java.util.List;
 
 @Component
 @Qualifier("events")
@@ -38,9 +46,12 @@ public class EventsController extends AbstractService {
     private final ConfigLoader config;
     private final DeviceRegistry registry;
     private final RuleTriggerManager triggerManager;
-    private ScriptManager scriptManager;
+    private volatile ScriptManager scriptManager;
+    private EventCoalescer coalescer;
     private SpeakHelper speakHelper;
     private DeviceHelper deviceHelper;
+    private TimerService timerService;
+    private RuleStatsCollector statistics;
 
     @Autowired
     private ObjectMapper objectMapper;
@@ -50,12 +61,15 @@ public class EventsController extends AbstractService {
 
     @Autowired
     public EventsController(ConfigLoader config, DeviceRegistry registry, RuleTriggerManager triggerManager,
-                            SpeakHelper speakHelper, DeviceHelper deviceHelper) {
+                            SpeakHelper speakHelper, DeviceHelper deviceHelper, TimerService timerService,
+                            RuleStatsCollector statistics) {
         this.config = config;
         this.registry = registry;
         this.triggerManager = triggerManager;
         this.speakHelper = speakHelper;
         this.deviceHelper = deviceHelper;
+        this.timerService = timerService;
+        this.statistics = statistics;
     }
 
     @Override
@@ -117,21 +131,10 @@ public class EventsController extends AbstractService {
                 return;
             }
 
-            if (event.getData() instanceof DeviceProtocolEvent) {
-                DeviceProtocolEvent e = (DeviceProtocolEvent) event.getData();
-                Device device = registry.getDevice(e.getProtocol(), e.getChannel());
-                Iterable<Rule> rules = triggerManager.getRules(TriggerType.CHANGE, device);
-                scriptManager.executeRules(rules, new ru.iris.events.types.Event(TriggerType.CHANGE, device, event.getKey().toString()));
-            } else if (event.getData() instanceof DeviceChangeEvent) {
-                DeviceChangeEvent e = (DeviceChangeEvent) event.getData();
-                Device device = registry.getDevice(e.getProtocol(), e.getChannel());
-                Iterable<Rule> rules = triggerManager.getRules(TriggerType.CHANGE, device);
-                scriptManager.executeRules(rules, new ru.iris.events.types.Event(TriggerType.CHANGE, device, event.getKey().toString()));
+            if (event.getData() instanceof DeviceProtocolEvent || event.getData() instanceof DeviceChangeEvent) {
+                executeDeviceRules(TriggerType.CHANGE, (AbstractDeviceEvent) event.getData(), event.getKey().toString());
             } else if (event.getData() instanceof DeviceCommandEvent) {
-                DeviceCommandEvent e = (DeviceCommandEvent) event.getData();
-                Device device = registry.getDevice(e.getProtocol(), e.getChannel());
-                Iterable<Rule> rules = triggerManager.getRules(TriggerType.COMMAND, device);
-                scriptManager.executeRules(rules, new ru.iris.events.types.Event(TriggerType.COMMAND, device, event.getKey().toString()));
+                executeDeviceRules(TriggerType.COMMAND, (AbstractDeviceEvent) event.getData(), event.getKey().toString());
             } else if (event.getData() instanceof CommandEvent) {
                 CommandEvent e = (CommandEvent) event.getData();
                 Iterable<Rule> rules = triggerManager.getRules(TriggerType.RUN, e.getFilename());
@@ -143,6 +146,17 @@ public class EventsController extends AbstractService {
         };
     }
 
+    private void executeDeviceRules(TriggerType type, AbstractDeviceEvent e, String topic) {
+        if (coalescer != null) {
+            coalescer.submit(type, e.getProtocol(), e.getChannel(), e.getEventLabel(), topic);
+            return;
+        }
+
+        Device device = registry.getDevice(e.getProtocol(), e.getChannel());
+        Iterable<Rule> rules = triggerManager.getRules(type, device);
+        scriptManager.executeRules(rules, new ru.iris.events.types.Event(type, device, topic));
+    }
+
     @Override
     @Async
     public void run() {
@@ -155,7 +169,27 @@ public class EventsController extends AbstractService {
 			    logger.error("", e);
 		    }
 
-	      scriptManager = new ScriptManager(triggerManager, config, registry, speakHelper, deviceHelper);
+	      ScriptManager manager = new ScriptManager(triggerManager, config, registry, speakHelper, deviceHelper, timerService, statistics);
+
+		    String profilerThreshold = config.get("ruleProfilerThresholdMs");
+		    if (profilerThreshold != null && Long.parseLong(profilerThreshold) > 0) {
+			    if (manager.getEngineProvider().hasScriptFrames()) {
+				    String profilerInterval = config.get("ruleProfilerIntervalMs");
+				    statistics.startProfiler(Long.parseLong(profilerThreshold), profilerInterval != null ? Long.parseLong(profilerInterval) : 20L);
+			    } else {
+				    logger.warn("Rule profiler is not supported with {} script engine, disabled", manager.getEngineProvider().getName());
+			    }
+		    }
+
+		    String window = config.get("coalesceWindowMs");
+		    if (window != null && Long.parseLong(window) > 0) {
+			    String maxDelay = config.get("coalesceMaxDelayMs");
+			    coalescer = new EventCoalescer(triggerManager, manager, registry, timerService, Long.parseLong(window),
+					    maxDelay != null ? Long.parseLong(maxDelay) : 0L);
+			    logger.info("Device events are coalesced with {} ms window", window);
+		    }
+
+		    scriptManager = manager;
 		    logger.info("EventsController started");
 
 		    logger.info("EventsController running startup scripts");
@@ -163,6 +197,28 @@ public class EventsController extends AbstractService {
 		    logger.info("EventsController done running startup scripts");
     }
 
+    /**
+     * Sends rules execution statistics to websocket
+     */
+    @Scheduled(fixedDelay = 60000L)
+    public void publishRuleStatistics() {
+        if (scriptManager == null) {
+            return;
+        }
+
+        List<RuleStatsDTO> stats = statistics.getRuleStatistics();
+
+        if (stats.isEmpty()) {
+            return;
+        }
+
+        try {
+            stomp.convertAndSend("/topic/rules", objectMapper.writeValueAsString(stats));
+        } catch (JsonProcessingException e) {
+            logger.error("Error while serialize rule statistics to send in STOMP", e);
+        }
+    }
+
     @Override
     public String getServiceIdentifier() {
         return "event";
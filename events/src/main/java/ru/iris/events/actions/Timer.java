@@ -1,91 +1,35 @@
 package ru.iris.events.actions;
 
-import lombok.extern.slf4j.Slf4j;
-import org.joda.time.DateTime;
 import org.joda.time.base.AbstractInstant;
-import org.quartz.*;
-import org.quartz.impl.StdSchedulerFactory;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import ru.iris.events.timer.TimerHandle;
+import ru.iris.events.timer.TimerService;
 
-import java.util.Date;
-
-import static org.quartz.TriggerBuilder.newTrigger;
-
-@Slf4j
 public class Timer {
 
-    private static Scheduler scheduler;
-
-    static {
-        try {
-            scheduler = StdSchedulerFactory.getDefaultScheduler();
-        } catch (SchedulerException e) {
-            logger.error("initializing scheduler throws exception", e);
-        }
-    }
-
-    private JobKey jobKey;
-    private TriggerKey triggerKey;
-    private AbstractInstant startTime;
-
-    private boolean cancelled = false;
-    private boolean terminated = false;
+    private final TimerService service;
+    private final TimerHandle handle;
+    private final Runnable procedure;
 
-    public Timer(JobKey jobKey, TriggerKey triggerKey, AbstractInstant startTime) {
-        this.jobKey = jobKey;
-        this.triggerKey = triggerKey;
-        this.startTime = startTime;
+    public Timer(TimerService service, AbstractInstant startTime, Runnable procedure) {
+        this.service = service;
+        this.procedure = procedure;
+        this.handle = service.at(startTime.toDate(), procedure);
     }
 
     public boolean cancel() {
-        try {
-            boolean result = scheduler.deleteJob(jobKey);
-            if (result) {
-                cancelled = true;
-            }
-        } catch (SchedulerException e) {
-            logger.warn("An error occured while cancelling the job '{}': {}", jobKey.toString(), e.getMessage());
-        }
-        return cancelled;
+        return service.cancel(handle);
     }
 
     public boolean reschedule(AbstractInstant newTime) {
-        try {
-            Trigger trigger = newTrigger().startAt(newTime.toDate()).build();
-            Date nextTriggerTime = scheduler.rescheduleJob(triggerKey, trigger);
-            if (nextTriggerTime != null) {
-                this.triggerKey = trigger.getKey();
-                this.cancelled = false;
-                this.terminated = false;
-                return true;
-            }
-        } catch (SchedulerException e) {
-            logger.warn("An error occured while rescheduling the job '{}': {}", jobKey.toString(), e.getMessage());
-        }
-        return false;
+        service.reschedule(handle, newTime.getMillis() - System.currentTimeMillis(), procedure);
+        return true;
     }
 
     public boolean isRunning() {
-        try {
-            for (JobExecutionContext context : scheduler.getCurrentlyExecutingJobs()) {
-                if (context.getJobDetail().getKey().equals(jobKey)) {
-                    return true;
-                }
-            }
-            return false;
-        } catch (SchedulerException e) {
-            // fallback implementation
-            logger.debug("An error occured getting currently running jobs: {}", e.getMessage());
-            return DateTime.now().isAfter(startTime) && !terminated;
-        }
+        return handle.isRunning();
     }
 
     public boolean hasTerminated() {
-        return terminated;
-    }
-
-    public void setTerminated(boolean terminated) {
-        this.terminated = terminated;
+        return handle.hasTerminated();
     }
 }
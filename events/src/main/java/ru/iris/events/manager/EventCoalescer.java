@@ -0,0 +1,115 @@
+package ru.iris.events.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.iris.commons.registry.DeviceRegistry;
+import ru.iris.events.timer.TimerService;
+import ru.iris.events.types.Event;
+import ru.iris.events.types.Rule;
+import ru.iris.events.types.TriggerType;
+import ru.iris.models.database.Device;
+import ru.iris.models.protocol.enums.SourceProtocol;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces bursts of device events. Events with the same (trigger type, protocol, channel, label) are
+ * collapsed until there are no new ones for quiet window, then rules run once with the latest device state.
+ * Continuous stream of events is flushed at least once per max delay.
+ * <p>
+ * Labels are compared ignoring case: protocol value labels (Z-Wave "Level") and standard labels ("level")
+ * of the same change are one event.
+ */
+@Slf4j
+public class EventCoalescer {
+
+    private final RuleTriggerManager triggerManager;
+    private final ScriptManager scriptManager;
+    private final DeviceRegistry registry;
+    private final TimerService timerService;
+    private final long windowMs;
+    private final long maxDelayMs;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+
+    public EventCoalescer(RuleTriggerManager triggerManager, ScriptManager scriptManager, DeviceRegistry registry,
+                          TimerService timerService, long windowMs, long maxDelayMs) {
+        this.triggerManager = triggerManager;
+        this.scriptManager = scriptManager;
+        this.registry = registry;
+        this.timerService = timerService;
+        this.windowMs = windowMs;
+        this.maxDelayMs = Math.max(maxDelayMs, windowMs);
+    }
+
+    public void submit(TriggerType type, SourceProtocol protocol, String channel, String label, String topic) {
+        String key = type + "/" + protocol + "/" + channel + "/" + normalize(label);
+        long now = System.currentTimeMillis();
+
+        Pending current = pending.compute(key, (k, old) -> {
+            Pending p = old != null ? old : new Pending(type, protocol, channel, now);
+            p.topic = topic;
+            return p;
+        });
+
+        received.incrementAndGet();
+
+        long delay = Math.max(0, Math.min(windowMs, current.firstTime + maxDelayMs - now));
+        timerService.debounce("coalesce#" + key, delay, () -> flush(key));
+    }
+
+    /**
+     * @return number of events, passed to coalescer
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return number of rule lookups, made after coalescing
+     */
+    public long getFlushed() {
+        return flushed.get();
+    }
+
+    private static String normalize(String label) {
+        return label == null ? "" : label.toLowerCase(Locale.ROOT);
+    }
+
+    private void flush(String key) {
+        Pending p = pending.remove(key);
+
+        if (p == null) {
+            return;
+        }
+
+        flushed.incrementAndGet();
+
+        Device device = registry.getDevice(p.protocol, p.channel);
+        Iterable<Rule> rules = triggerManager.getRules(p.type, device);
+        scriptManager.executeRules(rules, new Event(p.type, device, p.topic));
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("Coalesced {}: received {}, flushed {}", key, received.get(), flushed.get());
+        }
+    }
+
+    private static class Pending {
+        private final TriggerType type;
+        private final SourceProtocol protocol;
+        private final String channel;
+        private final long firstTime;
+        private volatile String topic;
+
+        private Pending(TriggerType type, SourceProtocol protocol, String channel, long firstTime) {
+            this.type = type;
+            this.protocol = protocol;
+            this.channel = channel;
+            this.firstTime = firstTime;
+        }
+    }
+}
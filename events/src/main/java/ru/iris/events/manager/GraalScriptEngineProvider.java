@@ -0,0 +1,253 @@
+package ru.iris.events.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.graalvm.polyglot.*;
+import ru.iris.events.types.Event;
+import ru.iris.events.types.EventTrigger;
+import ru.iris.events.types.Rule;
+import ru.iris.events.types.RuleSet;
+import ru.iris.events.types.TriggerType;
+import ru.iris.models.database.Device;
+
+import javax.script.ScriptException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * GraalJS (polyglot) provider. One {@link Engine} is shared by all scripts, so parsed and compiled
+ * {@link Source}s are cached between scripts and reloads. Every script gets its own {@link Context}.
+ */
+@Slf4j
+public class GraalScriptEngineProvider implements ScriptEngineProvider {
+
+    public static final String NAME = "graaljs";
+    private static final String LANGUAGE = "js";
+
+    private final Engine engine;
+    private final Source typesSource;
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+
+    public GraalScriptEngineProvider() {
+        engine = Engine.newBuilder()
+                .allowExperimentalOptions(true)
+                .build();
+        typesSource = Source.newBuilder(LANGUAGE, ScriptGlobals.JS_TYPES, "globals.js")
+                .cached(true)
+                .buildLiteral();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(String extension) {
+        return LANGUAGE.equals(extension);
+    }
+
+    @Override
+    public boolean hasScriptFrames() {
+        // Truffle frames are interpreter / compiled AST frames, script lines are not visible to Thread.getStackTrace()
+        return false;
+    }
+
+    @Override
+    public LoadedScript load(String fileName, String source, Map<String, Object> globals) throws ScriptException, NoSuchMethodException {
+        Context context = Context.newBuilder(LANGUAGE)
+                .engine(engine)
+                .allowHostAccess(HostAccess.ALL)
+                .allowHostClassLookup(className -> true)
+                .allowExperimentalOptions(true)
+                // scripts are written for Nashorn: new Rule() { ... } syntax, Java.type() etc
+                .option("js.nashorn-compat", "true")
+                .option("js.syntax-extensions", "true")
+                .build();
+
+        try {
+            Value bindings = context.getBindings(LANGUAGE);
+            globals.forEach(bindings::putMember);
+
+            context.eval(typesSource);
+            context.eval(getSource(fileName, source));
+
+            Value getRules = bindings.getMember("getRules");
+
+            if (getRules == null || !getRules.canExecute()) {
+                throw new NoSuchMethodException("getRules");
+            }
+
+            RuleSet ruleSet = getRules.execute().as(RuleSet.class);
+            return new GraalScript(fileName, context, ruleSet.getRules());
+        } catch (PolyglotException e) {
+            context.close();
+            ScriptException ex = new ScriptException(e.getMessage(), fileName,
+                    e.getSourceLocation() != null ? e.getSourceLocation().getStartLine() : -1);
+            ex.initCause(e);
+            throw ex;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            context.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        sources.clear();
+        engine.close();
+    }
+
+    /**
+     * Returns cached source. Source with the same content is parsed only once by shared engine.
+     */
+    private Source getSource(String fileName, String content) {
+        Source cached = sources.get(fileName);
+
+        if (cached != null && cached.getCharacters().toString().equals(content)) {
+            return cached;
+        }
+
+        Source source = Source.newBuilder(LANGUAGE, content, fileName)
+                .cached(true)
+                .buildLiteral();
+        sources.put(fileName, source);
+
+        return source;
+    }
+
+    /**
+     * Context of script may be entered only by one thread at a time. All calls into script values
+     * (rules, triggers, timer callbacks) go through the lock of context. Triggers and names of rules are
+     * copied to Java objects on load, so trigger lookup from bus, timer and HTTP threads doesn't touch context.
+     */
+    private static class GraalScript implements LoadedScript {
+        private final Context context;
+        private final List<Rule> rules = new ArrayList<>();
+        private boolean closed = false;
+
+        GraalScript(String fileName, Context context, List<Rule> scriptRules) {
+            this.context = context;
+
+            for (int i = 0; i < scriptRules.size(); i++) {
+                Rule rule = scriptRules.get(i);
+                List<EventTrigger> triggers = new ArrayList<>();
+
+                for (EventTrigger trigger : rule.getEventTrigger()) {
+                    triggers.add(Proxy.isProxyClass(trigger.getClass()) ? new ScriptTrigger(this, trigger) : trigger);
+                }
+
+                rules.add(new ScriptRule(this, rule, Collections.unmodifiableList(triggers), fileName + "#" + i));
+            }
+        }
+
+        @Override
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        @Override
+        public void execute(Rule rule, Event event) {
+            // JS context is single-threaded: rules of one script run one by one
+            rule.execute(event);
+        }
+
+        @Override
+        public void run(Runnable task) {
+            synchronized (context) {
+                if (closed) {
+                    logger.debug("Script context is closed, task skipped");
+                    return;
+                }
+
+                task.run();
+            }
+        }
+
+        <T> T call(Supplier<T> task, T closedValue) {
+            synchronized (context) {
+                if (closed) {
+                    return closedValue;
+                }
+
+                return task.get();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (context) {
+                closed = true;
+                context.close();
+            }
+        }
+    }
+
+    private static class ScriptRule implements Rule {
+        private final GraalScript script;
+        private final Rule delegate;
+        private final List<EventTrigger> triggers;
+        private final String name;
+
+        ScriptRule(GraalScript script, Rule delegate, List<EventTrigger> triggers, String name) {
+            this.script = script;
+            this.delegate = delegate;
+            this.triggers = triggers;
+            this.name = name;
+        }
+
+        @Override
+        public List<EventTrigger> getEventTrigger() {
+            return triggers;
+        }
+
+        @Override
+        public void execute(Event event) {
+            script.run(() -> delegate.execute(event));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Trigger, implemented in script (new EventTrigger() { ... }).
+     */
+    private static class ScriptTrigger implements EventTrigger {
+        private final GraalScript script;
+        private final EventTrigger delegate;
+        private final String item;
+
+        ScriptTrigger(GraalScript script, EventTrigger delegate) {
+            this.script = script;
+            this.delegate = delegate;
+            this.item = delegate.getItem();
+        }
+
+        @Override
+        public String getItem() {
+            return item;
+        }
+
+        @Override
+        public boolean evaluate(Device device, TriggerType type) {
+            return script.call(() -> delegate.evaluate(device, type), false);
+        }
+
+        @Override
+        public boolean evaluate(String param, TriggerType type) {
+            return script.call(() -> delegate.evaluate(param, type), false);
+        }
+
+        @Override
+        public String toString() {
+            return "ScriptTrigger(" + item + ")";
+        }
+    }
+}
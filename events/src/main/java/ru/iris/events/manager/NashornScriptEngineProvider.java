@@ -0,0 +1,120 @@
+package ru.iris.events.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.util.StringUtils;
+import ru.iris.events.types.*;
+
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import java.io.File;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSR-223 provider. Uses Nashorn for JavaScript (JDK 8 - 14) or any other engine, found by file extension.
+ */
+@Slf4j
+public class NashornScriptEngineProvider implements ScriptEngineProvider {
+
+    public static final String NAME = "nashorn";
+
+    private final ScriptEngineManager factory = new ScriptEngineManager();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(String extension) {
+        return extension != null && factory.getEngineByExtension(extension) != null;
+    }
+
+    @Override
+    public boolean hasScriptFrames() {
+        return true;
+    }
+
+    @Override
+    public LoadedScript load(String fileName, String source, Map<String, Object> globals) throws ScriptException, NoSuchMethodException {
+        ScriptEngine engine = factory.getEngineByExtension(FilenameUtils.getExtension(fileName));
+
+        if (engine == null) {
+            throw new ScriptException("No engine found for " + fileName);
+        }
+
+        logger.info("EngineName: " + engine.getFactory().getEngineName());
+        globals.forEach(engine::put);
+
+        if (engine.getFactory().getEngineName().toLowerCase().endsWith("nashorn")) {
+            logger.info("initializeScriptGlobals for : " + engine.getFactory().getEngineName());
+            engine.eval(ScriptGlobals.JS_TYPES);
+        } else {
+            initializeGeneralGlobals(engine);
+        }
+
+        engine.put(ScriptEngine.FILENAME, fileName);
+        engine.eval(source);
+
+        Invocable inv = (Invocable) engine;
+        RuleSet ruleSet = (RuleSet) inv.invokeFunction("getRules");
+
+        return new NashornScript(new ArrayList<>(ruleSet.getRules()));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void initializeGeneralGlobals(ScriptEngine engine) {
+        engine.put("RuleSet", RuleSet.class);
+        engine.put("Rule", Rule.class);
+        engine.put("ChangedEventTrigger", ChangedEventTrigger.class);
+        engine.put("CommandEventTrigger", CommandEventTrigger.class);
+        engine.put("Event", Event.class);
+        engine.put("EventTrigger", EventTrigger.class);
+        engine.put("ShutdownTrigger", ShutdownTrigger.class);
+        engine.put("StartupTrigger", StartupTrigger.class);
+        engine.put("TimerTrigger", TimerTrigger.class);
+        engine.put("TriggerType", TriggerType.class);
+        engine.put("StringUtils", StringUtils.class);
+        engine.put("URLEncoder", URLEncoder.class);
+        engine.put("FileUtils", FileUtils.class);
+        engine.put("FilenameUtils", FilenameUtils.class);
+        engine.put("File", File.class);
+    }
+
+    private static class NashornScript implements LoadedScript {
+        private final List<Rule> rules;
+
+        NashornScript(List<Rule> rules) {
+            this.rules = rules;
+        }
+
+        @Override
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        @Override
+        public void execute(Rule rule, Event event) {
+            // Nashorn script objects may be called from any thread
+            rule.execute(event);
+        }
+
+        @Override
+        public void run(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
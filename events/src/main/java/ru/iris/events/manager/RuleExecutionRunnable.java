@@ -1,8 +1,6 @@
 package ru.iris.events.manager;
 
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import ru.iris.events.types.Event;
 import ru.iris.events.types.Rule;
 
@@ -11,18 +9,33 @@ public class RuleExecutionRunnable implements Runnable {
 
     private Rule rule;
     private Event event;
+    private Script script;
+    private ScriptEngineProvider.LoadedScript loaded;
+    private RuleStatsCollector statistics;
 
-    public RuleExecutionRunnable(Rule rule, Event event) {
+    public RuleExecutionRunnable(Rule rule, Event event, Script script, ScriptEngineProvider.LoadedScript loaded,
+                                 RuleStatsCollector statistics) {
         this.rule = rule;
         this.event = event;
+        this.script = script;
+        this.loaded = loaded;
+        this.statistics = statistics;
     }
 
     @Override
     public void run() {
+        RuleStatsCollector.Execution execution = statistics != null ? statistics.start(script, rule) : null;
+        Throwable error = null;
+
         try {
-            this.rule.execute(event);
+            loaded.execute(rule, event);
         } catch (Exception e) {
+            error = e;
             logger.error("Error while executing rule: ", e);
+        } finally {
+            if (execution != null) {
+                statistics.finish(execution, error);
+            }
         }
     }
 
@@ -0,0 +1,267 @@
+package ru.iris.events.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.iris.commons.service.RuleStatistics;
+import ru.iris.events.types.EventTrigger;
+import ru.iris.events.types.Rule;
+import ru.iris.events.types.TimerTrigger;
+import ru.iris.models.web.dto.RuleStatsDTO;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Per-rule execution statistics: invocations, errors, latency percentiles of recent executions, last error.
+ * <p>
+ * Optional sampling profiler periodically takes stack traces of rules, running longer than threshold,
+ * and counts frames, where they spend time. For JavaScript rules frame of the script itself is counted,
+ * so result points to script line. This works only with engines, which compile scripts to JVM bytecode
+ * (see {@link ScriptEngineProvider#hasScriptFrames()}).
+ * <p>
+ * Statistics are keyed by stable rule id (script name and triggers) and dropped, when script is reloaded or removed.
+ */
+@Component
+@Slf4j
+public class RuleStatsCollector implements RuleStatistics {
+
+    // latency percentiles are calculated over last executions
+    private static final int SAMPLES = 1024;
+    private static final int HOT_FRAMES = 10;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final Map<Thread, Execution> running = new ConcurrentHashMap<>();
+
+    private volatile long slowThresholdNanos = 0;
+    private volatile ScheduledExecutorService profiler;
+
+    /**
+     * Enables slow rules profiler.
+     *
+     * @param thresholdMs rules, running longer, are sampled
+     * @param intervalMs  sampling interval
+     */
+    public synchronized void startProfiler(long thresholdMs, long intervalMs) {
+        if (profiler != null || thresholdMs <= 0) {
+            return;
+        }
+
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        profiler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rule-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        profiler.scheduleWithFixedDelay(this::sample, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        logger.info("Rule profiler started: threshold {} ms, interval {} ms", thresholdMs, intervalMs);
+    }
+
+    @PreDestroy
+    public synchronized void stopProfiler() {
+        if (profiler != null) {
+            profiler.shutdownNow();
+            profiler = null;
+        }
+    }
+
+    /**
+     * Marks start of rule execution in current thread.
+     *
+     * @return execution to pass in {@link #finish(Execution, Throwable)}
+     */
+    public Execution start(Script script, Rule rule) {
+        Stats s = stats.computeIfAbsent(getKey(script, rule), k -> new Stats(script.getFileName(), rule));
+        Execution execution = new Execution(s, script.getFileName(), Thread.currentThread(), System.nanoTime());
+
+        if (profiler != null) {
+            running.put(execution.thread, execution);
+        }
+
+        return execution;
+    }
+
+    /**
+     * @param execution execution, returned by start()
+     * @param error     error, thrown by rule or null
+     */
+    public void finish(Execution execution, Throwable error) {
+        long duration = System.nanoTime() - execution.start;
+
+        running.remove(execution.thread, execution);
+        execution.stats.add(duration, error, slowThresholdNanos > 0 && duration >= slowThresholdNanos);
+    }
+
+    @Override
+    public List<RuleStatsDTO> getRuleStatistics() {
+        return stats.values().stream()
+                .map(Stats::toDTO)
+                .sorted(Comparator.comparingDouble(RuleStatsDTO::getTotalMs).reversed())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Drops statistics of script rules, called when script is removed or reloaded.
+     */
+    public void removeScript(String scriptName) {
+        stats.values().removeIf(s -> s.script.equals(scriptName));
+    }
+
+    private String getKey(Script script, Rule rule) {
+        String id = script.getRuleId(rule);
+        return id != null ? id : script.getFileName() + "#" + rule;
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+
+        for (Execution execution : running.values()) {
+            if (now - execution.start < slowThresholdNanos) {
+                continue;
+            }
+
+            StackTraceElement[] trace = execution.thread.getStackTrace();
+
+            // thread may be already finished with this rule
+            if (running.get(execution.thread) != execution || trace.length == 0) {
+                continue;
+            }
+
+            execution.stats.addSample(getFrame(trace, execution.scriptName));
+        }
+    }
+
+    private String getFrame(StackTraceElement[] trace, String scriptName) {
+        for (StackTraceElement element : trace) {
+            if (scriptName.equals(element.getFileName())) {
+                return element.getFileName() + ":" + element.getLineNumber();
+            }
+        }
+
+        return trace[0].toString();
+    }
+
+    public static class Execution {
+        private final Stats stats;
+        private final String scriptName;
+        private final Thread thread;
+        private final long start;
+
+        private Execution(Stats stats, String scriptName, Thread thread, long start) {
+            this.stats = stats;
+            this.scriptName = scriptName;
+            this.thread = thread;
+            this.start = start;
+        }
+    }
+
+    private static class Stats {
+        private final String script;
+        private final String rule;
+        private final String triggers;
+
+        private final long[] samples = new long[SAMPLES];
+        private int position = 0;
+        private int count = 0;
+
+        private long invocations;
+        private long errors;
+        private long slow;
+        private long total;
+        private long max;
+        private String lastError;
+        private Date lastErrorDate;
+        private final Map<String, Long> hotFrames = new HashMap<>();
+
+        private Stats(String script, Rule rule) {
+            this.script = script;
+            this.rule = String.valueOf(rule);
+
+            StringBuilder sb = new StringBuilder();
+            for (EventTrigger trigger : rule.getEventTrigger()) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(trigger.getClass().getSimpleName()).append('(')
+                        .append(trigger instanceof TimerTrigger ? ((TimerTrigger) trigger).getCron() : trigger.getItem())
+                        .append(')');
+            }
+            this.triggers = sb.toString();
+        }
+
+        private synchronized void add(long duration, Throwable error, boolean isSlow) {
+            invocations++;
+            total += duration;
+            max = Math.max(max, duration);
+
+            samples[position] = duration;
+            position = (position + 1) % SAMPLES;
+            count = Math.min(count + 1, SAMPLES);
+
+            if (isSlow) {
+                slow++;
+            }
+
+            if (error != null) {
+                errors++;
+                lastError = error.toString();
+                lastErrorDate = new Date();
+            }
+        }
+
+        private synchronized void addSample(String frame) {
+            hotFrames.merge(frame, 1L, Long::sum);
+        }
+
+        private synchronized RuleStatsDTO toDTO() {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+
+            RuleStatsDTO dto = new RuleStatsDTO();
+            dto.setScript(script);
+            dto.setRule(rule);
+            dto.setTriggers(triggers);
+            dto.setInvocations(invocations);
+            dto.setErrors(errors);
+            dto.setSlow(slow);
+            dto.setP50Ms(toMs(percentile(sorted, 0.5)));
+            dto.setP99Ms(toMs(percentile(sorted, 0.99)));
+            dto.setMaxMs(toMs(max));
+            dto.setTotalMs(toMs(total));
+            dto.setLastError(lastError);
+            dto.setLastErrorDate(lastErrorDate);
+
+            Map<String, Long> frames = new LinkedHashMap<>();
+            hotFrames.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(HOT_FRAMES)
+                    .forEach(e -> frames.put(e.getKey(), e.getValue()));
+            dto.setHotFrames(frames);
+
+            return dto;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        private static double toMs(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
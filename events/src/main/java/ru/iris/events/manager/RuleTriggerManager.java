@@ -5,17 +5,16 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
-import org.quartz.*;
-import org.quartz.impl.StdSchedulerFactory;
-import org.quartz.impl.matchers.GroupMatcher;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import ru.iris.events.timer.TimerService;
 import ru.iris.events.types.*;
 import ru.iris.models.database.Device;
 
+import java.text.ParseException;
 import java.util.*;
-
-import static org.quartz.JobBuilder.newJob;
-import static org.quartz.TriggerBuilder.newTrigger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Component
 @Slf4j
@@ -28,17 +27,15 @@ public class RuleTriggerManager {
     private List<Rule> systemShutdownTriggeredRules = Lists.newArrayList();
     private List<Rule> timerEventTriggeredRules = Lists.newArrayList();
 
-    // the scheduler used for timer events
-    private Scheduler scheduler;
+    // scheduled jobs of timer rules, so they can be removed or rebound without rescheduling
+    private Map<Rule, List<TimeTriggerJob>> timerJobs = new ConcurrentHashMap<>();
 
-    public RuleTriggerManager() {
+    // the timer service used for timer events
+    private final TimerService timerService;
 
-        try {
-            scheduler = StdSchedulerFactory.getDefaultScheduler();
-            scheduler.start();
-        } catch (SchedulerException e) {
-            logger.error("initializing scheduler throws exception", e);
-        }
+    @Autowired
+    public RuleTriggerManager(TimerService timerService) {
+        this.timerService = timerService;
     }
 
     /**
@@ -228,7 +225,7 @@ public class RuleTriggerManager {
                 timerEventTriggeredRules.add(rule);
                 try {
                     createTimer(rule, (TimerTrigger) t);
-                } catch (SchedulerException e) {
+                } catch (ParseException e) {
                     logger.error("Cannot create timer for rule '{}': {}", rule, e.getMessage());
                 }
             }
@@ -265,6 +262,38 @@ public class RuleTriggerManager {
         }
     }
 
+    /**
+     * Replaces rule object in all mapping tables and scheduled timers. Used on script reload,
+     * when new rule has the same triggers as old one, so nothing has to be re-registered.
+     *
+     * @param oldRule the rule to replace
+     * @param newRule the new rule with the same triggers
+     */
+    public synchronized void replaceRule(Rule oldRule, Rule newRule) {
+        replaceRule(changedEventTriggeredRules.values(), oldRule, newRule);
+        replaceRule(commandEventTriggeredRules.values(), oldRule, newRule);
+        replaceRule(runEventTriggeredRules.values(), oldRule, newRule);
+        Collections.replaceAll(systemStartupTriggeredRules, oldRule, newRule);
+        Collections.replaceAll(systemShutdownTriggeredRules, oldRule, newRule);
+        Collections.replaceAll(timerEventTriggeredRules, oldRule, newRule);
+
+        List<TimeTriggerJob> jobs = timerJobs.remove(oldRule);
+        if (jobs != null) {
+            for (TimeTriggerJob job : jobs) {
+                job.setRule(newRule);
+            }
+            timerJobs.put(newRule, jobs);
+        }
+    }
+
+    private void replaceRule(Collection<Set<Rule>> ruleSets, Rule oldRule, Rule newRule) {
+        for (Set<Rule> ruleSet : ruleSets) {
+            if (ruleSet.remove(oldRule)) {
+                ruleSet.add(newRule);
+            }
+        }
+    }
+
     public void addRuleModel(List<Rule> rules) {
         for (Rule rule : rules) {
             addRule(rule);
@@ -276,7 +305,7 @@ public class RuleTriggerManager {
      *
      * @param rules the given rules to remove
      */
-    public void removeRuleModel(List<Rule> rules) {
+    public synchronized void removeRuleModel(List<Rule> rules) {
         removeRules(TriggerType.CHANGE, changedEventTriggeredRules.values(), rules);
         removeRules(TriggerType.COMMAND, commandEventTriggeredRules.values(), rules);
         removeRules(TriggerType.RUN, runEventTriggeredRules.values(), rules);
@@ -297,21 +326,25 @@ public class RuleTriggerManager {
     }
 
     private void removeTimerRule(Rule rule) {
-        try {
-            removeTimer(rule);
-        } catch (SchedulerException e) {
-            logger.error("Cannot remove timer for rule '{}'", rule, e);
+        List<TimeTriggerJob> jobs = timerJobs.remove(rule);
+        if (jobs == null) {
+            return;
+        }
+
+        for (TimeTriggerJob job : jobs) {
+            job.cancel();
+            logger.debug("Removed scheduled cron job '{}'", job);
         }
     }
 
     /**
-     * Creates and schedules a new quartz-job and trigger with model and rule name as jobData.
+     * Creates and schedules a new cron timer for the rule.
      *
      * @param rule    the rule to schedule
      * @param trigger the defined trigger
-     * @throws SchedulerException if there is an internal Scheduler error.
+     * @throws ParseException if cron expression is invalid
      */
-    private void createTimer(Rule rule, TimerTrigger trigger) throws SchedulerException {
+    private void createTimer(Rule rule, TimerTrigger trigger) throws ParseException {
         String cronExpression = trigger.getCron();
         if (cronExpression != null) {
             if (cronExpression.equals("noon")) {
@@ -324,50 +357,10 @@ public class RuleTriggerManager {
             return;
         }
 
-        String jobIdentity = getJobIdentityString(rule, trigger);
-
-        try {
-            JobDataMap dataMap = new JobDataMap();
-            dataMap.put("rule", rule);
-            JobDetail job = newJob(TimeTriggerJob.class).usingJobData(dataMap).withIdentity(jobIdentity).build();
-            Trigger quartzTrigger = newTrigger().withSchedule(CronScheduleBuilder.cronSchedule(cronExpression)).build();
-
-            scheduler.scheduleJob(job, quartzTrigger);
-
-            logger.debug("Scheduled rule {} with cron expression {}", rule, cronExpression);
-        } catch (RuntimeException e) {
-            throw new SchedulerException(e.getMessage());
-        }
-    }
-
-    /**
-     * Delete all {@link Job}s of the DEFAULT group whose name starts with <code>rule.getName()</code>.
-     *
-     * @throws SchedulerException if there is an internal Scheduler error.
-     */
-    private void removeTimer(Rule rule) throws SchedulerException {
-        Set<JobKey> jobKeys = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(Scheduler.DEFAULT_GROUP));
-        for (JobKey jobKey : jobKeys) {
-            String jobIdentityString = getJobIdentityString(rule, null);
-            if (jobKey.getName().startsWith(jobIdentityString)) {
-                boolean success = scheduler.deleteJob(jobKey);
-                if (!success) {
-                    logger.warn("Failed to delete cron job '{}'", jobKey.getName());
-                } else {
-                    logger.debug("Removed scheduled cron job '{}'", jobKey.getName());
-                }
-            }
-        }
-    }
+        TimeTriggerJob job = new TimeTriggerJob(rule);
+        job.setHandle(timerService.cron(cronExpression, job));
+        timerJobs.computeIfAbsent(rule, k -> new CopyOnWriteArrayList<>()).add(job);
 
-    private String getJobIdentityString(Rule rule, TimerTrigger trigger) {
-        Script script = ScriptManager.getInstance().getScript(rule);
-        String jobIdentity = script.getFileName() + "#" + rule;
-        if (trigger != null) {
-            if (trigger.getCron() != null) {
-                jobIdentity += "#" + trigger.getCron();
-            }
-        }
-        return jobIdentity;
+        logger.debug("Scheduled rule {} with cron expression {}", rule, cronExpression);
     }
 }
@@ -2,124 +2,96 @@ package ru.iris.events.manager;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
-import org.springframework.util.StringUtils;
+import org.springframework.util.DigestUtils;
 import ru.iris.commons.helpers.DeviceHelper;
 import ru.iris.commons.helpers.SpeakHelper;
 import ru.iris.commons.registry.DeviceRegistry;
-import ru.iris.events.types.*;
+import ru.iris.events.types.Event;
+import ru.iris.events.types.EventTrigger;
+import ru.iris.events.timer.TimerService;
+import ru.iris.events.types.Rule;
+import ru.iris.events.types.TimerTrigger;
 
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.net.URLEncoder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class Script {
     private ArrayList<Rule> rules = new ArrayList<>();
-    private ScriptEngine engine = null;
+    private Map<Rule, String> ruleIds = new IdentityHashMap<>();
+    private ScriptEngineProvider provider;
+    private ScriptEngineProvider.LoadedScript loaded = null;
     private DeviceRegistry registry;
     private String fileName;
+    private String hash;
     private SpeakHelper speakHelper;
     private DeviceHelper deviceHelper;
     private ScriptLogger scriptLogger;
+    private ScriptTimers timers;
 
-    public Script(File file, DeviceRegistry registry,
-                  SpeakHelper speakHelper, DeviceHelper deviceHelper) throws FileNotFoundException, ScriptException, NoSuchMethodException {
+    public Script(File file, ScriptEngineProvider provider, DeviceRegistry registry, SpeakHelper speakHelper,
+                  DeviceHelper deviceHelper, TimerService timerService) throws FileNotFoundException, ScriptException, NoSuchMethodException {
         this.fileName = file.getName();
+        this.provider = provider;
         this.registry = registry;
         this.speakHelper = speakHelper;
         this.deviceHelper = deviceHelper;
         this.scriptLogger = new ScriptLogger(logger, fileName);
+        this.timers = new ScriptTimers(timerService, this);
         loadScript(file);
     }
 
     private void loadScript(File file) throws FileNotFoundException, ScriptException, NoSuchMethodException {
         logger.info("Loading Script " + file.getName());
         String extension = getFileExtension(file);
-        ScriptEngineManager factory = new ScriptEngineManager();
-        engine = factory.getEngineByExtension(extension);
-        if (engine != null) {
-            logger.info("EngineName: " + engine.getFactory().getEngineName());
-            initializeSciptGlobals();
-            engine.eval(new FileReader(file));
-            Invocable inv = (Invocable) engine;
-            RuleSet ruleSet = (RuleSet) inv.invokeFunction("getRules");
-            rules.addAll(ruleSet.getRules());
-        }
-    }
 
-    private void initializeSciptGlobals() {
-        if (engine.getFactory().getEngineName().toLowerCase().endsWith("nashorn")) {
-            initializeNashornGlobals();
-        } else {
-            initializeGeneralGlobals();
+        if (provider.supports(extension)) {
+            logger.info("EngineName: " + provider.getName());
+
+            String source;
+            try {
+                source = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new ScriptException(e);
+            }
+
+            hash = hash(source);
+            loaded = provider.load(fileName, source, ScriptGlobals.create(registry, deviceHelper, speakHelper, scriptLogger, timers));
+            rules.addAll(loaded.getRules());
+
+            Map<String, Integer> signatures = new HashMap<>();
+            for (Rule rule : rules) {
+                String signature = getTriggerSignature(rule);
+                int n = signatures.merge(signature, 1, Integer::sum);
+                ruleIds.put(rule, fileName + "#" + signature + "#" + n);
+            }
         }
     }
 
-    private void initializeNashornGlobals() {
-        try {
-            logger.info("initializeScriptGlobals for : " + engine.getFactory().getEngineName());
-
-            engine.put("DeviceRegistry", registry);
-            engine.put("DeviceHelper", deviceHelper);
-            engine.put("SpeakHelper", speakHelper);
-            engine.put("log", scriptLogger);
-
-            engine.eval("RuleSet 				= Java.type('ru.iris.events.types.RuleSet'),\n"
-                    + "Rule 					= Java.type('ru.iris.events.types.Rule'),\n"
-                    + "ChangedEventTrigger 	= Java.type('ru.iris.events.types.ChangedEventTrigger'),\n"
-                    + "CommandEventTrigger 	= Java.type('ru.iris.events.types.CommandEventTrigger'),\n"
-                    + "RunCommandTrigger 	= Java.type('ru.iris.events.types.RunCommandTrigger'),\n"
-                    + "Event 				= Java.type('ru.iris.events.types.Event'),\n"
-                    + "EventTrigger			= Java.type('ru.iris.events.types.EventTrigger'),\n"
-                    + "ShutdownTrigger 		= Java.type('ru.iris.events.types.ShutdownTrigger'),\n"
-                    + "StartupTrigger 		= Java.type('ru.iris.events.types.StartupTrigger'),\n"
-                    + "TimerTrigger 			= Java.type('ru.iris.events.types.TimerTrigger'),\n"
-                    + "TriggerType 			= Java.type('ru.iris.events.types.TriggerType'),\n"
-                    + "URLEncoder 			= Java.type('java.net.URLEncoder'),\n"
-
-                    // Devices
-                    + "Device 			= Java.type('ru.iris.models.database.Device'),\n"
-                    + "DeviceValue 			= Java.type('ru.iris.models.database.DeviceValue'),\n"
-                    + "DeviceValueChange 			= Java.type('ru.iris.models.database.DeviceValueChange'),\n"
-                    + "Zone			= Java.type('ru.iris.models.protocol.Zone'),\n"
-                    + "SourceProtocol			= Java.type('ru.iris.models.protocol.enums.SourceProtocol'),\n"
-
-                    //System
-                    + "FileUtils 			= Java.type('org.apache.commons.io.FileUtils'),\n"
-                    + "FilenameUtils			= Java.type('org.apache.commons.io.FilenameUtils'),\n"
-                    + "File 					= Java.type('java.io.File'),\n"
-                    + "engine				= 'javascript';\n"
-            );
-        } catch (ScriptException e) {
-            logger.error("ScriptException in initializeScriptGlobals while importing default-classes: ", e);
+    /**
+     * Rule identity for reload diff: rules with the same triggers need no re-registration.
+     */
+    static String getTriggerSignature(Rule rule) {
+        StringBuilder signature = new StringBuilder();
+        for (EventTrigger trigger : rule.getEventTrigger()) {
+            signature.append(trigger.getClass().getSimpleName()).append(':').append(trigger.getItem());
+            if (trigger instanceof TimerTrigger) {
+                signature.append(':').append(((TimerTrigger) trigger).getCron());
+            }
+            signature.append(';');
         }
-    }
-
-    private void initializeGeneralGlobals() {
-        engine.put("RuleSet", RuleSet.class);
-        engine.put("Rule", Rule.class);
-        engine.put("ChangedEventTrigger", ChangedEventTrigger.class);
-        engine.put("CommandEventTrigger", CommandEventTrigger.class);
-        engine.put("Event", Event.class);
-        engine.put("EventTrigger", EventTrigger.class);
-        engine.put("ShutdownTrigger", ShutdownTrigger.class);
-        engine.put("StartupTrigger", StartupTrigger.class);
-        engine.put("TimerTrigger", TimerTrigger.class);
-        engine.put("TriggerType", TriggerType.class);
-        engine.put("StringUtils", StringUtils.class);
-        engine.put("URLEncoder", URLEncoder.class);
-        engine.put("FileUtils", FileUtils.class);
-        engine.put("FilenameUtils", FilenameUtils.class);
-        engine.put("File", File.class);
+        return signature.toString();
     }
 
     private String getFileExtension(File file) {
@@ -135,8 +107,8 @@ public class Script {
         return this.rules;
     }
 
-    public void executeRule(Rule rule, Event event) {
-        Thread t = new Thread(new RuleExecutionRunnable(rule, event));
+    public void executeRule(Rule rule, Event event, RuleStatsCollector statistics) {
+        Thread t = new Thread(new RuleExecutionRunnable(rule, event, this, loaded, statistics));
         t.start();
     }
 
@@ -144,8 +116,53 @@ public class Script {
         return fileName;
     }
 
-    public ScriptEngine getEngine() {
-        return engine;
+    /**
+     * @return id of rule, which doesn't depend on rule order and stays the same for unchanged triggers
+     */
+    public String getRuleId(Rule rule) {
+        return ruleIds.get(rule);
+    }
+
+    /**
+     * @return hash of script source, used to skip reloading of unchanged files
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public static String hash(String source) {
+        return DigestUtils.md5DigestAsHex(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return loaded script or null, if provider doesn't support this file
+     */
+    public ScriptEngineProvider.LoadedScript getEngine() {
+        return loaded;
+    }
+
+    /**
+     * Runs task, created by script (timer callback), in script engine.
+     */
+    public void run(Runnable task) {
+        if (loaded == null) {
+            logger.warn("Script {} is not loaded, task skipped", fileName);
+            return;
+        }
+
+        try {
+            loaded.run(task);
+        } catch (Exception e) {
+            logger.error("Error while executing task of script {}", fileName, e);
+        }
+    }
+
+    public void close() {
+        timers.cancelAll();
+
+        if (loaded != null) {
+            loaded.close();
+        }
     }
 
     public static class ScriptLogger {
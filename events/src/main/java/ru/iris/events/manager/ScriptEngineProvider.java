@@ -0,0 +1,64 @@
+package ru.iris.events.manager;
+
+import ru.iris.events.types.Event;
+import ru.iris.events.types.Rule;
+
+import javax.script.ScriptException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Script engine SPI. Provider compiles script source, returns rules from script <code>getRules()</code>
+ * function and executes them with threading guarantees, which underlying engine requires.
+ */
+public interface ScriptEngineProvider {
+
+    /**
+     * @return short engine name, used in events.properties (scriptEngine key)
+     */
+    String getName();
+
+    /**
+     * @param extension script file extension without dot
+     * @return true if provider can load scripts with this extension
+     */
+    boolean supports(String extension);
+
+    /**
+     * @return true if script code is compiled to JVM bytecode and its frames are visible in Java stack traces
+     * with script file name, so sampling profiler can attribute time to script lines
+     */
+    boolean hasScriptFrames();
+
+    /**
+     * Compiles and evaluates script source with given globals.
+     *
+     * @param fileName script file name (used as source name and for cache)
+     * @param source   script source
+     * @param globals  objects, exposed to script as global variables
+     * @return loaded script
+     * @throws ScriptException       if script can't be evaluated
+     * @throws NoSuchMethodException if script misses getRules() function
+     */
+    LoadedScript load(String fileName, String source, Map<String, Object> globals) throws ScriptException, NoSuchMethodException;
+
+    /**
+     * Releases all resources, shared between scripts.
+     */
+    void close();
+
+    interface LoadedScript {
+        List<Rule> getRules();
+
+        void execute(Rule rule, Event event);
+
+        /**
+         * Runs task (e.g. timer callback, created by script) with the same threading guarantees as rules.
+         *
+         * @param task task to run
+         */
+        void run(Runnable task);
+
+        void close();
+    }
+}
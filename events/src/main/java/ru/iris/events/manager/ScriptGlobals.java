@@ -0,0 +1,58 @@
+package ru.iris.events.manager;
+
+import ru.iris.commons.helpers.DeviceHelper;
+import ru.iris.commons.helpers.SpeakHelper;
+import ru.iris.commons.registry.DeviceRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Globals, available in every script regardless of engine.
+ */
+public final class ScriptGlobals {
+
+    /**
+     * Java types, imported into JavaScript scripts (Java.type() is supported both by Nashorn and GraalJS)
+     */
+    public static final String JS_TYPES = "RuleSet 				= Java.type('ru.iris.events.types.RuleSet'),\n"
+            + "Rule 					= Java.type('ru.iris.events.types.Rule'),\n"
+            + "ChangedEventTrigger 	= Java.type('ru.iris.events.types.ChangedEventTrigger'),\n"
+            + "CommandEventTrigger 	= Java.type('ru.iris.events.types.CommandEventTrigger'),\n"
+            + "RunCommandTrigger 	= Java.type('ru.iris.events.types.RunCommandTrigger'),\n"
+            + "Event 				= Java.type('ru.iris.events.types.Event'),\n"
+            + "EventTrigger			= Java.type('ru.iris.events.types.EventTrigger'),\n"
+            + "ShutdownTrigger 		= Java.type('ru.iris.events.types.ShutdownTrigger'),\n"
+            + "StartupTrigger 		= Java.type('ru.iris.events.types.StartupTrigger'),\n"
+            + "TimerTrigger 			= Java.type('ru.iris.events.types.TimerTrigger'),\n"
+            + "TriggerType 			= Java.type('ru.iris.events.types.TriggerType'),\n"
+            + "URLEncoder 			= Java.type('java.net.URLEncoder'),\n"
+
+            // Devices
+            + "Device 			= Java.type('ru.iris.models.database.Device'),\n"
+            + "DeviceValue 			= Java.type('ru.iris.models.database.DeviceValue'),\n"
+            + "DeviceValueChange 			= Java.type('ru.iris.models.database.DeviceValueChange'),\n"
+            + "Zone			= Java.type('ru.iris.models.protocol.Zone'),\n"
+            + "SourceProtocol			= Java.type('ru.iris.models.protocol.enums.SourceProtocol'),\n"
+
+            //System
+            + "FileUtils 			= Java.type('org.apache.commons.io.FileUtils'),\n"
+            + "FilenameUtils			= Java.type('org.apache.commons.io.FilenameUtils'),\n"
+            + "File 					= Java.type('java.io.File'),\n"
+            + "engine				= 'javascript';\n";
+
+    private ScriptGlobals() {
+    }
+
+    public static Map<String, Object> create(DeviceRegistry registry, DeviceHelper deviceHelper,
+                                             SpeakHelper speakHelper, Script.ScriptLogger scriptLogger,
+                                             ScriptTimers timers) {
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("DeviceRegistry", registry);
+        globals.put("DeviceHelper", deviceHelper);
+        globals.put("SpeakHelper", speakHelper);
+        globals.put("log", scriptLogger);
+        globals.put("Timers", timers);
+        return globals;
+    }
+}
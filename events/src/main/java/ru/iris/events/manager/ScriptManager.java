@@ -1,10 +1,12 @@
 package ru.iris.events.manager;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
 import ru.iris.commons.config.ConfigLoader;
 import ru.iris.commons.helpers.DeviceHelper;
 import ru.iris.commons.helpers.SpeakHelper;
 import ru.iris.commons.registry.DeviceRegistry;
+import ru.iris.events.timer.TimerService;
 import ru.iris.events.types.*;
 
 import javax.script.ScriptEngineFactory;
@@ -12,25 +14,31 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class ScriptManager {
 
     private static ScriptManager instance;
-    private HashMap<String, Script> scripts = new HashMap<>();
+    private Map<String, Script> scripts = new ConcurrentHashMap<>();
     private HashMap<Rule, Script> ruleMap = new HashMap<>();
     private RuleTriggerManager triggerManager;
     private DeviceRegistry registry;
     private SpeakHelper speakHelper;
     private DeviceHelper deviceHelper;
+    private ScriptEngineProvider engineProvider;
+    private TimerService timerService;
+    private RuleStatsCollector statistics;
 
     public ScriptManager(RuleTriggerManager triggerManager, ConfigLoader config, DeviceRegistry itemRegistry,
-                         SpeakHelper speakHelper, DeviceHelper deviceHelper) {
+                         SpeakHelper speakHelper, DeviceHelper deviceHelper, TimerService timerService,
+                         RuleStatsCollector statistics) {
         this.triggerManager = triggerManager;
+        this.timerService = timerService;
+        this.statistics = statistics;
         this.speakHelper = speakHelper;
         this.deviceHelper = deviceHelper;
         instance = this;
@@ -39,19 +47,38 @@ public class ScriptManager {
             logger.info(f.getEngineName());
         }
 
+        this.engineProvider = createEngineProvider(config.get("scriptEngine"));
+        logger.info("Using script engine: {}", engineProvider.getName());
+
         this.setItemRegistry(itemRegistry);
         File folder = getFolder(config.get("scriptsDirectory"));
 
         if (folder.exists() && folder.isDirectory()) {
             loadScripts(folder);
 
-            Thread scriptUpdateWatcher = new Thread(new ScriptUpdateWatcher(this, folder));
+            String debounce = config.get("scriptReloadDebounceMs");
+            long debounceMs = debounce != null ? Long.parseLong(debounce) : 500L;
+
+            Thread scriptUpdateWatcher = new Thread(new ScriptUpdateWatcher(this, folder, debounceMs));
             scriptUpdateWatcher.start();
         } else {
             logger.warn("Script directory: scripts missing, no scripts will be added!");
         }
     }
 
+    private ScriptEngineProvider createEngineProvider(String name) {
+        // GraalJS is opt-in: on stock JDK 8 it runs interpreted only and is slower than Nashorn
+        if (GraalScriptEngineProvider.NAME.equalsIgnoreCase(name)) {
+            return new GraalScriptEngineProvider();
+        }
+
+        if (name != null && !NashornScriptEngineProvider.NAME.equalsIgnoreCase(name)) {
+            logger.warn("Unknown script engine: {}, using {}", name, NashornScriptEngineProvider.NAME);
+        }
+
+        return new NashornScriptEngineProvider();
+    }
+
     public static ScriptManager getInstance() {
         return instance;
     }
@@ -64,18 +91,10 @@ public class ScriptManager {
     }
 
     private Script loadScript(File file) {
-        Script script = null;
-        try {
-            //Filtering Directories and not usable Files
-            if (!file.isFile() || file.getName().startsWith(".") || getFileExtension(file) == null) {
-                return null;
-            }
-            script = new Script(file, registry, speakHelper, deviceHelper);
-            if (script.getEngine() == null) {
-                logger.warn("No Engine found for File: {}", file.getName());
-                return null;
-            } else {
-                logger.info("Engine found for File: {}", file.getName());
+        Script script = createScript(file);
+
+        if (script != null) {
+            synchronized (this) {
                 scripts.put(file.getName(), script);
                 List<Rule> newRules = script.getRules();
                 for (Rule rule : newRules) {
@@ -85,7 +104,25 @@ public class ScriptManager {
                 // add all rules to the needed triggers
                 triggerManager.addRuleModel(newRules);
             }
+        }
+
+        return script;
+    }
+
+    private Script createScript(File file) {
+        try {
+            //Filtering Directories and not usable Files
+            if (!file.isFile() || file.getName().startsWith(".") || getFileExtension(file) == null) {
+                return null;
+            }
+            Script script = new Script(file, engineProvider, registry, speakHelper, deviceHelper, timerService);
+            if (script.getEngine() == null) {
+                logger.warn("No Engine found for File: {}", file.getName());
+                return null;
+            }
 
+            logger.info("Engine found for File: {}", file.getName());
+            return script;
         } catch (NoSuchMethodException e) {
             logger.error("Script file misses mandatory function: getRules()", e);
         } catch (FileNotFoundException e) {
@@ -96,9 +133,105 @@ public class ScriptManager {
             logger.error("unknown exception", e);
         }
 
+        return null;
+    }
+
+    /**
+     * Reloads modified script. Nothing is done if script content is not changed. Rules of new script are
+     * matched with old ones by triggers: for matched rules only rule object is replaced, so their triggers
+     * and timers stay registered. Only added and removed rules are (un)registered in trigger manager.
+     * If new version can't be loaded, old one stays active.
+     *
+     * @param file modified script file
+     * @return loaded script or null, if script was not reloaded
+     */
+    private Script reloadScript(File file) {
+        Script old = scripts.get(file.getName());
+
+        if (old == null) {
+            return loadScript(file);
+        }
+
+        try {
+            String source = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+            if (Script.hash(source).equals(old.getHash())) {
+                logger.debug("Script {} is not changed, skipping", file.getName());
+                return null;
+            }
+        } catch (IOException e) {
+            logger.error("Can't read script {}", file.getName(), e);
+            return null;
+        }
+
+        Script script = createScript(file);
+
+        if (script == null) {
+            logger.warn("Script {} failed to reload, old version stays active", file.getName());
+            return null;
+        }
+
+        synchronized (this) {
+            Map<String, Deque<Rule>> oldRules = new HashMap<>();
+            for (Rule rule : old.getRules()) {
+                oldRules.computeIfAbsent(Script.getTriggerSignature(rule), k -> new ArrayDeque<>()).add(rule);
+            }
+
+            List<Rule> added = new ArrayList<>();
+            int kept = 0;
+
+            for (Rule rule : script.getRules()) {
+                ruleMap.put(rule, script);
+
+                Deque<Rule> candidates = oldRules.get(Script.getTriggerSignature(rule));
+                Rule previous = candidates != null ? candidates.poll() : null;
+
+                if (previous != null) {
+                    triggerManager.replaceRule(previous, rule);
+                    ruleMap.remove(previous);
+                    kept++;
+                } else {
+                    added.add(rule);
+                }
+            }
+
+            List<Rule> removed = new ArrayList<>();
+            for (Deque<Rule> rules : oldRules.values()) {
+                removed.addAll(rules);
+            }
+
+            triggerManager.removeRuleModel(removed);
+            for (Rule rule : removed) {
+                ruleMap.remove(rule);
+            }
+            triggerManager.addRuleModel(added);
+
+            scripts.put(file.getName(), script);
+            clearStatistics(file.getName());
+            logger.info("Script {} reloaded: {} rules kept, {} added, {} removed", file.getName(), kept, added.size(), removed.size());
+        }
+
+        old.close();
         return script;
     }
 
+    public boolean isLoaded(String scriptName) {
+        return scripts.containsKey(scriptName);
+    }
+
+    private void clearStatistics(String scriptName) {
+        if (statistics != null) {
+            statistics.removeScript(scriptName);
+        }
+    }
+
+    public ScriptEngineProvider getEngineProvider() {
+        return engineProvider;
+    }
+
+    public RuleTriggerManager getTriggerManager() {
+        return triggerManager;
+    }
+
     public Collection<Rule> getAllRules() {
         return ruleMap.keySet();
     }
@@ -113,13 +246,13 @@ public class ScriptManager {
 
     public synchronized void executeRules(Rule[] rules, Event event) {
         for (Rule rule : rules) {
-            ruleMap.get(rule).executeRule(rule, event);
+            ruleMap.get(rule).executeRule(rule, event, statistics);
         }
     }
 
     public synchronized void executeRules(Iterable<Rule> rules, Event event) {
         for (Rule rule : rules) {
-            ruleMap.get(rule).executeRule(rule, event);
+            ruleMap.get(rule).executeRule(rule, event, statistics);
         }
     }
 
@@ -158,8 +291,7 @@ public class ScriptManager {
         }
 
         for (File scriptFile : modifiedScripts) {
-            removeScript(scriptFile.getName());
-            Script script = loadScript(scriptFile);
+            Script script = reloadScript(scriptFile);
             runStartupRules(script);
         }
     }
@@ -181,8 +313,14 @@ public class ScriptManager {
     }
 
     private void removeScript(String scriptName) {
-        if (scripts.containsKey(scriptName)) {
-            Script script = scripts.remove(scriptName);
+        Script script;
+
+        synchronized (this) {
+            script = scripts.remove(scriptName);
+
+            if (script == null) {
+                return;
+            }
 
             List<Rule> allRules = script.getRules();
 
@@ -190,7 +328,10 @@ public class ScriptManager {
             for (Rule rule : allRules) {
                 ruleMap.remove(rule);
             }
+            clearStatistics(scriptName);
         }
+
+        script.close();
     }
 
 }
@@ -0,0 +1,66 @@
+package ru.iris.events.manager;
+
+import ru.iris.events.timer.TimerHandle;
+import ru.iris.events.timer.TimerService;
+
+import java.text.ParseException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timers global of a script. Callbacks run with the same threading guarantees as script rules.
+ * All timers, created by script, are cancelled when script is removed or reloaded.
+ */
+public class ScriptTimers {
+
+    private final TimerService service;
+    private final Script script;
+    private final Set<TimerHandle> handles = ConcurrentHashMap.newKeySet();
+
+    public ScriptTimers(TimerService service, Script script) {
+        this.service = service;
+        this.script = script;
+    }
+
+    public TimerHandle once(long delayMs, Runnable task) {
+        return track(service.once(delayMs, wrap(task)));
+    }
+
+    public TimerHandle cron(String expression, Runnable task) throws ParseException {
+        return track(service.cron(expression, wrap(task)));
+    }
+
+    /**
+     * Debounce keys are prefixed with script name, so scripts don't cancel each other's timers.
+     */
+    public TimerHandle debounce(String key, long delayMs, Runnable task) {
+        return track(service.debounce(script.getFileName() + "#" + key, delayMs, wrap(task)));
+    }
+
+    public boolean cancel(TimerHandle handle) {
+        if (handle == null) {
+            return false;
+        }
+
+        handles.remove(handle);
+        return handle.cancel();
+    }
+
+    void cancelAll() {
+        for (TimerHandle handle : handles) {
+            handle.cancel();
+        }
+        handles.clear();
+    }
+
+    private TimerHandle track(TimerHandle handle) {
+        // drop finished and cancelled ones, so long running scripts don't leak handles
+        handles.removeIf(h -> h.hasTerminated() || h.isCancelled());
+        handles.add(handle);
+        return handle;
+    }
+
+    private Runnable wrap(Runnable task) {
+        return () -> script.run(task);
+    }
+}
@@ -5,22 +5,30 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.file.StandardWatchEventKinds.*;
 
+/**
+ * Watches scripts directory. Events are debounced: changes are passed to {@link ScriptManager}
+ * only when no new events for a file came in debounce window, so editor save sequences
+ * (truncate, write, rename, touch) produce a single reload.
+ */
 @Slf4j
 public class ScriptUpdateWatcher implements Runnable {
 
     private ScriptManager scriptManager;
     private File folder;
+    private long debounceMs;
 
-    private HashMap<File, Long> lastUpdate = new HashMap<>();
+    // file -> time of last event, waiting for quiet period
+    private Map<File, Long> pending = new LinkedHashMap<>();
 
-    public ScriptUpdateWatcher(ScriptManager scriptManager, File folder) {
+    public ScriptUpdateWatcher(ScriptManager scriptManager, File folder, long debounceMs) {
         this.scriptManager = scriptManager;
         this.folder = folder;
+        this.debounceMs = debounceMs;
     }
 
     @Override
@@ -35,59 +43,43 @@ public class ScriptUpdateWatcher implements Runnable {
                 WatchKey key;
 
                 try {
-                    key = watcher.take();
+                    if (pending.isEmpty()) {
+                        key = watcher.take();
+                    } else {
+                        key = watcher.poll(debounceMs, TimeUnit.MILLISECONDS);
+                    }
                 } catch (InterruptedException ex) {
                     logger.info("ScriptUpdateWatcher interrupted");
                     return;
                 }
 
-                long currentTime = System.currentTimeMillis();
-
-                ArrayList<File> removedScripts = new ArrayList<>();
-                ArrayList<File> addedScripts = new ArrayList<>();
-                ArrayList<File> modifiedScripts = new ArrayList<>();
-
-                for (WatchEvent<?> event : key.pollEvents()) {
+                if (key != null) {
+                    long currentTime = System.currentTimeMillis();
 
-                    @SuppressWarnings("unchecked")
-                    WatchEvent<Path> ev = (WatchEvent<Path>) event;
-                    WatchEvent.Kind<Path> kind = ev.kind();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            continue;
+                        }
 
-                    Path fileName = ev.context();
+                        @SuppressWarnings("unchecked")
+                        WatchEvent<Path> ev = (WatchEvent<Path>) event;
+                        File f = new File(folder, ev.context().toString());
 
-                    File f = new File(folder, fileName.toString());
+                        //skip files ending with ".script" (as these files are definitely no known scripting language)
+                        if (f.getName().endsWith(".script")) {
+                            continue;
+                        }
 
-                    //skip files ending with ".script" (as these files are definitely no known scripting language)
-                    if (f.getName().endsWith(".script")) {
-                        continue;
+                        logger.debug(ev.kind().name() + ": " + f.getName());
+                        pending.put(f, currentTime);
                     }
 
-                    Long lastTime = lastUpdate.get(f);
-
-                    if (lastTime == null || currentTime - lastTime > 5000) {
-                        logger.debug(kind.name() + ": " + fileName);
-                        lastUpdate.put(f, currentTime);
-                        if (kind == ENTRY_CREATE) {
-                            addedScripts.add(f);
-                        } else if (kind == ENTRY_DELETE) {
-                            removedScripts.add(f);
-                        } else if (kind == ENTRY_MODIFY) {
-                            modifiedScripts.add(f);
-                        }
+                    if (!key.reset()) {
+                        break;
                     }
                 }
 
-                try {
-                    scriptManager.scriptsChanged(addedScripts, removedScripts, modifiedScripts);
-                } catch (Exception ex) {
-                    logger.error("Error during script change processing", ex);
-                }
-
-                boolean valid = key.reset();
-                if (!valid) {
-                    break;
-                }
-
+                flush(System.currentTimeMillis());
             }
 
         } catch (IOException e1) {
@@ -95,4 +87,47 @@ public class ScriptUpdateWatcher implements Runnable {
         }
     }
 
+    /**
+     * Passes files, which were quiet for debounce window, to script manager. Kind of change is
+     * decided by file state at this moment, not by sequence of watch events.
+     */
+    private void flush(long currentTime) {
+        List<File> removedScripts = new ArrayList<>();
+        List<File> addedScripts = new ArrayList<>();
+        List<File> modifiedScripts = new ArrayList<>();
+
+        Iterator<Map.Entry<File, Long>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<File, Long> entry = it.next();
+
+            if (currentTime - entry.getValue() < debounceMs) {
+                continue;
+            }
+
+            it.remove();
+            File f = entry.getKey();
+            boolean loaded = scriptManager.isLoaded(f.getName());
+
+            if (!f.exists()) {
+                if (loaded) {
+                    removedScripts.add(f);
+                }
+            } else if (loaded) {
+                modifiedScripts.add(f);
+            } else {
+                addedScripts.add(f);
+            }
+        }
+
+        if (removedScripts.isEmpty() && addedScripts.isEmpty() && modifiedScripts.isEmpty()) {
+            return;
+        }
+
+        try {
+            scriptManager.scriptsChanged(addedScripts, removedScripts, modifiedScripts);
+        } catch (Exception ex) {
+            logger.error("Error during script change processing", ex);
+        }
+    }
+
 }
@@ -1,30 +1,54 @@
 package ru.iris.events.manager;
 
 import lombok.extern.slf4j.Slf4j;
-import org.quartz.Job;
-import org.quartz.JobExecutionContext;
-import org.quartz.JobExecutionException;
+import ru.iris.events.timer.TimerHandle;
 import ru.iris.events.types.Event;
 import ru.iris.events.types.Rule;
 import ru.iris.events.types.TriggerType;
 
 @Slf4j
-public class TimeTriggerJob implements Job {
+public class TimeTriggerJob implements Runnable {
 
-    private Rule rule;
+    // rule object is replaced on script reload, job stays scheduled
+    private volatile Rule rule;
+    private TimerHandle handle;
 
-    @Override
-    public void execute(JobExecutionContext context) throws JobExecutionException {
-        String scriptName = ScriptManager.getInstance().getScript(rule).getFileName();
-        logger.info("TimeTrigger for rule: " + rule + ", scriptName: " + scriptName);
+    public TimeTriggerJob(Rule rule) {
+        this.rule = rule;
+    }
 
+    @Override
+    public void run() {
+        Rule current = rule;
         ScriptManager manager = ScriptManager.getInstance();
 
-        manager.executeRules(new Rule[]{rule}, new Event(TriggerType.TIMER, null, null));
+        Script script = manager.getScript(current);
+        if (script == null) {
+            logger.debug("Rule {} is removed, skip timer", current);
+            return;
+        }
+
+        logger.info("TimeTrigger for rule: " + current + ", scriptName: " + script.getFileName());
+
+        manager.executeRules(new Rule[]{current}, new Event(TriggerType.TIMER, null, null));
     }
 
     public void setRule(Rule rule) {
         this.rule = rule;
     }
 
+    public void setHandle(TimerHandle handle) {
+        this.handle = handle;
+    }
+
+    public void cancel() {
+        if (handle != null) {
+            handle.cancel();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimeTriggerJob{" + rule + ", " + handle + "}";
+    }
 }
@@ -0,0 +1,344 @@
+package ru.iris.events.timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel. Timeouts are put in a lock-free queue and moved to a wheel bucket by single worker
+ * thread on the next tick, so scheduling and cancellation are O(1). Timeouts longer than one wheel turn
+ * keep count of remaining rounds. Expired tasks are passed to executor, so worker thread is never
+ * blocked by slow tasks.
+ * <p>
+ * Precision is one tick: task is never run earlier than its deadline, but may be run up to one tick later.
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+    private static final int STATE_INIT = 0;
+    private static final int STATE_STARTED = 1;
+    private static final int STATE_STOPPED = 2;
+
+    // protects worker from starvation when timeouts are added faster, than they are processed
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor executor;
+    private final Thread worker;
+    private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private volatile long startTime;
+    private long tick;
+
+    /**
+     * @param tick          tick duration
+     * @param unit          tick duration unit
+     * @param ticksPerWheel wheel size, rounded up to power of two
+     * @param executor      executor for expired tasks
+     */
+    public HashedWheelTimer(long tick, TimeUnit unit, int ticksPerWheel, Executor executor) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("tick must be greater than 0: " + tick);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel must be in range (0, 2^30]: " + ticksPerWheel);
+        }
+
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+
+        this.mask = size - 1;
+        this.tickNanos = unit.toNanos(tick);
+        this.executor = executor;
+        this.worker = new Thread(this::work, "wheel-timer");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Schedules task for single execution. Worker thread is started on first call.
+     *
+     * @param task  task to run
+     * @param delay delay
+     * @param unit  delay unit
+     * @return timeout, which can be cancelled
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+
+        start();
+
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pending.add(timeout);
+
+        return timeout;
+    }
+
+    /**
+     * Stops worker thread. Not expired timeouts are dropped.
+     */
+    public void stop() {
+        if (state.getAndSet(STATE_STOPPED) == STATE_STARTED) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * @return number of scheduled, not yet expired timeouts (approximate)
+     */
+    public int size() {
+        int size = pending.size();
+        for (Bucket bucket : wheel) {
+            size += bucket.size;
+        }
+        return size;
+    }
+
+    private void start() {
+        switch (state.get()) {
+            case STATE_INIT:
+                if (state.compareAndSet(STATE_INIT, STATE_STARTED)) {
+                    startTime = System.nanoTime();
+                    worker.start();
+                }
+                break;
+            case STATE_STARTED:
+                break;
+            default:
+                throw new IllegalStateException("Timer is stopped");
+        }
+
+        // startTime is set by thread, which won CAS
+        while (startTime == 0) {
+            Thread.yield();
+        }
+    }
+
+    private void work() {
+        logger.debug("Wheel timer started: {} buckets, tick {} ms", wheel.length, TimeUnit.NANOSECONDS.toMillis(tickNanos));
+
+        while (state.get() == STATE_STARTED) {
+            long deadline = waitForNextTick();
+
+            if (deadline < 0) {
+                break;
+            }
+
+            Bucket bucket = wheel[(int) (tick & mask)];
+            removeCancelled();
+            transferPending();
+            bucket.expire(deadline);
+            tick++;
+        }
+
+        logger.debug("Wheel timer stopped");
+    }
+
+    /**
+     * @return current time relative to start or -1 if timer was stopped while waiting
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+
+        while (true) {
+            long current = System.nanoTime() - startTime;
+            long sleepMs = (deadline - current + 999_999) / 1_000_000;
+
+            if (sleepMs <= 0) {
+                return current;
+            }
+
+            try {
+                Thread.sleep(sleepMs);
+            } catch (InterruptedException e) {
+                if (state.get() == STATE_STOPPED) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = pending.poll();
+
+            if (timeout == null) {
+                break;
+            }
+
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                continue;
+            }
+
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+
+            // already expired timeouts go to the current bucket
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void run(Timeout timeout) {
+        try {
+            executor.execute(timeout.task);
+        } catch (Exception e) {
+            logger.error("Can't run timer task", e);
+        }
+    }
+
+    /**
+     * Handle of scheduled task.
+     */
+    public static final class Timeout {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+
+        // accessed by worker thread only
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if task was cancelled by this call, false if it's already expired or cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+
+            // removed from bucket by worker on next tick
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(INIT, EXPIRED)) {
+                timer.run(this);
+            }
+        }
+    }
+
+    /**
+     * Doubly-linked list of timeouts, accessed by worker thread only.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+        private volatile int size;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+
+            size++;
+        }
+
+        private void expire(long deadline) {
+            Timeout timeout = head;
+
+            while (timeout != null) {
+                Timeout next = timeout.next;
+
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+
+                    if (timeout.deadline <= deadline) {
+                        timeout.expire();
+                    } else {
+                        // can't happen: timeout was put in wrong bucket
+                        throw new IllegalStateException("timeout.deadline (" + timeout.deadline + ") > deadline (" + deadline + ")");
+                    }
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+
+            Timeout next = timeout.next;
+
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.iris.events.timer;
+
+/**
+ * Handle of timer, scheduled by {@link TimerService}. For repeating (cron) timers handle stays the same
+ * between executions.
+ */
+public class TimerHandle {
+
+    private final String description;
+    private volatile HashedWheelTimer.Timeout timeout;
+    private volatile boolean cancelled = false;
+    private volatile boolean terminated = false;
+    private volatile boolean running = false;
+
+    TimerHandle(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Cancels timer. Running task is not interrupted.
+     *
+     * @return true if timer was active
+     */
+    public boolean cancel() {
+        if (cancelled || terminated) {
+            return false;
+        }
+
+        cancelled = true;
+        HashedWheelTimer.Timeout current = timeout;
+
+        return current == null || current.cancel() || running;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if one-shot timer task was executed
+     */
+    public boolean hasTerminated() {
+        return terminated;
+    }
+
+    /**
+     * @return true if timer task is executing now
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    void setTimeout(HashedWheelTimer.Timeout timeout) {
+        this.timeout = timeout;
+
+        // cancel() may be called concurrently with rescheduling
+        if (cancelled) {
+            timeout.cancel();
+        }
+    }
+
+    void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    void setTerminated(boolean terminated) {
+        this.terminated = terminated;
+    }
+
+    void reset() {
+        this.cancelled = false;
+        this.terminated = false;
+    }
+
+    @Override
+    public String toString() {
+        return "TimerHandle{" + description + (cancelled ? ", cancelled" : "") + (terminated ? ", terminated" : "") + "}";
+    }
+}
@@ -0,0 +1,179 @@
+package ru.iris.events.timer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.CronExpression;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timers for rules and scripts: one-shot, cron, debounce. All timers share one {@link HashedWheelTimer},
+ * tasks are executed by a shared pool, so there is no thread per timer.
+ * <p>
+ * Cron expressions have Quartz syntax (seconds field, '?', 'L', 'W', '#').
+ */
+@Component
+@Slf4j
+public class TimerService {
+
+    private static final long TICK_MS = 100L;
+    private static final int WHEEL_SIZE = 512;
+
+    private final ExecutorService executor;
+    private final HashedWheelTimer wheel;
+    private final Map<String, TimerHandle> debounced = new ConcurrentHashMap<>();
+
+    public TimerService() {
+        AtomicInteger counter = new AtomicInteger();
+
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "timer-task-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        wheel = new HashedWheelTimer(TICK_MS, TimeUnit.MILLISECONDS, WHEEL_SIZE, executor);
+    }
+
+    /**
+     * Runs task once after delay.
+     *
+     * @param delayMs delay in milliseconds
+     * @param task    task to run
+     * @return timer handle
+     */
+    public TimerHandle once(long delayMs, Runnable task) {
+        TimerHandle handle = new TimerHandle("once " + delayMs + " ms");
+        scheduleOnce(handle, delayMs, task);
+        return handle;
+    }
+
+    /**
+     * Runs task once at given time.
+     *
+     * @param time time to run at
+     * @param task task to run
+     * @return timer handle
+     */
+    public TimerHandle at(Date time, Runnable task) {
+        return once(time.getTime() - System.currentTimeMillis(), task);
+    }
+
+    /**
+     * Reschedules one-shot timer, even if it's already executed or cancelled.
+     *
+     * @param handle  timer handle, returned by once() or at()
+     * @param delayMs new delay in milliseconds
+     * @param task    task to run
+     */
+    public void reschedule(TimerHandle handle, long delayMs, Runnable task) {
+        handle.cancel();
+        handle.reset();
+        scheduleOnce(handle, delayMs, task);
+    }
+
+    /**
+     * Runs task on each time, matched by cron expression.
+     *
+     * @param expression Quartz cron expression
+     * @param task       task to run
+     * @return timer handle
+     * @throws ParseException if expression is invalid
+     */
+    public TimerHandle cron(String expression, Runnable task) throws ParseException {
+        CronExpression cron = new CronExpression(expression);
+        TimerHandle handle = new TimerHandle("cron " + expression);
+
+        scheduleCron(handle, cron, task, new Date());
+        return handle;
+    }
+
+    /**
+     * Runs task after delay. If debounce with the same key is called again before task was run,
+     * previous task is cancelled, so only the last one is executed.
+     *
+     * @param key     debounce key
+     * @param delayMs quiet period in milliseconds
+     * @param task    task to run
+     * @return timer handle
+     */
+    public TimerHandle debounce(String key, long delayMs, Runnable task) {
+        TimerHandle handle = new TimerHandle("debounce " + key);
+        TimerHandle previous = debounced.put(key, handle);
+
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        scheduleOnce(handle, delayMs, () -> {
+            debounced.remove(key, handle);
+            task.run();
+        });
+
+        return handle;
+    }
+
+    /**
+     * @param handle timer to cancel, may be null
+     * @return true if timer was active
+     */
+    public boolean cancel(TimerHandle handle) {
+        return handle != null && handle.cancel();
+    }
+
+    /**
+     * @return number of scheduled timers
+     */
+    public int size() {
+        return wheel.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        wheel.stop();
+        executor.shutdown();
+    }
+
+    private void scheduleOnce(TimerHandle handle, long delayMs, Runnable task) {
+        handle.setTimeout(wheel.newTimeout(() -> {
+            execute(handle, task);
+            handle.setTerminated(true);
+        }, delayMs, TimeUnit.MILLISECONDS));
+    }
+
+    private void scheduleCron(TimerHandle handle, CronExpression cron, Runnable task, Date after) {
+        Date next = cron.getNextValidTimeAfter(after);
+
+        if (next == null) {
+            logger.debug("Cron {} has no more fire times", cron.getCronExpression());
+            handle.setTerminated(true);
+            return;
+        }
+
+        handle.setTimeout(wheel.newTimeout(() -> {
+            if (handle.isCancelled()) {
+                return;
+            }
+
+            execute(handle, task);
+
+            // wall clock may be a bit behind the fire time, don't fire the same time twice
+            scheduleCron(handle, cron, task, new Date(Math.max(System.currentTimeMillis(), next.getTime())));
+        }, next.getTime() - System.currentTimeMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    private void execute(TimerHandle handle, Runnable task) {
+        handle.setRunning(true);
+        try {
+            task.run();
+        } catch (Exception e) {
+            logger.error("Error while executing timer {}", handle, e);
+        } finally {
+            handle.setRunning(false);
+        }
+    }
+}
@@ -1,6 +1,3 @@
-var Timer = Java.type("java.util.Timer");
-var timer = new Timer("turnOffLaterTimer", true);
-
 var lock = false;
 
 var autoOff = new Rule()
@@ -24,12 +21,12 @@ var autoOff = new Rule()
             log.info("\nLight turned ON on channel " + event.getDevice().getChannel() + ", timer setted\n");
 
             // turn off past 20 minutes
-            timer.schedule(function () {
+            Timers.debounce("off-" + event.getDevice().getChannel(), 1200000, function () {
                 if (lock) {
                     log.info("\nTimes up. Turning off channel " + event.getDevice().getChannel() + "!\n");
                     DeviceHelper.off(event.getDevice().getSource(), event.getDevice().getChannel())
                 }
-            }, 1200000);
+            });
         }
         else if (current.getCurrentValue() === 255 && lock) {
             log.info("\nTimer already set!\n");
@@ -0,0 +1,111 @@
+package ru.iris.events;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import ru.iris.events.manager.GraalScriptEngineProvider;
+import ru.iris.events.manager.NashornScriptEngineProvider;
+import ru.iris.events.manager.Script;
+import ru.iris.events.manager.ScriptEngineProvider;
+import ru.iris.events.manager.ScriptGlobals;
+import ru.iris.events.types.Event;
+import ru.iris.events.types.Rule;
+import ru.iris.events.types.TriggerType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sequential rule execution throughput of script engines, reported side by side. Engine, missing in current JDK,
+ * is skipped.
+ * <p>
+ * Not matched by surefire, run explicitly: {@code mvn -pl events test -Dtest=RuleThroughputBenchmark}
+ */
+@Slf4j
+public class RuleThroughputBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+    private static final int ROUNDS = 5;
+
+    private static final String SCRIPT = "var counter = 0;\n"
+            + "var rule = new Rule() {\n"
+            + "    getEventTrigger: function() {\n"
+            + "        return [ new CommandEventTrigger('benchmark') ]\n"
+            + "    },\n"
+            + "    execute: function(event) {\n"
+            + "        counter += event.getTopic().length;\n"
+            + "        if (counter % 100000 == 0) log.debug('counter: ' + counter);\n"
+            + "    }\n"
+            + "};\n"
+            + "function getRules() {\n"
+            + "    return new RuleSet([ rule ]);\n"
+            + "}\n";
+
+    @Test
+    public void compare() throws Exception {
+        List<ScriptEngineProvider> providers = new ArrayList<>();
+        providers.add(new NashornScriptEngineProvider());
+        providers.add(new GraalScriptEngineProvider());
+
+        Map<String, Long> results = new LinkedHashMap<>();
+
+        for (ScriptEngineProvider provider : providers) {
+            if (!provider.supports("js")) {
+                logger.info("{} is not available in this JDK, skipped", provider.getName());
+                provider.close();
+                continue;
+            }
+
+            results.put(provider.getName(), run(provider));
+        }
+
+        Assert.assertFalse("No script engine available", results.isEmpty());
+
+        StringBuilder report = new StringBuilder("Rule throughput, ")
+                .append(ITERATIONS).append(" sequential executions, best of ").append(ROUNDS).append(" rounds:");
+        for (Map.Entry<String, Long> result : results.entrySet()) {
+            report.append(String.format("%n  %-10s %,12d rules/s", result.getKey(), result.getValue()));
+        }
+
+        logger.info(report.toString());
+    }
+
+    /**
+     * @return best rules per second
+     */
+    private long run(ScriptEngineProvider provider) throws Exception {
+        try {
+            ScriptEngineProvider.LoadedScript script = provider.load("benchmark.js", SCRIPT,
+                    ScriptGlobals.create(null, null, null, new Script.ScriptLogger(logger, "benchmark.js"), null));
+
+            Assert.assertEquals(1, script.getRules().size());
+
+            Rule rule = script.getRules().get(0);
+            Event event = new Event(TriggerType.COMMAND, null, "benchmark");
+
+            for (int i = 0; i < WARMUP; i++) {
+                script.execute(rule, event);
+            }
+
+            long best = 0;
+
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    script.execute(rule, event);
+                }
+                long elapsed = System.nanoTime() - start;
+
+                best = Math.max(best, ITERATIONS * 1_000_000_000L / Math.max(elapsed, 1));
+            }
+
+            script.close();
+            return best;
+        } finally {
+            provider.close();
+        }
+    }
+}
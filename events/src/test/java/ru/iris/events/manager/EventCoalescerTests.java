@@ -0,0 +1,62 @@
+package ru.iris.events.manager;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ru.iris.commons.registry.DeviceRegistry;
+import ru.iris.events.timer.TimerService;
+import ru.iris.events.types.Event;
+import ru.iris.events.types.Rule;
+import ru.iris.events.types.TriggerType;
+import ru.iris.models.bus.devices.DeviceChangeEvent;
+import ru.iris.models.database.Device;
+import ru.iris.models.protocol.enums.SourceProtocol;
+import ru.iris.models.protocol.enums.StandartDeviceValueLabel;
+import ru.iris.models.protocol.enums.ValueType;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventCoalescerTests {
+
+    private final TimerService timerService = new TimerService();
+
+    @After
+    public void tearDown() {
+        timerService.stop();
+    }
+
+    @Test
+    public void zwaveLevelBurstRunsRulesOnce() {
+        RuleTriggerManager triggerManager = mock(RuleTriggerManager.class);
+        ScriptManager scriptManager = mock(ScriptManager.class);
+        DeviceRegistry registry = mock(DeviceRegistry.class);
+        Device device = new Device();
+
+        when(registry.getDevice(SourceProtocol.ZWAVE, "5")).thenReturn(device);
+        when(triggerManager.getRules(TriggerType.CHANGE, device)).thenReturn(Collections.<Rule>emptyList());
+
+        EventCoalescer coalescer = new EventCoalescer(triggerManager, scriptManager, registry, timerService, 200L, 1_000L);
+
+        // dimmer change, as Z-Wave controller publishes it: OpenZWave value label and standard level label
+        submit(coalescer, new DeviceChangeEvent("5", SourceProtocol.ZWAVE, "Level", "99", ValueType.BYTE),
+                "event.device.zwave.value.changed");
+        submit(coalescer, new DeviceChangeEvent("5", SourceProtocol.ZWAVE, StandartDeviceValueLabel.LEVEL.getName(),
+                "99", ValueType.BYTE), "event.device.level");
+
+        verify(scriptManager, timeout(2_000)).executeRules(any(Iterable.class), any(Event.class));
+        verify(scriptManager, after(500).times(1)).executeRules(any(Iterable.class), any(Event.class));
+        Assert.assertEquals(2, coalescer.getReceived());
+        Assert.assertEquals(1, coalescer.getFlushed());
+    }
+
+    private static void submit(EventCoalescer coalescer, DeviceChangeEvent event, String topic) {
+        coalescer.submit(TriggerType.CHANGE, event.getProtocol(), event.getChannel(), event.getEventLabel(), topic);
+    }
+}
@@ -0,0 +1,153 @@
+package ru.iris.events.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ru.iris.events.timer.TimerService;
+import ru.iris.events.types.Event;
+import ru.iris.events.types.EventTrigger;
+import ru.iris.events.types.Rule;
+import ru.iris.events.types.TriggerType;
+import ru.iris.models.database.Device;
+import ru.iris.models.protocol.enums.SourceProtocol;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rules of one script are triggered concurrently from several threads, as bus, timer and HTTP threads do.
+ * Trigger lookup, rule names and execution must not fail, and script state must stay consistent.
+ * Engine, missing in current JDK, is skipped.
+ */
+@Slf4j
+public class ScriptEngineConcurrencyTests {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 2_000;
+
+    private static final String SCRIPT = "var counter = 0;\n"
+            + "var rule = new Rule() {\n"
+            + "    getEventTrigger: function() {\n"
+            + "        return [\n"
+            + "            new ChangedEventTrigger('noolite/channel/1'),\n"
+            + "            new EventTrigger() {\n"
+            + "                getItem: function() { return 'custom'; },\n"
+            + "                evaluate: function(param, type) { return type == TriggerType.RUN; }\n"
+            + "            }\n"
+            + "        ];\n"
+            + "    },\n"
+            + "    execute: function(event) {\n"
+            + "        if (event.getTopic() == 'check') {\n"
+            + "            result.set(counter);\n"
+            + "            return;\n"
+            + "        }\n"
+            + "        counter++;\n"
+            + "        hits.incrementAndGet();\n"
+            + "    }\n"
+            + "};\n"
+            + "function getRules() {\n"
+            + "    return new RuleSet([ rule ]);\n"
+            + "}\n";
+
+    private final TimerService timerService = new TimerService();
+
+    @After
+    public void tearDown() {
+        timerService.stop();
+    }
+
+    @Test
+    public void nashorn() throws Exception {
+        ScriptEngineProvider provider = new NashornScriptEngineProvider();
+
+        if (!provider.supports("js")) {
+            logger.info("Nashorn is not available in this JDK, skipped");
+            return;
+        }
+
+        // Nashorn doesn't serialize rules, so only Java side counter is exact
+        run(provider, false);
+    }
+
+    @Test
+    public void graal() throws Exception {
+        run(new GraalScriptEngineProvider(), true);
+    }
+
+    private void run(ScriptEngineProvider provider, boolean serialized) throws Exception {
+        AtomicLong hits = new AtomicLong();
+        AtomicLong result = new AtomicLong(-1);
+
+        Map<String, Object> globals = ScriptGlobals.create(null, null, null,
+                new Script.ScriptLogger(logger, "concurrency.js"), null);
+        globals.put("hits", hits);
+        globals.put("result", result);
+
+        try {
+            ScriptEngineProvider.LoadedScript script = provider.load("concurrency.js", SCRIPT, globals);
+            Assert.assertEquals(1, script.getRules().size());
+
+            RuleTriggerManager triggerManager = new RuleTriggerManager(timerService);
+            triggerManager.addRuleModel(script.getRules());
+
+            Rule rule = script.getRules().get(0);
+            Device device = new Device();
+            device.setSource(SourceProtocol.NOOLITE);
+            device.setChannel("1");
+
+            Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(THREADS);
+
+            for (int t = 0; t < THREADS; t++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            for (Rule matched : triggerManager.getRules(TriggerType.CHANGE, device)) {
+                                Assert.assertNotNull(String.valueOf(matched));
+                                script.execute(matched, new Event(TriggerType.CHANGE, device, "change"));
+                            }
+
+                            for (EventTrigger trigger : rule.getEventTrigger()) {
+                                trigger.getItem();
+                                trigger.evaluate("custom", TriggerType.RUN);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }, "rule-" + t);
+
+                thread.start();
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+
+            logger.info("{}: {} rules from {} threads in {} ms", provider.getName(), THREADS * ITERATIONS, THREADS,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+
+            Assert.assertTrue("Errors: " + errors, errors.isEmpty());
+            Assert.assertEquals(THREADS * ITERATIONS, hits.get());
+
+            if (serialized) {
+                script.execute(rule, new Event(TriggerType.RUN, null, "check"));
+                Assert.assertEquals(THREADS * ITERATIONS, result.get());
+            }
+
+            script.close();
+        } finally {
+            provider.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.iris.events.timer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimerServiceTests {
+
+    private TimerService service = new TimerService();
+
+    @After
+    public void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    public void once() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+
+        TimerHandle handle = service.once(300, latch::countDown);
+
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 300);
+
+        Thread.sleep(50);
+        Assert.assertTrue(handle.hasTerminated());
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+
+        TimerHandle handle = service.once(200, counter::incrementAndGet);
+        Assert.assertTrue(service.cancel(handle));
+        Assert.assertFalse(service.cancel(handle));
+
+        Thread.sleep(500);
+        Assert.assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void debounce() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            service.debounce("key", 200, counter::incrementAndGet);
+            Thread.sleep(20);
+        }
+
+        Thread.sleep(600);
+        Assert.assertEquals(1, counter.get());
+    }
+
+    @Test
+    public void cron() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+
+        TimerHandle handle = service.cron("* * * * * ?", latch::countDown);
+
+        Assert.assertTrue(latch.await(4, TimeUnit.SECONDS));
+        handle.cancel();
+    }
+}
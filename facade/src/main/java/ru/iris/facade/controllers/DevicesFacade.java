@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.bus.Event;
 import reactor.bus.EventBus;
+import ru.iris.commons.health.FleetHealthService;
 import ru.iris.models.bus.devices.DeviceCommandEvent;
 import ru.iris.models.database.Device;
 import ru.iris.models.protocol.enums.EventLabel;
@@ -18,6 +19,7 @@ import ru.iris.models.web.DeviceNamingRequest;
 import ru.iris.models.web.DeviceSetLevelRequest;
 import ru.iris.models.status.ErrorStatus;
 import ru.iris.models.status.OkStatus;
+import ru.iris.models.web.dto.DeviceHealthDTO;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,6 +36,9 @@ public class DevicesFacade {
     @Autowired
     private EventBus r;
 
+    @Autowired
+    private FleetHealthService health;
+
     /**
      * Return all devices (by source) or device on specified channel and source
      *
@@ -58,6 +63,17 @@ public class DevicesFacade {
         return ret;
     }
 
+    /**
+     * Health of all devices, seen since start: last seen time, report cadence, voltage trend
+     * and estimated days to empty battery
+     *
+     * @return list of device health, offline devices and lowest batteries first
+     */
+    @RequestMapping(value = "/api/device/health", method = RequestMethod.GET)
+    public List<DeviceHealthDTO> getDevicesHealth() {
+        return health.getFleetHealth();
+    }
+
     /**
      * Set on/off/level on device by source and channel
      *
@@ -9,7 +9,9 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.bus.Event;
 import reactor.bus.EventBus;
+import ru.iris.commons.service.RuleStatistics;
 import ru.iris.models.bus.event.CommandEvent;
+import ru.iris.models.status.ErrorStatus;
 import ru.iris.models.status.OkStatus;
 import ru.iris.models.web.CommandRequest;
 
@@ -21,6 +23,10 @@ public class EventsFacade {
     @Autowired
     private EventBus r;
 
+    // absent if events service is not enabled
+    @Autowired(required = false)
+    private RuleStatistics statistics;
+
     @RequestMapping(value = "/api/command", method = RequestMethod.POST)
     public Object sayAtZone(@RequestBody CommandRequest request) {
         r.notify("command.run", Event.wrap(
@@ -29,4 +35,28 @@ public class EventsFacade {
 
         return new OkStatus("Sent");
     }
+
+    /**
+     * Execution statistics of script rules, most expensive first
+     *
+     * @return list of rule statistics or error status
+     */
+    @RequestMapping(value = "/api/events/rules/stats", method = RequestMethod.GET)
+    public Object getRuleStatistics() {
+        if (statistics == null) {
+            return new ErrorStatus("Events service is not enabled");
+        }
+
+        return statistics.getRuleStatistics();
+    }
+
+    @RequestMapping(value = "/api/events/rules/stats", method = RequestMethod.DELETE)
+    public Object resetRuleStatistics() {
+        if (statistics == null) {
+            return new ErrorStatus("Events service is not enabled");
+        }
+
+        statistics.reset();
+        return new OkStatus("Rule statistics reset");
+    }
 }
@@ -35,6 +35,8 @@ public enum Queue {
 	EVENT_BATTERY_STATUS("event.device.battery"),
 
 	EVENT_GPS_DATA("event.device.gps"),
+	EVENT_GEOFENCE_ENTER("event.device.geofence.enter"),
+	EVENT_GEOFENCE_EXIT("event.device.geofence.exit"),
     EVENT_DEVICE_PING("event.device.ping"),
 	EVENT_TRANSPORT("event.transport"),
 
@@ -52,6 +52,15 @@ public class DeviceValue {
 
     private String additionalData;
 
+    // current value is last known one, restored after restart, and is not confirmed by device yet
+    @Transient
+    private Boolean stale;
+
+    // latest batch sample time by device clock, server time of single changes is not comparable with it
+    @Transient
+    @JsonIgnore
+    private Date lastSampled;
+
     // get only 15 history points by batch
     @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, mappedBy = "deviceValue")
     @OrderBy(clause = "date desc")
@@ -31,6 +31,7 @@ public enum StandartDeviceValueLabel {
     SPEED("speed"),
 
     GPS_DATA("gps"),
+    GEOFENCE("geofence"),
 
     ;
 
@@ -0,0 +1,24 @@
+package ru.iris.models.web;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.iris.models.protocol.enums.ValueType;
+
+/**
+ * Single value update of batch ingestion
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventBatchItem {
+    private String channel;
+    private String label;
+    private String value;
+    // STRING if not set
+    private ValueType type;
+    // epoch millis of change, time of receiving if not set
+    private Long timestamp;
+}
@@ -0,0 +1,29 @@
+package ru.iris.models.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.iris.models.protocol.enums.SourceProtocol;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class DeviceHealthDTO {
+    private SourceProtocol protocol;
+    private String channel;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date lastSeen;
+    private boolean online;
+    private long reports;
+    // average time between reports
+    private Double cadenceSec;
+    private Double voltage;
+    // voltage change per day, negative while discharging
+    private Double voltageTrend;
+    private Integer batteryLevel;
+    private Double daysToEmpty;
+    private boolean batteryLow;
+}
@@ -0,0 +1,30 @@
+package ru.iris.models.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class RuleStatsDTO {
+    private String script;
+    private String rule;
+    private String triggers;
+    private long invocations;
+    private long errors;
+    private long slow;
+    private double p50Ms;
+    private double p99Ms;
+    private double maxMs;
+    private double totalMs;
+    private String lastError;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date lastErrorDate;
+    // profiler samples of slow executions: frame -> count
+    private Map<String, Long> hotFrames;
+}